@@ -0,0 +1,298 @@
+package io.github.lyazginad.testing.annotations.processing;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.TreeMap;
+
+/**
+ * Writes an index of annotated test methods at compile time, so the report plugin and
+ * the agent can look up annotation values without scanning or reflecting over classes.
+ * <p>
+ * The index is the UTF-8 resource {@value #INDEX_RESOURCE}, one method per line:
+ * tab separated class binary name, method signature ({@code name(paramType,...)}, erased
+ * parameter type names as in {@code Class.getTypeName()}) and {@code key=value} attributes.
+ * Tabs, line breaks and backslashes in values are escaped with a backslash. Keys are
+ * {@code testCase.order}, {@code testCase.name}, {@code testCase.category}, {@code severity},
+ * {@code priority}, {@code level}, {@code type}, {@code method}, {@code author},
+ * {@code version}, {@code description} and repeated {@code step} ({@code order:description}).
+ * <p>
+ * On incremental compilation, entries of classes that were not recompiled are carried
+ * over from the previous index.
+ */
+@SupportedAnnotationTypes({
+        "io.github.lyazginad.testing.annotations.TestCase",
+        "io.github.lyazginad.testing.annotations.Severity",
+        "io.github.lyazginad.testing.annotations.Priority",
+        "io.github.lyazginad.testing.annotations.TestLevel",
+        "io.github.lyazginad.testing.annotations.TestType",
+        "io.github.lyazginad.testing.annotations.TestMethod",
+        "io.github.lyazginad.testing.annotations.TestInfo",
+        "io.github.lyazginad.testing.annotations.TestStep",
+        "io.github.lyazginad.testing.annotations.TestSteps"
+})
+public class TestAnnotationIndexProcessor extends AbstractProcessor {
+
+    public static final String INDEX_RESOURCE = "META-INF/testing-annotations/index";
+    public static final String INDEX_HEADER = "# testing-annotations index 1";
+
+    private static final String ANNOTATION_PACKAGE = "io.github.lyazginad.testing.annotations.";
+
+    private final Map<String, String> entries = new TreeMap<>();
+    private final Set<String> compiledClasses = new HashSet<>();
+    private Elements elements;
+    private Types types;
+    private Filer filer;
+
+    @Override
+    public synchronized void init(ProcessingEnvironment processingEnv) {
+        super.init(processingEnv);
+        this.elements = processingEnv.getElementUtils();
+        this.types = processingEnv.getTypeUtils();
+        this.filer = processingEnv.getFiler();
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (Element root : roundEnv.getRootElements()) {
+            collectClasses(root);
+        }
+        for (TypeElement annotation : annotations) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                if (element.getKind() == ElementKind.METHOD) {
+                    index((ExecutableElement) element);
+                }
+            }
+        }
+        if (roundEnv.processingOver()) {
+            writeIndex();
+        }
+        return false;
+    }
+
+    private void collectClasses(Element element) {
+        if (element instanceof TypeElement) {
+            compiledClasses.add(elements.getBinaryName((TypeElement) element).toString());
+            for (Element enclosed : element.getEnclosedElements()) {
+                collectClasses(enclosed);
+            }
+        }
+    }
+
+    private void index(ExecutableElement method) {
+        TypeElement type = (TypeElement) method.getEnclosingElement();
+        String className = elements.getBinaryName(type).toString();
+        String key = className + '\t' + signature(method);
+        if (entries.containsKey(key)) {
+            return;
+        }
+
+        StringBuilder line = new StringBuilder(escape(className)).append('\t').append(escape(signature(method)));
+        for (AnnotationMirror mirror : method.getAnnotationMirrors()) {
+            String annotationType = ((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().toString();
+            if (!annotationType.startsWith(ANNOTATION_PACKAGE)) {
+                continue;
+            }
+            Map<? extends ExecutableElement, ? extends AnnotationValue> values = elements.getElementValuesWithDefaults(mirror);
+            switch (annotationType.substring(ANNOTATION_PACKAGE.length())) {
+                case "TestCase":
+                    append(line, "testCase.order", value(values, "order"));
+                    append(line, "testCase.name", value(values, "name"));
+                    append(line, "testCase.category", value(values, "category"));
+                    break;
+                case "Severity":
+                    append(line, "severity", value(values, "value"));
+                    break;
+                case "Priority":
+                    append(line, "priority", value(values, "value"));
+                    break;
+                case "TestLevel":
+                    append(line, "level", value(values, "value"));
+                    break;
+                case "TestType":
+                    append(line, "type", value(values, "value"));
+                    break;
+                case "TestMethod":
+                    append(line, "method", value(values, "value"));
+                    break;
+                case "TestInfo":
+                    append(line, "author", value(values, "author"));
+                    append(line, "version", value(values, "version"));
+                    append(line, "description", value(values, "description"));
+                    break;
+                case "TestStep":
+                    appendStep(line, values);
+                    break;
+                case "TestSteps":
+                    for (Object step : (List<?>) rawValue(values, "value")) {
+                        appendStep(line, elements.getElementValuesWithDefaults((AnnotationMirror) ((AnnotationValue) step).getValue()));
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        entries.put(key, line.toString());
+    }
+
+    private void appendStep(StringBuilder line, Map<? extends ExecutableElement, ? extends AnnotationValue> values) {
+        append(line, "step", value(values, "order") + ":" + value(values, "description"));
+    }
+
+    private static void append(StringBuilder line, String key, String value) {
+        line.append('\t').append(key).append('=').append(escape(value));
+    }
+
+    private static Object rawValue(Map<? extends ExecutableElement, ? extends AnnotationValue> values, String name) {
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : values.entrySet()) {
+            if (entry.getKey().getSimpleName().contentEquals(name)) {
+                return entry.getValue().getValue();
+            }
+        }
+        return null;
+    }
+
+    /** Annotation value as text; enum constants by name */
+    private static String value(Map<? extends ExecutableElement, ? extends AnnotationValue> values, String name) {
+        Object value = rawValue(values, name);
+        if (value instanceof VariableElement) {
+            return ((VariableElement) value).getSimpleName().toString();
+        }
+        return String.valueOf(value);
+    }
+
+    private String signature(ExecutableElement method) {
+        StringJoiner parameters = new StringJoiner(",", method.getSimpleName() + "(", ")");
+        for (VariableElement parameter : method.getParameters()) {
+            parameters.add(typeName(types.erasure(parameter.asType())));
+        }
+        return parameters.toString();
+    }
+
+    private String typeName(TypeMirror type) {
+        switch (type.getKind()) {
+            case ARRAY:
+                return typeName(((ArrayType) type).getComponentType()) + "[]";
+            case DECLARED:
+                return elements.getBinaryName((TypeElement) ((DeclaredType) type).asElement()).toString();
+            default:
+                return type.toString();
+        }
+    }
+
+    private void writeIndex() {
+        Map<String, String> index = new TreeMap<>(entries);
+        readPreviousIndex(index);
+        if (index.isEmpty()) {
+            return;
+        }
+
+        try {
+            FileObject resource = filer.createResource(StandardLocation.CLASS_OUTPUT, "", INDEX_RESOURCE);
+            try (Writer writer = new OutputStreamWriter(resource.openOutputStream(), StandardCharsets.UTF_8)) {
+                writer.write(INDEX_HEADER);
+                writer.write('\n');
+                for (String line : index.values()) {
+                    writer.write(line);
+                    writer.write('\n');
+                }
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+                    "Could not write test annotation index: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Keeps entries of classes that were not part of this compilation
+     */
+    private void readPreviousIndex(Map<String, String> index) {
+        try {
+            FileObject previous = filer.getResource(StandardLocation.CLASS_OUTPUT, "", INDEX_RESOURCE);
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(previous.openInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    int classEnd = line.indexOf('\t');
+                    int signatureEnd = classEnd < 0 ? -1 : line.indexOf('\t', classEnd + 1);
+                    if (line.startsWith("#") || classEnd < 0) {
+                        continue;
+                    }
+                    String className = unescape(line.substring(0, classEnd));
+                    if (!compiledClasses.contains(className)) {
+                        String signature = unescape(signatureEnd < 0 ? line.substring(classEnd + 1) : line.substring(classEnd + 1, signatureEnd));
+                        index.putIfAbsent(className + '\t' + signature, line);
+                    }
+                }
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            // No previous index
+        }
+    }
+
+    static String escape(String value) {
+        StringBuilder escaped = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\': escaped.append("\\\\"); break;
+                case '\t': escaped.append("\\t"); break;
+                case '\n': escaped.append("\\n"); break;
+                case '\r': escaped.append("\\r"); break;
+                default: escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+
+    static String unescape(String value) {
+        if (value.indexOf('\\') < 0) {
+            return value;
+        }
+        StringBuilder unescaped = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' && i + 1 < value.length()) {
+                char next = value.charAt(++i);
+                unescaped.append(next == 't' ? '\t' : next == 'n' ? '\n' : next == 'r' ? '\r' : next);
+            } else {
+                unescaped.append(c);
+            }
+        }
+        return unescaped.toString();
+    }
+}
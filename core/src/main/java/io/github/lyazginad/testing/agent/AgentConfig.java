@@ -0,0 +1,264 @@
+package io.github.lyazginad.testing.agent;
+
+import io.github.lyazginad.testing.annotations.Severity;
+import io.github.lyazginad.testing.annotations.TestLevel;
+import io.github.lyazginad.testing.collector.CollectorServer;
+import io.github.lyazginad.testing.history.TestHistory;
+import io.github.lyazginad.testing.impact.ImpactMap;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Agent configuration read from the agent argument string and system properties.
+ * <p>
+ * Agent arguments are a comma separated list of {@code key=value} pairs, e.g.
+ * {@code -javaagent:testing-core.jar=outputDirectory=build/reports,watchdog.failOnTimeout=true}.
+ * Every key can also be supplied as a system property prefixed with {@code testing.};
+ * agent arguments take precedence.
+ */
+public class AgentConfig {
+
+    private static final String PROPERTY_PREFIX = "testing.";
+
+    private static final String DEFAULT_OUTPUT_DIRECTORY = "target/test-reports";
+    private static final String DEFAULT_REPORT_FILE_NAME = "custom-test-report.json";
+
+    private final Map<String, String> values;
+
+    private AgentConfig(Map<String, String> values) {
+        this.values = values;
+    }
+
+    /**
+     * Parses agent arguments ({@code key=value,key=value})
+     */
+    public static AgentConfig parse(String args) {
+        Map<String, String> values = new HashMap<>();
+        if (args != null && !args.trim().isEmpty()) {
+            for (String pair : args.split(",")) {
+                int separator = pair.indexOf('=');
+                if (separator > 0) {
+                    values.put(pair.substring(0, separator).trim(), pair.substring(separator + 1).trim());
+                } else if (!pair.trim().isEmpty()) {
+                    values.put(pair.trim(), "true");
+                }
+            }
+        }
+        return new AgentConfig(values);
+    }
+
+    /**
+     * Configuration with defaults and system properties only
+     */
+    public static AgentConfig defaults() {
+        return new AgentConfig(Collections.emptyMap());
+    }
+
+    public String getString(String key, String defaultValue) {
+        String value = values.get(key);
+        if (value == null) {
+            value = System.getProperty(PROPERTY_PREFIX + key);
+        }
+        return value == null || value.isEmpty() ? defaultValue : value;
+    }
+
+    public boolean getBoolean(String key, boolean defaultValue) {
+        String value = getString(key, null);
+        return value == null ? defaultValue : Boolean.parseBoolean(value);
+    }
+
+    public int getInt(String key, int defaultValue) {
+        String value = getString(key, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid value for " + key + ": " + value + ", using " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Reads a duration in milliseconds; accepts plain milliseconds or {@code ms}, {@code s}, {@code m}, {@code h} suffixes
+     */
+    public long getMillis(String key, long defaultValue) {
+        String value = getString(key, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return parseMillis(value);
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid duration for " + key + ": " + value + ", using " + defaultValue + "ms");
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Reads a size in bytes; accepts plain bytes or {@code k}, {@code m}, {@code g} suffixes
+     */
+    public long getBytes(String key, long defaultValue) {
+        String value = getString(key, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return parseBytes(value);
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid size for " + key + ": " + value + ", using " + defaultValue + " bytes");
+            return defaultValue;
+        }
+    }
+
+    static long parseBytes(String value) {
+        String text = value.trim().toLowerCase(Locale.ROOT);
+        if (text.endsWith("b")) {
+            text = text.substring(0, text.length() - 1);
+        }
+        if (text.endsWith("k")) {
+            return Long.parseLong(text.substring(0, text.length() - 1).trim()) << 10;
+        }
+        if (text.endsWith("m")) {
+            return Long.parseLong(text.substring(0, text.length() - 1).trim()) << 20;
+        }
+        if (text.endsWith("g")) {
+            return Long.parseLong(text.substring(0, text.length() - 1).trim()) << 30;
+        }
+        return Long.parseLong(text.trim());
+    }
+
+    public static long parseMillis(String value) {
+        String text = value.trim().toLowerCase(Locale.ROOT);
+        if (text.endsWith("ms")) {
+            return Long.parseLong(text.substring(0, text.length() - 2).trim());
+        }
+        if (text.endsWith("s")) {
+            return Long.parseLong(text.substring(0, text.length() - 1).trim()) * 1000L;
+        }
+        if (text.endsWith("m")) {
+            return Long.parseLong(text.substring(0, text.length() - 1).trim()) * 60_000L;
+        }
+        if (text.endsWith("h")) {
+            return Long.parseLong(text.substring(0, text.length() - 1).trim()) * 3_600_000L;
+        }
+        return Long.parseLong(text);
+    }
+
+    // Report output
+
+    public String getOutputDirectory() { return getString("outputDirectory", DEFAULT_OUTPUT_DIRECTORY); }
+    public String getReportFileName() { return getString("reportFileName", DEFAULT_REPORT_FILE_NAME); }
+    public boolean isPrettyPrint() { return getBoolean("prettyPrint", true); }
+    public boolean isBinaryReport() { return getBoolean("binary", false); }
+    public boolean isHtmlReport() { return getBoolean("html", false); }
+    public int getHtmlChunkSize() { return getInt("html.chunkSize", 1000); }
+    public boolean isTraceReport() { return getBoolean("trace", false); }
+    /** Name of this JVM's lane group in timelines, e.g. {@code -Dtesting.forkId=${surefire.forkNumber}} */
+    public String getForkId() { return getString("forkId", String.valueOf(ProcessHandle.current().pid())); }
+    /** Register the agent overhead counters as an MBean */
+    public boolean isJmxEnabled() { return getBoolean("jmx", true); }
+
+    /** Frames kept per exception of a failure's stack trace */
+    public int getStackTraceMaxDepth() { return getInt("stackTrace.maxDepth", 64); }
+
+    // Result retention
+
+    /** Estimated heap size of retained results before passing tests are spilled to disk; 0 disables spilling */
+    public long getRetentionHeapBudget() { return getBytes("retention.heapBudget", 64L << 20); }
+    public long getRetentionSlowMillis() { return getMillis("retention.slowThreshold", 5_000L); }
+    public int getRetentionSampleEvery() { return getInt("retention.sampleEvery", 100); }
+    public String getSpillDirectory() { return getString("retention.spillDirectory", System.getProperty("java.io.tmpdir")); }
+
+    // Test impact analysis
+
+    /** Package prefixes of application classes to track per test, separated by ';'; empty disables tracking */
+    public List<String> getImpactPackages() {
+        List<String> packages = new ArrayList<>();
+        for (String prefix : getString("impact.packages", "").split(";")) {
+            if (!prefix.trim().isEmpty()) {
+                packages.add(prefix.trim());
+            }
+        }
+        return packages;
+    }
+
+    public String getImpactFile() {
+        return getString("impact.file", new File(getOutputDirectory(), ImpactMap.DEFAULT_FILE_NAME).getPath());
+    }
+
+    // Test history
+
+    /** Record outcome and duration of every test across runs, for time-budgeted selection */
+    public boolean isHistoryEnabled() { return getBoolean("history", true); }
+
+    public String getHistoryFile() {
+        return getString("history.file", new File(getOutputDirectory(), TestHistory.DEFAULT_FILE_NAME).getPath());
+    }
+
+    // Reruns and flaky tests
+
+    /** Times a failed test method is rerun in place before it counts as failed; 0 disables reruns */
+    public int getRerunCount() { return Math.max(0, getInt("rerun.count", 0)); }
+
+    /** Flakiness score from the test history, in percent, from which a test counts as known flaky */
+    public int getFlakyThresholdPercent() { return getInt("flaky.threshold", 10); }
+
+    /**
+     * Known flaky tests of this severity or lower are quarantined: their failures are reported
+     * but do not fail the test run. Null, the default, quarantines no test.
+     */
+    public Severity.Level getQuarantineSeverity() {
+        String value = getString("flaky.quarantine", null);
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Severity.Level.valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            System.err.println("Invalid severity for flaky.quarantine: " + value + ", quarantining no test");
+            return null;
+        }
+    }
+
+    // Live collector
+
+    /** Address of the collector ({@code host:port}); empty disables streaming */
+    public String getCollectorAddress() { return getString("collector", ""); }
+    public int getCollectorBatchSize() { return getInt("collector.batchSize", 256); }
+    public int getCollectorQueueCapacity() { return getInt("collector.queueCapacity", 8192); }
+    public long getCollectorAckTimeoutMillis() { return getMillis("collector.ackTimeout", 10_000L); }
+
+    public String getCollectorJournal() {
+        return getString("collector.journal", new File(getOutputDirectory(),
+                "collector-" + ProcessHandle.current().pid() + CollectorServer.JOURNAL_EXTENSION).getPath());
+    }
+
+    // Hung-test watchdog
+
+    public boolean isWatchdogEnabled() { return getBoolean("watchdog", true); }
+    public long getWatchdogTickMillis() { return getMillis("watchdog.tick", 100L); }
+    public boolean isFailOnTimeout() { return getBoolean("watchdog.failOnTimeout", false); }
+    public boolean isFlushOnTimeout() { return getBoolean("watchdog.flushOnTimeout", false); }
+
+    /**
+     * Time limit for a test of the given level, configured as {@code watchdog.timeout.<LEVEL>}
+     */
+    public long getTimeoutMillis(TestLevel.Level level) {
+        long defaultValue;
+        switch (level) {
+            case UNIT: defaultValue = 60_000L; break;
+            case INTEGRATION: defaultValue = 300_000L; break;
+            case SYSTEM: defaultValue = 900_000L; break;
+            default: defaultValue = 1_800_000L; break;
+        }
+        return getMillis("watchdog.timeout." + level.name(), defaultValue);
+    }
+}
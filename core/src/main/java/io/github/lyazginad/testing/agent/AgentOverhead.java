@@ -0,0 +1,112 @@
+package io.github.lyazginad.testing.agent;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of the agent's own costs. Updated from test and class loading threads without
+ * locking; read for the report summary and through JMX.
+ */
+final class AgentOverhead implements AgentOverheadMXBean {
+
+    static final String OBJECT_NAME = "io.github.lyazginad.testing:type=AgentOverhead";
+
+    private final LongAdder transformCalls = new LongAdder();
+    private final LongAdder transformedClasses = new LongAdder();
+    private final LongAdder transformNanos = new LongAdder();
+    private final LongAdder bytesParsed = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+    private final LongAdder testsStarted = new LongAdder();
+    private final LongAdder testStartNanos = new LongAdder();
+    private final LongAdder annotationNanos = new LongAdder();
+    private final LongAdder testsFinished = new LongAdder();
+    private final LongAdder testFinishNanos = new LongAdder();
+    private final LongAdder reportNanos = new LongAdder();
+
+    void transform(long startNanos, int parsedBytes, byte[] transformed) {
+        transformNanos.add(System.nanoTime() - startNanos);
+        transformCalls.increment();
+        bytesParsed.add(parsedBytes);
+        if (transformed != null) {
+            transformedClasses.increment();
+            bytesWritten.add(transformed.length);
+        }
+    }
+
+    void testStarted(long startNanos) {
+        testStartNanos.add(System.nanoTime() - startNanos);
+        testsStarted.increment();
+    }
+
+    void annotationsProcessed(long startNanos) {
+        annotationNanos.add(System.nanoTime() - startNanos);
+    }
+
+    void testFinished(long startNanos) {
+        testFinishNanos.add(System.nanoTime() - startNanos);
+        testsFinished.increment();
+    }
+
+    void reportWritten(long startNanos) {
+        reportNanos.add(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Registers the counters with the platform MBean server; failures only disable JMX access
+     */
+    void register() {
+        try {
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!ManagementFactory.getPlatformMBeanServer().isRegistered(name)) {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+            }
+        } catch (Exception | LinkageError e) {
+            System.err.println("Could not register agent overhead MBean: " + e);
+        }
+    }
+
+    @Override public long getTransformCalls() { return transformCalls.sum(); }
+    @Override public long getTransformedClasses() { return transformedClasses.sum(); }
+    @Override public long getTransformMicros() { return micros(transformNanos); }
+    @Override public long getBytesParsed() { return bytesParsed.sum(); }
+    @Override public long getBytesWritten() { return bytesWritten.sum(); }
+    @Override public long getTestsStarted() { return testsStarted.sum(); }
+    @Override public long getTestStartMicros() { return micros(testStartNanos); }
+    @Override public long getAnnotationMicros() { return micros(annotationNanos); }
+    @Override public long getTestsFinished() { return testsFinished.sum(); }
+    @Override public long getTestFinishMicros() { return micros(testFinishNanos); }
+    @Override public long getReportMicros() { return micros(reportNanos); }
+
+    @Override
+    public long getTotalMicros() {
+        return getTransformMicros() + getTestStartMicros() + getTestFinishMicros() + getReportMicros();
+    }
+
+    /**
+     * Snapshot for the report's agentOverhead section
+     */
+    Map<String, Long> toMap() {
+        Map<String, Long> values = new LinkedHashMap<>();
+        values.put("transformCalls", getTransformCalls());
+        values.put("transformedClasses", getTransformedClasses());
+        values.put("transformMicros", getTransformMicros());
+        values.put("bytesParsed", getBytesParsed());
+        values.put("bytesWritten", getBytesWritten());
+        values.put("testsStarted", getTestsStarted());
+        values.put("testStartMicros", getTestStartMicros());
+        values.put("annotationMicros", getAnnotationMicros());
+        values.put("testsFinished", getTestsFinished());
+        values.put("testFinishMicros", getTestFinishMicros());
+        values.put("reportMicros", getReportMicros());
+        values.put("totalMicros", getTotalMicros());
+        return values;
+    }
+
+    private static long micros(LongAdder nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos.sum());
+    }
+}
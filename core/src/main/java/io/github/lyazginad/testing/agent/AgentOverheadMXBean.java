@@ -0,0 +1,37 @@
+package io.github.lyazginad.testing.agent;
+
+/**
+ * Time the agent spends on its own work, registered as
+ * {@code io.github.lyazginad.testing:type=AgentOverhead}. Times are in microseconds.
+ */
+public interface AgentOverheadMXBean {
+
+    /** Class file transformer calls, including classes that are not instrumented */
+    long getTransformCalls();
+
+    long getTransformedClasses();
+
+    long getTransformMicros();
+
+    /** Class file bytes parsed for instrumentation */
+    long getBytesParsed();
+
+    /** Class file bytes produced by instrumentation */
+    long getBytesWritten();
+
+    long getTestsStarted();
+
+    /** Time in test start tracking, annotation processing included */
+    long getTestStartMicros();
+
+    long getAnnotationMicros();
+
+    long getTestsFinished();
+
+    long getTestFinishMicros();
+
+    /** Time writing the JSON, binary and HTML reports and the impact map */
+    long getReportMicros();
+
+    long getTotalMicros();
+}
@@ -0,0 +1,71 @@
+package io.github.lyazginad.testing.agent;
+
+import io.github.lyazginad.testing.instrument.TestClassInstrumenter;
+import javassist.ClassPool;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * Training run for a class data sharing archive of the agent, started by the
+ * {@code cds-archive} goal with {@code -XX:ArchiveClassesAtExit}.
+ * <p>
+ * Goes through the work of a test JVM without needing a test framework: instruments the
+ * annotated sample test of {@code testing-annotations}, runs its tests with one failure, and
+ * writes every report format from the shutdown hook. The classes loaded along the way
+ * (Javassist's compiler, Jackson, the agent and the report writers) end up in the archive.
+ */
+public final class CdsTraining {
+
+    private static final String SAMPLE_TEST = "io.github.lyazginad.testing.annotations.SampleTest";
+
+    private CdsTraining() {
+    }
+
+    /**
+     * @param args output directory of the training reports
+     */
+    public static void main(String[] args) throws Exception {
+        System.setProperty("testing.outputDirectory", args.length > 0 ? args[0] : "target/testing-cds/training");
+        System.setProperty("testing.binary", "true");
+        System.setProperty("testing.html", "true");
+        System.setProperty("testing.trace", "true");
+        System.setProperty("testing.history", "false");
+
+        byte[] classFile;
+        try (InputStream in = ClassLoader.getSystemResourceAsStream(SAMPLE_TEST.replace('.', '/') + ".class")) {
+            if (in == null) {
+                throw new IOException("Sample test " + SAMPLE_TEST + " not found");
+            }
+            classFile = in.readAllBytes();
+        }
+        byte[] instrumented = new TestClassInstrumenter(ClassPool.getDefault()).instrument(classFile);
+        Class<?> sampleTest = new TrainingClassLoader().define(SAMPLE_TEST, instrumented);
+
+        Object instance = sampleTest.getDeclaredConstructor().newInstance();
+        for (Method method : sampleTest.getDeclaredMethods()) {
+            if (!method.isSynthetic() && method.getName().startsWith("test") && method.getParameterCount() == 0) {
+                try {
+                    method.invoke(instance);
+                } catch (InvocationTargetException e) {
+                    System.err.println("Training test " + method.getName() + " failed: " + e.getCause());
+                }
+            }
+        }
+
+        TestReportAgent.invocationStarted(sampleTest, "testUserLogin", "()V");
+        TestReportAgent.invocationFailed(new AssertionError("Training failure"));
+    }
+
+    private static final class TrainingClassLoader extends ClassLoader {
+        TrainingClassLoader() {
+            super(ClassLoader.getSystemClassLoader());
+        }
+
+        Class<?> define(String name, byte[] classFile) {
+            return defineClass(name, classFile, 0, classFile.length);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package io.github.lyazginad.testing.agent;
+
+import io.github.lyazginad.testing.model.AttemptResult;
+import io.github.lyazginad.testing.model.StepResult;
+import io.github.lyazginad.testing.model.TestReport;
+import io.github.lyazginad.testing.model.TestResult;
+import io.github.lyazginad.testing.report.ResultSpill;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Decides which finished results stay on the heap.
+ * <p>
+ * Results are kept in memory until their estimated size exceeds the heap budget.
+ * After that, passing results are written to a {@link ResultSpill} and only counted
+ * in the report totals and summaries. Failures, timed out, flaky and slow tests and a
+ * stable sample of passing tests (by invocation id hash) are always kept in memory.
+ */
+class ResultRetention {
+
+    private static final long RESULT_OVERHEAD = 320;
+    private static final long STEP_OVERHEAD = 120;
+    private static final long STRING_OVERHEAD = 40;
+
+    private final TestReport report;
+    private final long heapBudget;
+    private final long slowMillis;
+    private final int sampleEvery;
+    private final File spillDirectory;
+
+    private long retainedBytes;
+    private ResultSpill spill;
+    private boolean spillFailed;
+
+    ResultRetention(TestReport report, AgentConfig config) {
+        this.report = report;
+        this.heapBudget = config.getRetentionHeapBudget();
+        this.slowMillis = config.getRetentionSlowMillis();
+        this.sampleEvery = config.getRetentionSampleEvery();
+        this.spillDirectory = new File(config.getSpillDirectory());
+    }
+
+    synchronized void add(TestResult result) {
+        long size = estimateSize(result);
+        if (heapBudget <= 0 || spillFailed || retainedBytes + size <= heapBudget || alwaysRetained(result)) {
+            report.addTestResult(result);
+            retainedBytes += size;
+            return;
+        }
+
+        try {
+            if (spill == null) {
+                spill = new ResultSpill(spillDirectory, report.getExecutionTime());
+                report.setSpilledResults(spill);
+                System.out.println("Heap budget of " + heapBudget + " bytes reached, spilling passing test results to "
+                        + spill.getFile().getAbsolutePath());
+            }
+            spill.write(result);
+            report.countTestResult(result);
+        } catch (IOException e) {
+            System.err.println("Error spilling test results, keeping them in memory: " + e.getMessage());
+            spillFailed = true;
+            report.addTestResult(result);
+            retainedBytes += size;
+        }
+    }
+
+    synchronized int getSpilledCount() {
+        return spill != null ? spill.size() : 0;
+    }
+
+    /**
+     * Deletes the spill file; the report must not be written afterwards
+     */
+    synchronized void close() {
+        if (spill != null) {
+            try {
+                spill.close();
+            } catch (IOException e) {
+                System.err.println("Error deleting spill file: " + e.getMessage());
+            }
+        }
+    }
+
+    private boolean alwaysRetained(TestResult result) {
+        if (!result.isPassed() || result.isTimedOut() || result.isFlaky() || result.getDuration() >= slowMillis) {
+            return true;
+        }
+        if (sampleEvery <= 0) {
+            return false;
+        }
+        String id = result.getInvocationId() != null ? result.getInvocationId()
+                : result.getClassName() + "#" + result.getMethodName();
+        return (id.hashCode() & Integer.MAX_VALUE) % sampleEvery == 0;
+    }
+
+    /**
+     * Rough retained size of a result: object headers and fields plus string contents
+     */
+    static long estimateSize(TestResult result) {
+        long size = RESULT_OVERHEAD
+                + sizeOf(result.getClassName()) + sizeOf(result.getMethodName())
+                + sizeOf(result.getTestName()) + sizeOf(result.getInvocationId())
+                + sizeOf(result.getErrorMessage()) + sizeOf(result.getDescription())
+                + sizeOf(result.getHangStackTrace()) + sizeOf(result.getThreadDump());
+        for (StepResult step : result.getSteps()) {
+            size += STEP_OVERHEAD + sizeOf(step.getDescription()) + sizeOf(step.getErrorMessage());
+        }
+        for (AttemptResult attempt : result.getAttempts()) {
+            size += STEP_OVERHEAD + sizeOf(attempt.getErrorMessage());
+        }
+        return size;
+    }
+
+    private static long sizeOf(String value) {
+        return value == null ? 0 : STRING_OVERHEAD + value.length();
+    }
+}
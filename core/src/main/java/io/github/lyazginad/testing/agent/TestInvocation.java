@@ -0,0 +1,40 @@
+package io.github.lyazginad.testing.agent;
+
+import io.github.lyazginad.testing.context.TestContext;
+import io.github.lyazginad.testing.model.TestResult;
+import io.github.lyazginad.testing.util.HashedWheelTimer;
+
+/**
+ * One running invocation of a test method
+ */
+class TestInvocation {
+
+    final String id;
+    final String methodKey;
+    final TestResult result;
+    final long startNanos;
+    volatile long attemptStartNanos;
+    volatile HashedWheelTimer.Timeout timeout;
+    volatile TestContext context;
+    /** Failure of the last attempt of a quarantined test, reported when the invocation returns */
+    volatile Throwable quarantinedFailure;
+
+    TestInvocation(String id, String methodKey, TestResult result) {
+        this.id = id;
+        this.methodKey = methodKey;
+        this.result = result;
+        this.startNanos = System.nanoTime();
+        this.attemptStartNanos = startNanos;
+    }
+
+    long elapsedMicros() {
+        return (System.nanoTime() - startNanos) / 1000;
+    }
+
+    /**
+     * Time of the current attempt; a rerun starts the next one
+     */
+    long attemptMicros() {
+        return (System.nanoTime() - attemptStartNanos) / 1000;
+    }
+}
@@ -1,65 +1,222 @@
 package io.github.lyazginad.testing.agent;
 
+import io.github.lyazginad.testing.annotations.Severity;
+import io.github.lyazginad.testing.collector.CollectorClient;
+import io.github.lyazginad.testing.context.TestContext;
+import io.github.lyazginad.testing.history.TestHistory;
+import io.github.lyazginad.testing.impact.TestImpactRecorder;
+import io.github.lyazginad.testing.instrument.ImpactInstrumenter;
+import io.github.lyazginad.testing.instrument.TestClassInstrumenter;
+import io.github.lyazginad.testing.model.AttemptResult;
+import io.github.lyazginad.testing.model.InvocationStats;
 import io.github.lyazginad.testing.model.TestReport;
 import io.github.lyazginad.testing.model.TestResult;
+import io.github.lyazginad.testing.report.BinaryReportFormat;
+import io.github.lyazginad.testing.report.ChromeTraceWriter;
+import io.github.lyazginad.testing.report.HtmlReportGenerator;
+import io.github.lyazginad.testing.report.JsonReportWriter;
+import io.github.lyazginad.testing.report.TimelineAnalysis;
 import io.github.lyazginad.testing.util.AnnotationProcessor;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
-import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.github.lyazginad.testing.util.MethodDescriptors;
+import io.github.lyazginad.testing.util.StackTraceInterner;
 import javassist.ClassPool;
-import javassist.CtClass;
-import javassist.CtMethod;
-import javassist.NotFoundException;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
 import java.lang.instrument.ClassFileTransformer;
 import java.lang.instrument.Instrumentation;
 import java.lang.reflect.Method;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
 import java.security.ProtectionDomain;
-import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
 
 /**
  * Java Agent for automatic test execution tracking and report generation
  */
 public class TestReportAgent {
 
-    private static final String OUTPUT_DIRECTORY = "target/test-reports";
-    private static final String REPORT_FILE_NAME = "custom-test-report.json";
-    private static final boolean PRETTY_PRINT = true;
-
+    private static AgentConfig config = AgentConfig.defaults();
     private static TestReport testReport = new TestReport();
-    private static Map<String, TestResult> currentTestResults = new ConcurrentHashMap<>();
-    private static Map<String, LocalDateTime> testStartTimes = new ConcurrentHashMap<>();
+    private static ResultRetention retention = new ResultRetention(testReport, config);
+    private static StackTraceInterner stackTraces = new StackTraceInterner(testReport, config.getStackTraceMaxDepth());
+    private static Map<String, TestInvocation> runningTests = new ConcurrentHashMap<>();
+    /** Test methods by name and descriptor; kept with each class, so unloaded test classes are not pinned */
+    private static final ClassValue<Map<String, Method>> resolvedMethods = new ClassValue<>() {
+        @Override
+        protected Map<String, Method> computeValue(Class<?> testClass) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+    /** Test classes already checked for the rerun loop */
+    private static final Set<String> rerunLoopChecked = ConcurrentHashMap.newKeySet();
+    private static final AgentOverhead overhead = new AgentOverhead();
+    private static TestWatchdog watchdog;
+    private static CollectorClient collector;
+    private static TestHistory history;
+    /** History of earlier runs, to recognize known flaky tests; only read when quarantine is configured */
+    private static TestHistory pastRuns;
+    private static int rerunCount;
+    private static Severity.Level quarantineSeverity;
+    private static String forkId;
+    private static boolean retainAll;
     private static Instrumentation instrumentation;
+    private static TestTransformer transformer;
+    private static volatile boolean initialized;
+
+    private static final int RETRANSFORM_BATCH_SIZE = 64;
+    private static final Set<String> SKIP_EXCEPTIONS = Set.of(
+            "org.opentest4j.TestAbortedException",
+            "org.junit.internal.AssumptionViolatedException",
+            "org.testng.SkipException");
+    private static final String AGENT_PACKAGE_PREFIX = "io.github.lyazginad.testing.";
 
     /**
      * Premain method for agent startup
      */
-    public static void premain(String args, Instrumentation inst) {
-        System.out.println("=== Test Report Agent Initialized ===");
+    public static synchronized void premain(String args, Instrumentation inst) {
+        if (transformer != null) {
+            System.out.println("Test Report Agent is already initialized, ignoring arguments: " + args);
+            return;
+        }
+        if (initialized) {
+            System.out.println("Test Report Agent is already tracking build-time instrumented tests, ignoring arguments: " + args);
+        }
+        initialize(args);
         instrumentation = inst;
 
         // Register class transformer
-        TestTransformer transformer = new TestTransformer();
+        // The rerun loop is only woven when something uses it
+        transformer = new TestTransformer(config.getImpactPackages(),
+                config.getRerunCount() > 0 || config.getQuarantineSeverity() != null);
         inst.addTransformer(transformer, true);
 
+        System.out.println("Agent successfully registered. Ready to track tests.");
+    }
+
+    /**
+     * Sets up tracking: configuration, watchdog and the shutdown hook writing the report.
+     * Runs from premain, or on the first tracked test when test classes were instrumented
+     * at build time and the JVM was started without the agent.
+     */
+    private static synchronized void initialize(String args) {
+        if (initialized) {
+            return;
+        }
+        System.out.println("=== Test Report Agent Initialized ===");
+        config = AgentConfig.parse(args);
+        retention = new ResultRetention(testReport, config);
+        stackTraces = new StackTraceInterner(testReport, config.getStackTraceMaxDepth());
+        forkId = config.getForkId();
+        // A timeline needs every invocation, not only the first one of each method
+        retainAll = config.isTraceReport();
+
+        if (config.isHistoryEnabled()) {
+            history = new TestHistory();
+        }
+        rerunCount = config.getRerunCount();
+        quarantineSeverity = config.getQuarantineSeverity();
+        if (quarantineSeverity != null) {
+            pastRuns = readPastRuns(new File(config.getHistoryFile()));
+        }
+        if (config.isWatchdogEnabled()) {
+            watchdog = new TestWatchdog(config);
+        }
+        if (config.isJmxEnabled()) {
+            overhead.register();
+        }
+        if (!config.getCollectorAddress().isEmpty()) {
+            try {
+                collector = new CollectorClient(config.getCollectorAddress(), config.getCollectorBatchSize(),
+                        config.getCollectorQueueCapacity(), config.getCollectorAckTimeoutMillis(),
+                        new File(config.getCollectorJournal()), testReport);
+                collector.start();
+            } catch (IllegalArgumentException e) {
+                System.err.println("Invalid collector address " + config.getCollectorAddress() + ": " + e.getMessage());
+            }
+        }
+
         // Add shutdown hook for report generation on termination
         Runtime.getRuntime().addShutdownHook(new Thread(TestReportAgent::generateFinalReport));
+        initialized = true;
+    }
 
-        System.out.println("Agent successfully registered. Ready to track tests.");
+    private static TestHistory readPastRuns(File historyFile) {
+        if (!historyFile.isFile()) {
+            System.out.println("No test history at " + historyFile + ", no test is known to be flaky");
+            return null;
+        }
+        try {
+            return TestHistory.read(historyFile);
+        } catch (IOException e) {
+            System.err.println("Could not read test history " + historyFile + ", no test is quarantined: " + e.getMessage());
+            return null;
+        }
     }
 
     /**
-     * Agentmain method for dynamic attachment
+     * Agentmain method for dynamic attachment. Attaching again leaves the agent as it is: the
+     * transformer registered on the first attach has instrumented every test class since.
      */
     public static void agentmain(String args, Instrumentation inst) {
         System.out.println("Test Report Agent attached at runtime");
-        premain(args, inst);
+        synchronized (TestReportAgent.class) {
+            if (transformer != null) {
+                System.out.println("Test Report Agent is already attached, ignoring arguments: " + args);
+                return;
+            }
+            premain(args, inst);
+        }
+        retransformLoadedTestClasses(inst);
+    }
+
+    /**
+     * Instruments test classes that were loaded before the agent was attached. Classes are
+     * retransformed in batches; a batch that fails is retried class by class so one
+     * unmodifiable class does not leave the others uninstrumented.
+     */
+    private static void retransformLoadedTestClasses(Instrumentation inst) {
+        long start = System.nanoTime();
+        List<Class<?>> candidates = new ArrayList<>();
+        for (Class<?> loaded : inst.getAllLoadedClasses()) {
+            if (!loaded.isArray() && TestClassInstrumenter.isCandidate(loaded.getName()) && inst.isModifiableClass(loaded)) {
+                candidates.add(loaded);
+            }
+        }
+
+        int retransformed = 0;
+        for (int from = 0; from < candidates.size(); from += RETRANSFORM_BATCH_SIZE) {
+            List<Class<?>> batch = candidates.subList(from, Math.min(from + RETRANSFORM_BATCH_SIZE, candidates.size()));
+            try {
+                inst.retransformClasses(batch.toArray(new Class<?>[0]));
+                retransformed += batch.size();
+            } catch (Throwable batchError) {
+                for (Class<?> loaded : batch) {
+                    try {
+                        inst.retransformClasses(loaded);
+                        retransformed++;
+                    } catch (Throwable e) {
+                        System.err.println("Could not retransform " + loaded.getName() + ": " + e);
+                    }
+                }
+            }
+        }
+
+        System.out.println("Retransformed " + retransformed + " of " + candidates.size()
+                + " loaded test classes in " + (System.nanoTime() - start) / 1_000_000 + "ms");
+        if (retransformed > 0 && transformer.instrumenter.isReruns()) {
+            System.err.println("⚠️ Failures of the " + retransformed + " test classes loaded before the agent was attached"
+                    + " are neither rerun nor quarantined: the JVM does not allow adding methods to loaded classes");
+        }
     }
 
     /**
@@ -67,139 +224,380 @@ public class TestReportAgent {
      */
     private static class TestTransformer implements ClassFileTransformer {
 
+        private final TestClassInstrumenter instrumenter;
+        private final ImpactInstrumenter impactInstrumenter = new ImpactInstrumenter(ClassPool.getDefault());
+
+        /** Package prefixes of application classes tracked for test impact analysis */
+        private final List<String> impactPackages;
+
+        TestTransformer(List<String> impactPackages, boolean reruns) {
+            this.impactPackages = impactPackages;
+            this.instrumenter = new TestClassInstrumenter(ClassPool.getDefault(), reruns);
+        }
+
         @Override
         public byte[] transform(ClassLoader loader, String className, Class<?> classBeingRedefined,
                                 ProtectionDomain protectionDomain, byte[] classfileBuffer) {
+            boolean redefinition = classBeingRedefined != null;
+            long start = System.nanoTime();
+            if (className == null) {
+                return null; // Hidden classes
+            }
+            String dotClassName = className.replace('/', '.');
+            boolean testClass = TestClassInstrumenter.isCandidate(dotClassName);
+            if (!testClass && !isImpactTracked(dotClassName)) {
+                overhead.transform(start, 0, null);
+                return null;
+            }
 
-            try {
-                String dotClassName = className.replace('/', '.');
-
-                // Transform only test classes
-                if (dotClassName.contains("Test") && !dotClassName.contains("$")) {
-                    ClassPool cp = ClassPool.getDefault();
-                    CtClass ctClass = cp.makeClass(new java.io.ByteArrayInputStream(classfileBuffer));
-
-                    boolean transformed = false;
+            byte[] transformed = transformClass(dotClassName, testClass, classfileBuffer, redefinition);
+            overhead.transform(start, classfileBuffer.length, transformed);
+            return transformed;
+        }
 
-                    // Iterate through all class methods
-                    for (CtMethod method : ctClass.getDeclaredMethods()) {
-                        if (isTestMethod(method)) {
-                            transformTestMethod(method);
-                            transformed = true;
-                        }
-                    }
+        private byte[] transformClass(String dotClassName, boolean testClass, byte[] classfileBuffer,
+                                      boolean redefinition) {
+            if (!testClass) {
+                CRC32 crc = new CRC32();
+                crc.update(classfileBuffer);
+                return instrumentForImpact(dotClassName, classfileBuffer, crc.getValue());
+            }
+            if (!impactPackages.isEmpty()) {
+                // A class woven by the instrument goal is registered by the checksum select-tests sees
+                TestImpactRecorder.registerTestClass(dotClassName, TestClassInstrumenter.sourceChecksum(classfileBuffer));
+            }
+            return instrument(dotClassName, classfileBuffer, redefinition);
+        }
 
-                    if (transformed) {
-                        System.out.println("Transformed test class: " + dotClassName);
-                        return ctClass.toBytecode();
-                    }
+        private byte[] instrument(String dotClassName, byte[] classfileBuffer, boolean redefinition) {
+            try {
+                byte[] transformed = instrumenter.instrument(classfileBuffer, redefinition);
+                if (transformed != null) {
+                    System.out.println("Transformed test class: " + dotClassName);
+                    // Retransformed classes are reported together when the attach is done
+                    rerunLoopChecked.add(dotClassName);
+                } else if (instrumenter.isReruns()) {
+                    checkRerunLoop(dotClassName, classfileBuffer);
                 }
+                return transformed;
             } catch (Exception e) {
-                System.err.println("Error transforming class " + className + ": " + e.getMessage());
+                System.err.println("Error transforming class " + dotClassName + ": " + e.getMessage());
+                return null; // Return null if transformation is not required
             }
-
-            return null; // Return null if transformation is not required
         }
 
-        private boolean isTestMethod(CtMethod method) throws NotFoundException {
-            String methodName = method.getName();
-            return methodName.startsWith("test") ||
-                    methodName.contains("Test") ||
-                    hasTestAnnotations(method);
+        private boolean isImpactTracked(String dotClassName) {
+            if (dotClassName.startsWith(AGENT_PACKAGE_PREFIX)) {
+                return false;
+            }
+            for (String prefix : impactPackages) {
+                if (dotClassName.startsWith(prefix)) {
+                    return true;
+                }
+            }
+            return false;
         }
 
-        private boolean hasTestAnnotations(CtMethod method) {
+        private byte[] instrumentForImpact(String dotClassName, byte[] classfileBuffer, long checksum) {
             try {
-                Object[] annotations = method.getAnnotations();
-                for (Object ann : annotations) {
-                    String annStr = ann.toString();
-                    if (annStr.contains("Test") || annStr.contains("org.junit") || annStr.contains("org.testng")) {
-                        return true;
-                    }
-                }
+                int classId = TestImpactRecorder.registerClass(dotClassName, checksum);
+                return impactInstrumenter.instrument(classfileBuffer, classId);
             } catch (Exception e) {
-                // Ignore annotation retrieval errors
+                System.err.println("Error instrumenting class " + dotClassName + " for impact analysis: " + e.getMessage());
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Warns once per class when reruns or quarantine are configured but the class was woven
+     * at build time without the rerun loop, which silently turns them off for its tests
+     */
+    private static void checkRerunLoop(String className, byte[] classFile) {
+        if (rerunLoopChecked.add(className) && TestClassInstrumenter.isInstrumented(classFile)
+                && !TestClassInstrumenter.hasRerunLoop(classFile)) {
+            System.err.println("⚠️ " + className + " was instrumented at build time without the rerun loop,"
+                    + " its failures are neither rerun nor quarantined: build it with -Dtesting.instrument.reruns=true");
+        }
+    }
+
+    /**
+     * Without the agent, build-time instrumented classes are checked on their first test
+     */
+    private static void checkRerunLoop(Class<?> testClass) {
+        if (instrumentation != null || (rerunCount <= 0 && quarantineSeverity == null)
+                || rerunLoopChecked.contains(testClass.getName())) {
+            return;
+        }
+        try (InputStream in = testClass.getResourceAsStream(
+                testClass.getName().substring(testClass.getName().lastIndexOf('.') + 1) + ".class")) {
+            if (in != null) {
+                checkRerunLoop(testClass.getName(), in.readAllBytes());
+            }
+        } catch (IOException e) {
+            rerunLoopChecked.add(testClass.getName());
+        }
+    }
+
+    /**
+     * Called by instrumented test methods when an invocation starts. Every invocation gets
+     * its own id, so parameterized, repeated and concurrent runs of a method do not collide.
+     */
+    public static void invocationStarted(Class<?> testClass, String methodName, String descriptor) {
+        try {
+            Method testMethod = resolveMethod(testClass, methodName, descriptor);
+            String methodKey = testClass.getName() + "#" +
+                    (testMethod != null ? MethodDescriptors.readableSignature(testMethod) : methodName);
+            startTest(methodKey, testClass.getName(), methodName, testMethod);
+            checkRerunLoop(testClass);
+        } catch (Exception e) {
+            System.err.println("Error in invocationStarted for " + testClass.getName() + "#" + methodName + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Called by instrumented test methods when the innermost invocation on this thread completes
+     */
+    public static void invocationFinished(boolean success, String errorMessage) {
+        String invocationId = TestContext.currentTestId();
+        if (invocationId != null) {
+            testFinished(invocationId, success, errorMessage);
+            // Already finished by the watchdog: still leave the test's context
+            TestContext.end(invocationId);
+        }
+    }
+
+    /**
+     * Called by instrumented test methods when the innermost invocation on this thread throws
+     */
+    public static void invocationFailed(Throwable failure) {
+        String invocationId = TestContext.currentTestId();
+        if (invocationId != null) {
+            testFailed(invocationId, failure);
+            TestContext.end(invocationId);
+        }
+    }
+
+    /**
+     * Called by instrumented test methods when an attempt throws. Records the attempt if reruns
+     * are enabled and returns true if the method should run again; fixtures of the test framework,
+     * such as {@code @BeforeEach} methods, are not run again.
+     */
+    public static boolean rerunAfter(Throwable failure, int attempt) {
+        if (rerunCount <= 0 || isSkip(failure)) {
+            return false;
+        }
+        String invocationId = TestContext.currentTestId();
+        TestInvocation testInvocation = invocationId != null ? runningTests.get(invocationId) : null;
+        if (testInvocation == null) {
+            return false;
+        }
+        try {
+            TestResult testResult = testInvocation.result;
+            String errorMessage = failure.getMessage() != null ? failure.getMessage() : failure.toString();
+            testResult.addAttempt(new AttemptResult(attempt, false, testInvocation.attemptMicros(), errorMessage,
+                    failure.getClass().getName(), stackTraces.intern(failure)));
+            if (attempt > rerunCount || testResult.isTimedOut()) {
+                return false;
             }
+
+            testResult.restartSteps();
+            testInvocation.attemptStartNanos = System.nanoTime();
+            System.out.println("🔁 Rerunning " + invocationId + " (attempt " + (attempt + 1) + " of "
+                    + (rerunCount + 1) + "): " + errorMessage);
+            return true;
+        } catch (Exception e) {
+            System.err.println("Error in rerunAfter for " + invocationId + ": " + e.getMessage());
             return false;
         }
+    }
 
-        private void transformTestMethod(CtMethod method) {
-            try {
-                String methodName = method.getName();
-                String className = method.getDeclaringClass().getName();
-
-                // Add logic before test execution
-                method.insertBefore(
-                        "io.github.lyazginad.testing.agent.TestReportAgent.testStarted(\"" +
-                                className + "#" + methodName + "\", \"" + className + "\", \"" + methodName + "\");"
-                );
-
-                // Add logic after successful test execution
-                method.insertAfter(
-                        "io.github.lyazginad.testing.agent.TestReportAgent.testFinished(\"" +
-                                className + "#" + methodName + "\", true, null);",
-                        true
-                );
-
-                // Add logic for exception interception
-                method.addCatch(
-                        "{" +
-                                "   io.github.lyazginad.testing.agent.TestReportAgent.testFinished(\"" +
-                                className + "#" + methodName + "\", false, $e.getMessage());" +
-                                "   throw $e;" +
-                                "}",
-                        ClassPool.getDefault().get("java.lang.Exception")
-                );
+    /**
+     * Called by instrumented test methods when the last attempt failed. Returns true if the test
+     * is known to be flaky and of the quarantined severity or lower: the failure is then reported
+     * when the invocation returns, instead of being thrown to the test framework.
+     */
+    public static boolean quarantine(Throwable failure) {
+        if (quarantineSeverity == null || pastRuns == null || isSkip(failure)) {
+            return false;
+        }
+        String invocationId = TestContext.currentTestId();
+        TestInvocation testInvocation = invocationId != null ? runningTests.get(invocationId) : null;
+        if (testInvocation == null) {
+            return false;
+        }
+        TestResult testResult = testInvocation.result;
+        if (testResult.getSeverity().ordinal() < quarantineSeverity.ordinal()) {
+            return false;
+        }
+        TestHistory.Entry past = pastRuns.get(testResult.getClassName() + "#" + testResult.getMethodName());
+        if (past == null || past.getFlakinessScore() * 100 < config.getFlakyThresholdPercent()) {
+            return false;
+        }
+        testResult.setQuarantined(true);
+        testInvocation.quarantinedFailure = failure;
+        return true;
+    }
 
-            } catch (Exception e) {
-                System.err.println("Error transforming method " + method.getName() + ": " + e.getMessage());
+    /**
+     * Whether the exception is how a test framework skips a test, e.g. a failed assumption;
+     * skipped tests are neither rerun nor quarantined
+     */
+    private static boolean isSkip(Throwable failure) {
+        for (Class<?> type = failure.getClass(); type != null; type = type.getSuperclass()) {
+            if (SKIP_EXCEPTIONS.contains(type.getName())) {
+                return true;
             }
         }
+        return false;
     }
 
     /**
      * Called when test execution starts
      */
     public static void testStarted(String testId, String className, String methodName) {
+        Method testMethod = null;
+        try {
+            // The agent may live in another class loader than the tests, e.g. on the boot class path
+            testMethod = resolveMethod(Class.forName(className, false, Thread.currentThread().getContextClassLoader()),
+                    methodName, null);
+        } catch (Exception e) {
+            // If unable to get annotations, use default values
+            System.out.println("Note: Could not process annotations for " + testId + ": " + e.getMessage());
+        }
+        startTest(testId, className, methodName, testMethod);
+    }
+
+    @SuppressWarnings("removal")
+    private static void startTest(String methodKey, String className, String methodName, Method testMethod) {
+        if (!initialized) {
+            // Threads started by initialize would keep the protection domains of the test's frames,
+            // and with them its class loader, for the rest of the JVM's life
+            AccessController.doPrivileged((PrivilegedAction<Void>) () -> {
+                initialize(null);
+                return null;
+            });
+        }
+        long start = System.nanoTime();
+        String testId = methodKey;
         try {
+            InvocationStats stats = testReport.invocationStatsFor(methodKey);
+            long invocation = stats.nextInvocation();
+            if (invocation > 1) {
+                testId = methodKey + "[" + invocation + "]";
+            }
+
             TestResult testResult = new TestResult(className, methodName,
                     testReport.getTotalTests() + 1,
                     methodName);
+            testResult.setInvocationId(testId);
+            testResult.setThreadName(Thread.currentThread().getName());
+            testResult.setForkId(forkId);
 
-            // Try to get annotations via reflection
-            try {
-                Class<?> testClass = Class.forName(className);
-                Method testMethod = testClass.getDeclaredMethod(methodName);
+            if (testMethod != null) {
+                long annotationStart = System.nanoTime();
                 AnnotationProcessor.processTestAnnotations(testMethod, testResult);
-            } catch (Exception e) {
-                // If unable to get annotations, use default values
-                System.out.println("Note: Could not process annotations for " + testId + ": " + e.getMessage());
+                overhead.annotationsProcessed(annotationStart);
             }
 
-            currentTestResults.put(testId, testResult);
-            testStartTimes.put(testId, LocalDateTime.now());
+            TestInvocation testInvocation = new TestInvocation(testId, methodKey, testResult);
+            runningTests.put(testId, testInvocation);
+            testInvocation.context = TestContext.begin(testId, testResult);
+            if (watchdog != null) {
+                testInvocation.timeout = watchdog.watch(testId, testResult, Thread.currentThread());
+            }
 
             System.out.println("🔵 Test started: " + testId);
 
         } catch (Exception e) {
             System.err.println("Error in testStarted for " + testId + ": " + e.getMessage());
+        } finally {
+            overhead.testStarted(start);
         }
     }
 
+    private static Method resolveMethod(Class<?> testClass, String methodName, String descriptor) {
+        Map<String, Method> methods = resolvedMethods.get(testClass);
+        String key = descriptor != null ? methodName + descriptor : methodName;
+        Method method = methods.get(key);
+        if (method == null) {
+            method = MethodDescriptors.findDeclaredMethod(testClass, methodName, descriptor);
+            if (method != null) {
+                methods.put(key, method);
+            }
+        }
+        return method;
+    }
+
     /**
-     * Called when test execution completes
+     * Called when test execution completes.
+     * <p>
+     * The first invocation of a method and every failing invocation are kept in full;
+     * further passing invocations only update the totals and the method's invocation statistics.
      */
     public static void testFinished(String testId, boolean success, String errorMessage) {
+        finishTest(testId, success, errorMessage, null);
+    }
+
+    /**
+     * Called when a test fails with an exception or error; the stack trace, causes included,
+     * is stored once per distinct trace in the report
+     */
+    public static void testFailed(String testId, Throwable failure) {
+        String errorMessage = failure.getMessage() != null ? failure.getMessage() : failure.toString();
+        finishTest(testId, false, errorMessage, failure);
+    }
+
+    private static void finishTest(String testId, boolean success, String errorMessage, Throwable failure) {
+        long start = System.nanoTime();
         try {
-            TestResult testResult = currentTestResults.get(testId);
-            if (testResult != null) {
+            TestInvocation testInvocation = runningTests.remove(testId);
+            if (testInvocation != null) {
+                if (testInvocation.quarantinedFailure != null) {
+                    failure = testInvocation.quarantinedFailure;
+                    success = false;
+                    errorMessage = failure.getMessage() != null ? failure.getMessage() : failure.toString();
+                }
+                TestContext.end(testId);
+                if (testInvocation.context != null) {
+                    testInvocation.context.markFinished();
+                }
+                if (testInvocation.timeout != null) {
+                    testInvocation.timeout.cancel();
+                }
+
+                TestResult testResult = testInvocation.result;
+                if (success && !testResult.getAttempts().isEmpty()) {
+                    testResult.addAttempt(new AttemptResult(testResult.getAttempts().size() + 1, true,
+                            testInvocation.attemptMicros(), null, null, null));
+                }
                 testResult.markCompleted(success, errorMessage);
-                testReport.addTestResult(testResult);
+                if (failure != null) {
+                    testResult.setErrorType(failure.getClass().getName());
+                    testResult.setStackTraceId(stackTraces.intern(failure));
+                }
+                if (transformer != null && !transformer.impactPackages.isEmpty() && testInvocation.context != null) {
+                    TestImpactRecorder.testFinished(testResult.getClassName(), testResult.getMethodName(),
+                            testInvocation.context.getClassHits());
+                }
 
-                currentTestResults.remove(testId);
-                testStartTimes.remove(testId);
+                long elapsedMicros = testInvocation.elapsedMicros();
+                long finished = testReport.invocationStatsFor(testInvocation.methodKey).record(elapsedMicros, success);
+                if (history != null) {
+                    history.record(testResult.getClassName() + "#" + testResult.getMethodName(), elapsedMicros, success,
+                            testResult.isFlaky());
+                }
+                if (finished == 1 || !success || testResult.isFlaky() || retainAll) {
+                    retention.add(testResult);
+                } else {
+                    testReport.countTestResult(testResult);
+                }
+                if (collector != null) {
+                    collector.send(testResult);
+                }
 
-                String status = success ? "✅ PASS" : "❌ FAIL";
+                String status = testResult.isQuarantined() ? "🟡 QUARANTINED" : testResult.isFlaky() ? "🟠 FLAKY"
+                        : success ? "✅ PASS" : "❌ FAIL";
                 System.out.println(status + " Test finished: " + testId);
 
                 if (!success && errorMessage != null) {
@@ -208,6 +606,19 @@ public class TestReportAgent {
             }
         } catch (Exception e) {
             System.err.println("Error in testFinished for " + testId + ": " + e.getMessage());
+        } finally {
+            overhead.testFinished(start);
+        }
+    }
+
+    /**
+     * Marks step completion of the test the calling thread works for. Works on executor
+     * threads when the task was submitted through {@link TestContext} wrappers.
+     */
+    public static void stepCompleted(int stepOrder, boolean success, String error) {
+        TestContext context = TestContext.current();
+        if (context != null && !context.isFinished()) {
+            context.getResult().markStepCompleted(stepOrder, success, error);
         }
     }
 
@@ -216,9 +627,9 @@ public class TestReportAgent {
      */
     public static void testStepCompleted(String testId, int stepOrder, boolean success, String error) {
         try {
-            TestResult testResult = currentTestResults.get(testId);
-            if (testResult != null) {
-                testResult.markStepCompleted(stepOrder, success, error);
+            TestInvocation testInvocation = runningTests.get(testId);
+            if (testInvocation != null) {
+                testInvocation.result.markStepCompleted(stepOrder, success, error);
             }
         } catch (Exception e) {
             System.err.println("Error in testStepCompleted for " + testId + ": " + e.getMessage());
@@ -230,38 +641,96 @@ public class TestReportAgent {
      */
     private static void generateFinalReport() {
         try {
+            if (watchdog != null) {
+                watchdog.stop();
+            }
+
             // Complete all unfinished tests
-            for (String testId : currentTestResults.keySet()) {
+            for (String testId : runningTests.keySet()) {
                 testFinished(testId, false, "Test did not complete properly");
             }
-
-            // Create report directory
-            Path outputPath = Paths.get(OUTPUT_DIRECTORY);
-            if (!Files.exists(outputPath)) {
-                Files.createDirectories(outputPath);
-                System.out.println("Created output directory: " + OUTPUT_DIRECTORY);
+            if (collector != null) {
+                collector.close();
             }
 
-            // Write report to file
-            ObjectMapper objectMapper = new ObjectMapper();
-            objectMapper.registerModule(new JavaTimeModule());
+            long reportStart = System.nanoTime();
+            File outputFile = writeReport();
+            System.out.println("📊 Report generated: " + outputFile.getAbsolutePath());
 
-            if (PRETTY_PRINT) {
-                objectMapper.enable(SerializationFeature.INDENT_OUTPUT);
+            if (config.isBinaryReport()) {
+                File binaryFile = new File(config.getOutputDirectory(),
+                        config.getReportFileName().replaceFirst("\\.json$", "") + BinaryReportFormat.FILE_EXTENSION);
+                BinaryReportFormat.write(testReport, binaryFile);
+                System.out.println("📊 Binary report generated: " + binaryFile.getAbsolutePath());
             }
 
-            File outputFile = new File(OUTPUT_DIRECTORY, REPORT_FILE_NAME);
-            objectMapper.writeValue(outputFile, testReport);
+            if (config.isHtmlReport()) {
+                File htmlDirectory = new File(config.getOutputDirectory(), "html");
+                File page = new HtmlReportGenerator(config.getHtmlChunkSize()).generate(testReport, htmlDirectory);
+                System.out.println("📊 HTML report generated: " + page.getAbsolutePath());
+            }
 
-            System.out.println("📊 Report generated: " + outputFile.getAbsolutePath());
+            if (config.isTraceReport()) {
+                File traceFile = new File(config.getOutputDirectory(), ChromeTraceWriter.DEFAULT_FILE_NAME);
+                TimelineAnalysis timeline = ChromeTraceWriter.write(testReport, traceFile);
+                System.out.println(String.format("📊 Timeline generated: %s (%d lanes, %.0f%% utilized, tail %.1fms)",
+                        traceFile.getAbsolutePath(), timeline.getLanes().size(),
+                        timeline.getUtilization() * 100, timeline.getTailMicros() / 1000.0));
+            }
+
+            if (transformer != null && !transformer.impactPackages.isEmpty()) {
+                File impactFile = new File(config.getImpactFile());
+                TestImpactRecorder.write(impactFile);
+                System.out.println("📊 Test impact map updated: " + impactFile.getAbsolutePath());
+            }
+            if (history != null && !history.isEmpty()) {
+                File historyFile = new File(config.getHistoryFile());
+                history.mergeInto(historyFile);
+                System.out.println("📊 Test history updated: " + historyFile.getAbsolutePath());
+            }
+            overhead.reportWritten(reportStart);
             printSummary();
 
         } catch (Exception e) {
             System.err.println("Error generating final report: " + e.getMessage());
             e.printStackTrace();
+        } finally {
+            retention.close();
         }
     }
 
+    /**
+     * Writes the report collected so far without finishing running tests,
+     * so that a hung fork killed by CI still leaves a report behind
+     */
+    static void flushReport() {
+        try {
+            long start = System.nanoTime();
+            File outputFile = writeReport();
+            overhead.reportWritten(start);
+            System.out.println("📊 Report flushed: " + outputFile.getAbsolutePath());
+        } catch (Exception e) {
+            System.err.println("Error flushing report: " + e.getMessage());
+        }
+    }
+
+    private static synchronized File writeReport() throws IOException {
+        // Create report directory
+        Path outputPath = Paths.get(config.getOutputDirectory());
+        if (!Files.exists(outputPath)) {
+            Files.createDirectories(outputPath);
+            System.out.println("Created output directory: " + config.getOutputDirectory());
+        }
+
+        // Write report to file, streaming results spilled to disk
+        File outputFile = new File(config.getOutputDirectory(), config.getReportFileName());
+        synchronized (testReport) {
+            testReport.setAgentOverhead(overhead.toMap());
+            JsonReportWriter.write(testReport, outputFile, config.isPrettyPrint());
+        }
+        return outputFile;
+    }
+
     /**
      * Prints test execution summary
      */
@@ -290,6 +759,54 @@ public class TestReportAgent {
             testReport.getCategorySummary().forEach((category, count) ->
                     System.out.println("  " + category + ": " + count + " tests"));
         }
+
+        int spilled = retention.getSpilledCount();
+        if (spilled > 0) {
+            System.out.println("Spilled to disk: " + spilled + " passing results (heap budget "
+                    + config.getRetentionHeapBudget() + " bytes)");
+        }
+
+        Map<String, InvocationStats> invocationStats = testReport.getInvocationStats();
+        if (!invocationStats.isEmpty()) {
+            System.out.println("--- Repeated Invocations ---");
+            invocationStats.forEach((methodKey, stats) ->
+                    System.out.println(String.format("  %s: %d runs, %d failed, p50 %.1fms, p99 %.1fms, max %.1fms",
+                            methodKey, stats.getCount(), stats.getFailed(),
+                            stats.getP50Millis(), stats.getP99Millis(), stats.getMaxMillis())));
+        }
+
+        long timedOut = testReport.getTestResults().stream().filter(TestResult::isTimedOut).count();
+        if (timedOut > 0) {
+            System.out.println("Timed Out: " + timedOut + " (see hangStackTrace and threadDump in the report)");
+        }
+        long flaky = testReport.getTestResults().stream().filter(TestResult::isFlaky).count();
+        if (flaky > 0) {
+            System.out.println("Flaky: " + flaky + " passed only on a rerun (see attempts in the report)");
+        }
+        long quarantined = testReport.getTestResults().stream().filter(TestResult::isQuarantined).count();
+        if (quarantined > 0) {
+            System.out.println("Quarantined: " + quarantined + " failures of known flaky tests did not fail the run");
+        }
+
+        System.out.println("--- Agent Overhead ---");
+        System.out.println(String.format("  Class transformation: %.1fms, %d of %d classes instrumented (%d KB parsed, %d KB written)",
+                overhead.getTransformMicros() / 1000.0, overhead.getTransformedClasses(), overhead.getTransformCalls(),
+                overhead.getBytesParsed() / 1024, overhead.getBytesWritten() / 1024));
+        System.out.println(String.format("  Test start: %.1fms for %d tests (annotations %.1fms)",
+                overhead.getTestStartMicros() / 1000.0, overhead.getTestsStarted(), overhead.getAnnotationMicros() / 1000.0));
+        System.out.println(String.format("  Test finish: %.1fms for %d tests",
+                overhead.getTestFinishMicros() / 1000.0, overhead.getTestsFinished()));
+        System.out.println(String.format("  Report writing: %.1fms", overhead.getReportMicros() / 1000.0));
+        System.out.println(String.format("  Total: %.1fms", overhead.getTotalMicros() / 1000.0));
+
+        if (collector != null) {
+            System.out.println("Collector: " + collector.getStatus());
+        }
+
+        int distinctTraces = testReport.getStackTraces().size();
+        if (distinctTraces > 0) {
+            System.out.println("Distinct failure stack traces: " + distinctTraces + " (see stackTraces in the report)");
+        }
     }
 
     /**
@@ -300,12 +817,23 @@ public class TestReportAgent {
     }
 
     /**
-     * Resets current report (for testing)
+     * Resets current report (for testing); before the first test there is nothing to reset
      */
     public static void resetReport() {
+        if (!initialized) {
+            return;
+        }
+        retention.close();
         testReport = new TestReport();
-        currentTestResults.clear();
-        testStartTimes.clear();
+        retention = new ResultRetention(testReport, config);
+        // Traces of later failures belong in the new report, and the old one can be collected
+        stackTraces = new StackTraceInterner(testReport, config.getStackTraceMaxDepth());
+        runningTests.values().forEach(testInvocation -> {
+            if (testInvocation.timeout != null) {
+                testInvocation.timeout.cancel();
+            }
+        });
+        runningTests.clear();
     }
 
     /**
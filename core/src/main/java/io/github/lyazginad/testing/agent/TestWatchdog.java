@@ -0,0 +1,115 @@
+package io.github.lyazginad.testing.agent;
+
+import io.github.lyazginad.testing.annotations.TestLevel;
+import io.github.lyazginad.testing.model.TestResult;
+import io.github.lyazginad.testing.util.HashedWheelTimer;
+
+import java.lang.management.LockInfo;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MonitorInfo;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches in-flight tests and captures diagnostics for tests that exceed the
+ * time limit of their {@code @TestLevel}
+ */
+class TestWatchdog {
+
+    private static final int TICKS_PER_WHEEL = 512;
+
+    private final AgentConfig config;
+    private final HashedWheelTimer timer;
+
+    TestWatchdog(AgentConfig config) {
+        this.config = config;
+        this.timer = new HashedWheelTimer("test-report-watchdog",
+                config.getWatchdogTickMillis(), TimeUnit.MILLISECONDS, TICKS_PER_WHEEL);
+    }
+
+    /**
+     * Starts watching a test running on the given thread; the returned timeout must be cancelled when it finishes
+     */
+    HashedWheelTimer.Timeout watch(String testId, TestResult testResult, Thread thread) {
+        long limit = config.getTimeoutMillis(levelOf(testResult));
+        return timer.newTimeout(() -> onTimeout(testId, testResult, thread, limit), limit, TimeUnit.MILLISECONDS);
+    }
+
+    void stop() {
+        timer.stop();
+    }
+
+    private void onTimeout(String testId, TestResult testResult, Thread thread, long limit) {
+        String stackTrace = formatThread(thread.getName(), thread.getId(), thread.getState(), thread.getStackTrace());
+        testResult.markTimedOut(limit, stackTrace, threadDump());
+
+        System.err.println("⏰ Test exceeded time limit of " + limit + "ms: " + testId);
+        System.err.print(stackTrace);
+
+        if (config.isFailOnTimeout()) {
+            TestReportAgent.testFinished(testId, false, "Test exceeded time limit of " + limit + "ms");
+        }
+        if (config.isFlushOnTimeout()) {
+            TestReportAgent.flushReport();
+        }
+    }
+
+    private static TestLevel.Level levelOf(TestResult testResult) {
+        try {
+            return TestLevel.Level.valueOf(testResult.getTestLevel());
+        } catch (RuntimeException e) {
+            return TestLevel.Level.UNIT;
+        }
+    }
+
+    /**
+     * Full dump of all live threads including locks, without the frame limit of {@link ThreadInfo#toString()}
+     */
+    static String threadDump() {
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        ThreadInfo[] threads = threadBean.dumpAllThreads(
+                threadBean.isObjectMonitorUsageSupported(), threadBean.isSynchronizerUsageSupported());
+
+        StringBuilder dump = new StringBuilder();
+        for (ThreadInfo info : threads) {
+            dump.append('"').append(info.getThreadName()).append("\" #").append(info.getThreadId())
+                    .append(' ').append(info.getThreadState());
+            if (info.getLockName() != null) {
+                dump.append(" on ").append(info.getLockName());
+            }
+            if (info.getLockOwnerName() != null) {
+                dump.append(" owned by \"").append(info.getLockOwnerName()).append("\" #").append(info.getLockOwnerId());
+            }
+            dump.append('\n');
+
+            StackTraceElement[] frames = info.getStackTrace();
+            for (int i = 0; i < frames.length; i++) {
+                dump.append("\tat ").append(frames[i]).append('\n');
+                for (MonitorInfo monitor : info.getLockedMonitors()) {
+                    if (monitor.getLockedStackDepth() == i) {
+                        dump.append("\t- locked ").append(monitor).append('\n');
+                    }
+                }
+            }
+            LockInfo[] synchronizers = info.getLockedSynchronizers();
+            if (synchronizers.length > 0) {
+                dump.append("\tLocked synchronizers:\n");
+                for (LockInfo synchronizer : synchronizers) {
+                    dump.append("\t- ").append(synchronizer).append('\n');
+                }
+            }
+            dump.append('\n');
+        }
+        return dump.toString();
+    }
+
+    private static String formatThread(String name, long id, Thread.State state, StackTraceElement[] frames) {
+        StringBuilder text = new StringBuilder();
+        text.append('"').append(name).append("\" #").append(id).append(' ').append(state).append('\n');
+        for (StackTraceElement frame : frames) {
+            text.append("\tat ").append(frame).append('\n');
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,259 @@
+package io.github.lyazginad.testing.collector;
+
+import io.github.lyazginad.testing.model.TestReport;
+import io.github.lyazginad.testing.model.TestResult;
+import io.github.lyazginad.testing.report.BinaryReportFormat;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Streams finished test results of this JVM to a collector.
+ * <p>
+ * Results are queued and sent in batches by a daemon thread. The queue is bounded: when
+ * the collector falls behind, test threads wait for room, up to the acknowledgement
+ * timeout, and then write the result to a journal file in the binary report format,
+ * which the collector merges when it shuts down. If the collector cannot be reached or
+ * stops answering, all further results go to the journal; the batch left without an
+ * answer goes to a journal of its own, see {@link CollectorProtocol}.
+ */
+public class CollectorClient implements Closeable {
+
+    private static final int CONNECT_TIMEOUT_MILLIS = 2_000;
+    private static final long CLOSE_TIMEOUT_MILLIS = 30_000;
+
+    private final String host;
+    private final int port;
+    private final int batchSize;
+    private final long ackTimeoutMillis;
+    private final File journalFile;
+    private final TestReport source;
+    private final BlockingQueue<TestResult> queue;
+    private final Thread sender;
+    /** Tells the collector which batches of this JVM it applied */
+    private final long clientId = ThreadLocalRandom.current().nextLong();
+
+    private volatile boolean running = true;
+    private boolean unavailable;
+    private Socket socket;
+    private DataOutputStream out;
+    private DataInputStream in;
+    private BinaryReportFormat.Writer journal;
+    private TestReport journalReport;
+
+    private long sequence;
+    private long sent;
+    private long batches;
+    private long journaled;
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * @param source report holding the stack traces the results refer to
+     */
+    public CollectorClient(String address, int batchSize, int queueCapacity, long ackTimeoutMillis,
+                           File journalFile, TestReport source) {
+        int separator = address.lastIndexOf(':');
+        this.host = separator > 0 ? address.substring(0, separator) : "127.0.0.1";
+        this.port = Integer.parseInt(address.substring(separator + 1));
+        this.batchSize = Math.max(1, batchSize);
+        this.ackTimeoutMillis = ackTimeoutMillis;
+        this.journalFile = journalFile;
+        this.source = source;
+        this.queue = new ArrayBlockingQueue<>(Math.max(this.batchSize, queueCapacity));
+        this.sender = new Thread(this::sendLoop, "test-report-collector-client");
+        this.sender.setDaemon(true);
+    }
+
+    public void start() {
+        sender.start();
+    }
+
+    /**
+     * Queues a finished result; waits while the queue is full, and journals the result if it stays full
+     */
+    public void send(TestResult result) {
+        if (!running) {
+            return;
+        }
+        try {
+            if (queue.offer(result, ackTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            journal(Collections.singletonList(result));
+        }
+    }
+
+    public synchronized String getStatus() {
+        String status = String.format("sent %d results in %d batches to %s:%d", sent, batches, host, port);
+        if (journaled > 0) {
+            status += String.format(", %d journaled to %s", journaled, journalFile);
+        }
+        if (dropped.get() > 0) {
+            status += String.format(", %d dropped", dropped.get());
+        }
+        return status;
+    }
+
+    /**
+     * Sends everything queued so far and disconnects
+     */
+    @Override
+    public void close() {
+        running = false;
+        try {
+            sender.join(CLOSE_TIMEOUT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            disconnect();
+            if (journal != null) {
+                try {
+                    journal.finish(journalReport);
+                    journal.close();
+                } catch (IOException e) {
+                    System.err.println("Could not finish collector journal " + journalFile + ": " + e.getMessage());
+                }
+                journal = null;
+            }
+        }
+    }
+
+    private void sendLoop() {
+        List<TestResult> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                TestResult first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                send(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private synchronized void send(List<TestResult> batch) {
+        if (!unavailable) {
+            byte[] payload = null;
+            try {
+                if (socket == null) {
+                    connect();
+                }
+                payload = CollectorProtocol.encodeBatch(clientId, ++sequence, batch, source);
+                CollectorProtocol.writeFrame(out, CollectorProtocol.BATCH, payload);
+                int accepted = in.readInt();
+                sent += accepted;
+                batches++;
+                return;
+            } catch (IOException e) {
+                System.err.println("Collector at " + host + ":" + port + " is unavailable (" + e.getMessage()
+                        + "), journaling results to " + journalFile);
+                unavailable = true;
+                disconnect();
+            }
+            if (payload != null && journalUnacknowledged(payload, batch.size())) {
+                return;
+            }
+        }
+        journal(batch);
+    }
+
+    /**
+     * Journals a batch the collector may have applied; it merges the file only if it did not
+     */
+    private boolean journalUnacknowledged(byte[] payload, int results) {
+        File file = CollectorProtocol.unacknowledgedJournal(journalFile, clientId, sequence);
+        try {
+            File directory = file.getAbsoluteFile().getParentFile();
+            if (directory != null) {
+                Files.createDirectories(directory.toPath());
+            }
+            try (OutputStream out = Files.newOutputStream(file.toPath())) {
+                out.write(payload, CollectorProtocol.BATCH_HEADER_LENGTH, payload.length - CollectorProtocol.BATCH_HEADER_LENGTH);
+            }
+            journaled += results;
+            return true;
+        } catch (IOException e) {
+            System.err.println("Could not journal the unacknowledged batch to " + file + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    private void connect() throws IOException {
+        socket = new Socket();
+        socket.setTcpNoDelay(true);
+        socket.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT_MILLIS);
+        socket.setSoTimeout((int) Math.min(Integer.MAX_VALUE, ackTimeoutMillis));
+        out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+        in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+    }
+
+    private void disconnect() {
+        if (socket != null) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Closing anyway
+            }
+            socket = null;
+        }
+    }
+
+    private void journal(List<TestResult> batch) {
+        try {
+            if (journal == null) {
+                File directory = journalFile.getAbsoluteFile().getParentFile();
+                if (directory != null) {
+                    Files.createDirectories(directory.toPath());
+                }
+                journalReport = new TestReport();
+                journal = new BinaryReportFormat.Writer(Files.newOutputStream(journalFile.toPath()),
+                        journalReport.getExecutionTime());
+            }
+            for (TestResult result : batch) {
+                journal.write(result);
+                journalReport.countTestResult(result);
+                String stackTraceId = result.getStackTraceId();
+                if (stackTraceId != null && source != null && !journalReport.hasStackTrace(stackTraceId)) {
+                    String stackTrace = source.getStackTrace(stackTraceId);
+                    if (stackTrace != null) {
+                        journalReport.addStackTrace(stackTraceId, stackTrace);
+                    }
+                }
+            }
+            journal.flush();
+            journaled += batch.size();
+        } catch (IOException e) {
+            System.err.println("Could not journal " + batch.size() + " results to " + journalFile + ": " + e.getMessage());
+            dropped.addAndGet(batch.size());
+        }
+    }
+}
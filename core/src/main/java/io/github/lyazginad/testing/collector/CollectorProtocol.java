@@ -0,0 +1,106 @@
+package io.github.lyazginad.testing.collector;
+
+import io.github.lyazginad.testing.model.TestReport;
+import io.github.lyazginad.testing.model.TestResult;
+import io.github.lyazginad.testing.report.BinaryReportFormat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Wire format between agents and the collector.
+ * <p>
+ * A client sends frames of {@code type, length, payload}. A batch payload starts with the
+ * client's random id and the batch's sequence number, followed by a complete
+ * {@link BinaryReportFormat} stream: the results and a trailer with the stack traces they
+ * refer to. The collector answers every frame with one int: the number of results accepted
+ * for a batch, the number of collected tests otherwise. A client sends the next batch only
+ * after the answer to the previous one, which keeps a slow collector from being flooded.
+ * <p>
+ * A batch whose answer does not arrive may have been applied all the same. The client
+ * journals it to a file of its own named after its id and sequence number, which the
+ * collector skips if it applied that batch.
+ */
+final class CollectorProtocol {
+
+    static final int BATCH = 1;
+    static final int PING = 2;
+    static final int SHUTDOWN = 3;
+
+    /** Largest accepted frame; guards the collector against garbage on its port */
+    static final int MAX_FRAME_LENGTH = 64 << 20;
+    /** Client id and sequence number in front of a batch */
+    static final int BATCH_HEADER_LENGTH = 2 * Long.BYTES;
+
+    private static final Pattern UNACKNOWLEDGED_JOURNAL = Pattern.compile("\\.batch-([0-9a-f]{1,16})-(\\d+)\\.journal$");
+
+    private CollectorProtocol() {
+    }
+
+    static byte[] encodeBatch(long clientId, long sequence, List<TestResult> results, TestReport source)
+            throws IOException {
+        TestReport batch = new TestReport();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(BATCH_HEADER_LENGTH + results.size() * 128);
+        DataOutputStream header = new DataOutputStream(bytes);
+        header.writeLong(clientId);
+        header.writeLong(sequence);
+        try (BinaryReportFormat.Writer writer = new BinaryReportFormat.Writer(bytes, batch.getExecutionTime())) {
+            for (TestResult result : results) {
+                writer.write(result);
+                batch.countTestResult(result);
+                String stackTraceId = result.getStackTraceId();
+                if (stackTraceId != null && source != null) {
+                    String stackTrace = source.getStackTrace(stackTraceId);
+                    if (stackTrace != null) {
+                        batch.addStackTrace(stackTraceId, stackTrace);
+                    }
+                }
+            }
+            writer.finish(batch);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Journal file of a batch that was sent but not acknowledged
+     */
+    static File unacknowledgedJournal(File journal, long clientId, long sequence) {
+        return new File(journal.getPath() + ".batch-" + Long.toHexString(clientId) + "-" + sequence
+                + CollectorServer.JOURNAL_EXTENSION);
+    }
+
+    /**
+     * Client id and sequence number of an unacknowledged batch's journal, or null for other journals
+     */
+    static long[] unacknowledgedBatch(String journalName) {
+        Matcher matcher = UNACKNOWLEDGED_JOURNAL.matcher(journalName);
+        return matcher.find()
+                ? new long[] {Long.parseUnsignedLong(matcher.group(1), 16), Long.parseLong(matcher.group(2))}
+                : null;
+    }
+
+    static void writeFrame(DataOutputStream out, int type, byte[] payload) throws IOException {
+        out.writeByte(type);
+        out.writeInt(payload.length);
+        out.write(payload);
+        out.flush();
+    }
+
+    /**
+     * Reads the payload of a frame whose type and length were read
+     */
+    static byte[] readPayload(DataInputStream in, int length) throws IOException {
+        if (length < 0 || length > MAX_FRAME_LENGTH) {
+            throw new IOException("Invalid frame length: " + length);
+        }
+        byte[] payload = new byte[length];
+        in.readFully(payload);
+        return payload;
+    }
+}
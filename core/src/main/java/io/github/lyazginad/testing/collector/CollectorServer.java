@@ -0,0 +1,352 @@
+package io.github.lyazginad.testing.collector;
+
+import io.github.lyazginad.testing.agent.AgentConfig;
+import io.github.lyazginad.testing.model.TestReport;
+import io.github.lyazginad.testing.model.TestResult;
+import io.github.lyazginad.testing.report.BinaryReportFormat;
+import io.github.lyazginad.testing.report.JsonReportWriter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collects the results of all test JVMs of a build into one report while they run.
+ * <p>
+ * Listens on the loopback interface. Every connected agent streams batches of finished
+ * results; the collector adds them to a single {@link TestReport}, periodically writes
+ * a live snapshot of it, and writes the final report on shutdown, after closing the
+ * connections and merging the journals of agents that could not reach it. Journals of
+ * batches it applied without the agent learning so are skipped. Started by the {@code start-collector}
+ * goal; options are {@code key=value} arguments:
+ * <pre>
+ * java -cp testing-core.jar:... io.github.lyazginad.testing.collector.CollectorServer \
+ *     port=0 portFile=target/testing-collector.port outputDirectory=target/test-reports
+ * </pre>
+ */
+public class CollectorServer {
+
+    public static final String DEFAULT_REPORT_FILE_NAME = "collected-test-report.json";
+    public static final String LIVE_REPORT_FILE_NAME = "live-test-report.json";
+    public static final String JOURNAL_EXTENSION = ".journal";
+
+    /** How long shutdown waits for a connection to finish the batch it is applying */
+    private static final long HANDLER_STOP_TIMEOUT_MILLIS = 10_000;
+
+    private final TestReport report = new TestReport();
+    private final ServerSocket serverSocket;
+    private final File outputDirectory;
+    private final String reportFileName;
+    private final File journalDirectory;
+    private final long idleTimeoutMillis;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "test-report-collector-snapshot");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final CountDownLatch stopped = new CountDownLatch(1);
+    /** Open connections by the thread handling them */
+    private final Map<Thread, Socket> connections = new ConcurrentHashMap<>();
+    /** Highest sequence number of the batches applied, by client id */
+    private final Map<Long, Long> appliedBatches = new ConcurrentHashMap<>();
+    private final AtomicLong lastActivity = new AtomicLong(System.currentTimeMillis());
+    private long snapshotTests;
+    private volatile boolean shuttingDown;
+
+    public CollectorServer(int port, File outputDirectory, String reportFileName, File journalDirectory,
+                           long idleTimeoutMillis) throws IOException {
+        this.serverSocket = new ServerSocket();
+        this.serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        this.outputDirectory = outputDirectory;
+        this.reportFileName = reportFileName;
+        this.journalDirectory = journalDirectory;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+    }
+
+    public static void main(String[] args) throws Exception {
+        AgentConfig config = AgentConfig.parse(String.join(",", args));
+        File outputDirectory = new File(config.getOutputDirectory());
+        CollectorServer server = new CollectorServer(
+                config.getInt("port", 0),
+                outputDirectory,
+                config.getString("reportFileName", DEFAULT_REPORT_FILE_NAME),
+                new File(config.getString("journalDirectory", outputDirectory.getPath())),
+                config.getMillis("idleTimeout", 30 * 60_000L));
+        server.start(config.getMillis("snapshotInterval", 5_000L));
+
+        String portFile = config.getString("portFile", null);
+        if (portFile != null) {
+            // Written last: the port file tells the build the collector accepts connections
+            File file = new File(portFile).getAbsoluteFile();
+            Files.createDirectories(file.getParentFile().toPath());
+            File temporary = new File(file.getPath() + ".tmp");
+            Files.write(temporary.toPath(), String.valueOf(server.getPort()).getBytes(StandardCharsets.UTF_8));
+            Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        System.out.println("Collector listening on 127.0.0.1:" + server.getPort());
+        server.awaitStop();
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public TestReport getReport() {
+        return report;
+    }
+
+    public void start(long snapshotIntervalMillis) {
+        Thread acceptor = new Thread(this::acceptLoop, "test-report-collector-accept");
+        acceptor.start();
+        scheduler.scheduleWithFixedDelay(this::snapshot, snapshotIntervalMillis, snapshotIntervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    public void awaitStop() throws InterruptedException {
+        stopped.await();
+    }
+
+    /**
+     * Asks a running collector to write its report and exit; returns the number of collected tests
+     */
+    public static int requestShutdown(int port, int timeoutMillis) throws IOException {
+        return request(port, CollectorProtocol.SHUTDOWN, timeoutMillis);
+    }
+
+    /**
+     * Number of tests collected so far by a collector on the port
+     */
+    public static int ping(int port, int timeoutMillis) throws IOException {
+        return request(port, CollectorProtocol.PING, timeoutMillis);
+    }
+
+    private static int request(int port, int type, int timeoutMillis) throws IOException {
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), timeoutMillis);
+            socket.setSoTimeout(timeoutMillis);
+            CollectorProtocol.writeFrame(new DataOutputStream(socket.getOutputStream()), type, new byte[0]);
+            return new DataInputStream(socket.getInputStream()).readInt();
+        }
+    }
+
+    private void acceptLoop() {
+        while (!shuttingDown) {
+            try {
+                Socket socket = serverSocket.accept();
+                // Not a daemon, so the answer to a shutdown request is written before the JVM exits
+                Thread handler = new Thread(() -> handle(socket), "test-report-collector-" + socket.getPort());
+                connections.put(handler, socket);
+                handler.start();
+            } catch (IOException e) {
+                if (!shuttingDown) {
+                    System.err.println("Collector stopped accepting connections: " + e.getMessage());
+                    shutdown();
+                }
+            }
+        }
+    }
+
+    private void handle(Socket socket) {
+        try (Socket connection = socket) {
+            if (shuttingDown) {
+                return;
+            }
+            connection.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(connection.getInputStream(), 1 << 16));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(connection.getOutputStream()));
+            while (true) {
+                int type = in.read();
+                if (type < 0) {
+                    return;
+                }
+                byte[] payload = CollectorProtocol.readPayload(in, in.readInt());
+                lastActivity.set(System.currentTimeMillis());
+                switch (type) {
+                    case CollectorProtocol.BATCH:
+                        out.writeInt(accept(payload));
+                        break;
+                    case CollectorProtocol.PING:
+                        out.writeInt(report.getTotalTests());
+                        break;
+                    case CollectorProtocol.SHUTDOWN:
+                        shutdown();
+                        out.writeInt(report.getTotalTests());
+                        out.flush();
+                        return;
+                    default:
+                        throw new IOException("Unknown frame type " + type);
+                }
+                out.flush();
+            }
+        } catch (IOException e) {
+            if (!shuttingDown) {
+                System.err.println("Collector connection from port " + socket.getPort() + " failed: " + e.getMessage());
+            }
+        } finally {
+            connections.remove(Thread.currentThread());
+        }
+    }
+
+    int accept(byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        long clientId = in.readLong();
+        long sequence = in.readLong();
+        int accepted = 0;
+        try (BinaryReportFormat.Reader reader = new BinaryReportFormat.Reader(in)) {
+            TestResult result;
+            while ((result = reader.next()) != null) {
+                report.addTestResult(result);
+                accepted++;
+            }
+            reader.getStackTraces().forEach(report::addStackTrace);
+        }
+        appliedBatches.merge(clientId, sequence, Math::max);
+        return accepted;
+    }
+
+    /**
+     * Adds the results agents journaled when they could not reach the collector
+     */
+    private void mergeJournals() {
+        File[] journals = journalDirectory.listFiles((directory, name) -> name.endsWith(JOURNAL_EXTENSION));
+        if (journals == null) {
+            return;
+        }
+        for (File journal : journals) {
+            long[] batch = CollectorProtocol.unacknowledgedBatch(journal.getName());
+            if (batch != null && appliedBatches.getOrDefault(batch[0], 0L) >= batch[1]) {
+                System.out.println("Skipped journal " + journal + ", its batch was collected");
+                delete(journal);
+                continue;
+            }
+            int merged = 0;
+            try (BinaryReportFormat.Reader reader = new BinaryReportFormat.Reader(Files.newInputStream(journal.toPath()))) {
+                TestResult result;
+                while ((result = reader.next()) != null) {
+                    report.addTestResult(result);
+                    merged++;
+                }
+                reader.getStackTraces().forEach(report::addStackTrace);
+            } catch (EOFException e) {
+                // Journal of a JVM that was killed; keep what was read
+            } catch (IOException e) {
+                System.err.println("Could not merge collector journal " + journal + ": " + e.getMessage());
+                continue;
+            }
+            System.out.println("Merged " + merged + " results from journal " + journal);
+            delete(journal);
+        }
+    }
+
+    private static void delete(File journal) {
+        if (!journal.delete()) {
+            journal.deleteOnExit();
+        }
+    }
+
+    private synchronized void snapshot() {
+        if (connections.isEmpty() && System.currentTimeMillis() - lastActivity.get() > idleTimeoutMillis) {
+            System.out.println("Collector idle for " + idleTimeoutMillis + "ms, shutting down");
+            shutdown();
+            return;
+        }
+        int total = report.getTotalTests();
+        if (total == snapshotTests || shuttingDown) {
+            return;
+        }
+        snapshotTests = total;
+        System.out.println(String.format("Collected %d tests (%d passed, %d failed) from %d connected JVMs",
+                total, report.getPassedTests(), report.getFailedTests(), connections.size()));
+        try {
+            write(LIVE_REPORT_FILE_NAME);
+        } catch (IOException e) {
+            System.err.println("Could not write live report: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Stops accepting connections, closes the open ones, writes the final report and releases
+     * {@link #awaitStop()}
+     */
+    private synchronized void shutdown() {
+        if (shuttingDown) {
+            return;
+        }
+        shuttingDown = true;
+        scheduler.shutdown();
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            // Closing anyway
+        }
+        stopConnections();
+        mergeJournals();
+        try {
+            File file = write(reportFileName);
+            System.out.println(String.format("Collected report of %d tests (%d failed): %s",
+                    report.getTotalTests(), report.getFailedTests(), file.getAbsolutePath()));
+        } catch (IOException e) {
+            System.err.println("Could not write collected report: " + e.getMessage());
+        }
+        stopped.countDown();
+    }
+
+    /**
+     * Closes the connections other than the calling one and waits for their handlers, so no
+     * batch is applied after the journals are merged. A client that loses its connection
+     * journals the rest of its results.
+     */
+    private void stopConnections() {
+        Thread current = Thread.currentThread();
+        connections.forEach((handler, socket) -> {
+            if (handler != current) {
+                try {
+                    socket.close();
+                } catch (IOException e) {
+                    // Closing anyway
+                }
+            }
+        });
+        for (Thread handler : connections.keySet()) {
+            if (handler == current) {
+                continue;
+            }
+            try {
+                handler.join(HANDLER_STOP_TIMEOUT_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private File write(String fileName) throws IOException {
+        Files.createDirectories(outputDirectory.toPath());
+        File file = new File(outputDirectory, fileName);
+        File temporary = new File(outputDirectory, fileName + ".tmp");
+        synchronized (report) {
+            JsonReportWriter.write(report, temporary, true);
+        }
+        Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return file;
+    }
+}
@@ -0,0 +1,210 @@
+package io.github.lyazginad.testing.context;
+
+import io.github.lyazginad.testing.model.TestResult;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Supplier;
+
+/**
+ * The test a thread is currently working for.
+ * <p>
+ * The agent attaches a context to the thread that starts a test. Work handed to other
+ * threads carries the context along when it is wrapped with {@link #wrap(Runnable)},
+ * {@link #wrap(Callable)}, {@link #wrap(Supplier)} or submitted through
+ * {@link #executor(Executor)} / {@link #executorService(ExecutorService)}: the context
+ * is captured on submission and attached while the task runs. Looking up the current
+ * context is a single thread-local read.
+ * <pre>
+ * ExecutorService pool = TestContext.executorService(Executors.newFixedThreadPool(4));
+ * CompletableFuture.supplyAsync(() -&gt; login(user), TestContext.executor(ForkJoinPool.commonPool()));
+ * </pre>
+ */
+public final class TestContext {
+
+    private static final ThreadLocal<TestContext> CURRENT = new ThreadLocal<>();
+
+    private final String testId;
+    private final TestResult result;
+    private final TestContext parent;
+    private volatile boolean finished;
+    private volatile long[] classHits = new long[0];
+
+    private TestContext(String testId, TestResult result, TestContext parent) {
+        this.testId = testId;
+        this.result = result;
+        this.parent = parent;
+    }
+
+    /**
+     * Context of the calling thread, or null if it does not work for a test
+     */
+    public static TestContext current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Id of the test the calling thread works for, or null
+     */
+    public static String currentTestId() {
+        TestContext context = CURRENT.get();
+        return context != null ? context.testId : null;
+    }
+
+    /**
+     * Starts a test on the calling thread; the context of an enclosing test is restored by {@link #end(String)}
+     */
+    public static TestContext begin(String testId, TestResult result) {
+        TestContext context = new TestContext(testId, result, CURRENT.get());
+        CURRENT.set(context);
+        return context;
+    }
+
+    /**
+     * Ends a test; if it is the context of the calling thread, the enclosing context is restored
+     */
+    public static void end(String testId) {
+        TestContext context = CURRENT.get();
+        if (context != null && context.testId.equals(testId)) {
+            context.finished = true;
+            restore(context.parent);
+        }
+    }
+
+    /**
+     * Attaches a captured context to the calling thread until the returned scope is closed
+     */
+    public static Scope attach(TestContext context) {
+        TestContext previous = CURRENT.get();
+        CURRENT.set(context);
+        return () -> restore(previous);
+    }
+
+    public String getTestId() {
+        return testId;
+    }
+
+    public TestResult getResult() {
+        return result;
+    }
+
+    /**
+     * True once the test has finished; late asynchronous work should no longer record into it
+     */
+    public boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * Records that code of an application class ran for this test (test impact analysis).
+     * Repeated hits of the same class only take a read; the lock is taken once per class.
+     */
+    public void recordClass(int classId) {
+        long[] words = classHits;
+        int word = classId >>> 6;
+        long bit = 1L << classId;
+        if (word < words.length && (words[word] & bit) != 0) {
+            return;
+        }
+        synchronized (this) {
+            words = classHits;
+            if (word >= words.length) {
+                words = Arrays.copyOf(words, Math.max(word + 1, words.length * 2));
+            }
+            words[word] |= bit;
+            classHits = words;
+        }
+    }
+
+    /**
+     * Copy of the ids of application classes that ran for this test
+     */
+    public synchronized BitSet getClassHits() {
+        return BitSet.valueOf(classHits);
+    }
+
+    /**
+     * Marks the context finished without touching any thread's current context
+     */
+    public void markFinished() {
+        this.finished = true;
+    }
+
+    public static Runnable wrap(Runnable task) {
+        TestContext captured = CURRENT.get();
+        if (captured == null) {
+            return task;
+        }
+        return () -> {
+            Scope scope = attach(captured);
+            try {
+                task.run();
+            } finally {
+                scope.close();
+            }
+        };
+    }
+
+    public static <T> Callable<T> wrap(Callable<T> task) {
+        TestContext captured = CURRENT.get();
+        if (captured == null) {
+            return task;
+        }
+        return () -> {
+            Scope scope = attach(captured);
+            try {
+                return task.call();
+            } finally {
+                scope.close();
+            }
+        };
+    }
+
+    public static <T> Supplier<T> wrap(Supplier<T> supplier) {
+        TestContext captured = CURRENT.get();
+        if (captured == null) {
+            return supplier;
+        }
+        return () -> {
+            Scope scope = attach(captured);
+            try {
+                return supplier.get();
+            } finally {
+                scope.close();
+            }
+        };
+    }
+
+    /**
+     * Executor that propagates the submitting thread's context, e.g. for {@code CompletableFuture.*Async}
+     */
+    public static Executor executor(Executor delegate) {
+        return delegate instanceof ContextExecutorService ? delegate : task -> delegate.execute(wrap(task));
+    }
+
+    /**
+     * Executor service that propagates the submitting thread's context to every task
+     */
+    public static ExecutorService executorService(ExecutorService delegate) {
+        return delegate instanceof ContextExecutorService ? delegate : new ContextExecutorService(delegate);
+    }
+
+    private static void restore(TestContext context) {
+        if (context == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(context);
+        }
+    }
+
+    /**
+     * Attachment of a context to a thread
+     */
+    public interface Scope extends AutoCloseable {
+        @Override
+        void close();
+    }
+}
@@ -0,0 +1,238 @@
+package io.github.lyazginad.testing.history;
+
+import io.github.lyazginad.testing.annotations.Priority;
+import io.github.lyazginad.testing.annotations.Severity;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Picks the tests that give the most value within a time budget.
+ * <p>
+ * The value of a test grows with its priority, severity and test level and with how often
+ * it failed recently, and shrinks with its flakiness; its cost is its average duration. Choosing tests is a 0/1 knapsack
+ * problem, solved by dynamic programming over durations rounded to a grid of at most
+ * {@value #MAX_CELLS} cells. Rounding can overshoot the budget or leave part of it unused,
+ * so the results are repaired and topped up with exact durations, and the best of them is
+ * compared with simply taking tests by value per second.
+ */
+public final class BudgetSelector {
+
+    /** Failure rate assumed for tests without history: a new test is as likely to fail as not */
+    public static final double NEW_TEST_FAILURE_RATE = 0.5;
+
+    private static final double FAILURE_WEIGHT = 4.0;
+    private static final int MAX_CELLS = 1 << 16;
+    /** Upper bound of the item x cell table used to reconstruct the choice */
+    private static final long MAX_TABLE_BITS = 1L << 26;
+    private static final long MIN_RESOLUTION_MICROS = 1_000;
+
+    private BudgetSelector() {
+    }
+
+    /**
+     * Value of a test; priority weighs most, a test that always fails is worth five times as much as one that never does.
+     * <p>
+     * Failures explained by flakiness say little about the code and do not add value. A flaky test
+     * also loses value by its flakiness scaled by its severity: a critical one keeps its place, a
+     * trivial one that is always flaky is worth nothing.
+     */
+    public static double value(Priority.Level priority, Severity.Level severity, String level,
+                               double failureRate, double flakiness) {
+        double priorityWeight = 1 << (Priority.Level.values().length - 1
+                - (priority != null ? priority : Priority.Level.P2).ordinal());
+        int severityRank = (severity != null ? severity : Severity.Level.MEDIUM).ordinal();
+        double severityWeight = Severity.Level.values().length - severityRank;
+        double flakyPenalty = flakiness * severityRank / (Severity.Level.values().length - 1);
+        return priorityWeight * severityWeight * levelWeight(level)
+                * (1 + FAILURE_WEIGHT * failureRate * (1 - flakiness)) * (1 - flakyPenalty);
+    }
+
+    /**
+     * Higher level tests cover more code per test
+     */
+    private static double levelWeight(String level) {
+        if (level == null) {
+            return 1.0;
+        }
+        switch (level) {
+            case "INTEGRATION": return 1.5;
+            case "SYSTEM":
+            case "ACCEPTANCE": return 2.0;
+            default: return 1.0;
+        }
+    }
+
+    public static Selection select(List<Candidate> candidates, long budgetMicros) {
+        List<Candidate> selected = new ArrayList<>();
+        List<Candidate> optional = new ArrayList<>();
+        long remaining = budgetMicros;
+        for (Candidate candidate : candidates) {
+            if (candidate.required || candidate.costMicros <= 0) {
+                selected.add(candidate);
+                remaining -= candidate.costMicros;
+            } else {
+                optional.add(candidate);
+            }
+        }
+
+        if (remaining > 0 && !optional.isEmpty()) {
+            List<Candidate> best = fill(new ArrayList<>(), optional, remaining);
+            for (boolean roundUp : new boolean[]{false, true}) {
+                List<Candidate> knapsack = fill(knapsack(optional, remaining, roundUp), optional, remaining);
+                if (valueOf(knapsack) > valueOf(best)) {
+                    best = knapsack;
+                }
+            }
+            selected.addAll(best);
+        }
+
+        double totalValue = valueOf(candidates);
+        return new Selection(selected, totalValue, budgetMicros);
+    }
+
+    /**
+     * Best choice on the rounded durations, then dropped down to the budget on exact durations.
+     * Rounding up never exceeds the budget; rounding to the nearest cell wastes less of it.
+     */
+    private static List<Candidate> knapsack(List<Candidate> items, long budgetMicros, boolean roundUp) {
+        int n = items.size();
+        int cells = (int) Math.max(1, Math.min(Math.min(MAX_CELLS, MAX_TABLE_BITS / n),
+                budgetMicros / MIN_RESOLUTION_MICROS));
+        // Rounded down, so the grid never holds more than the budget
+        long cellMicros = Math.max(1, budgetMicros / cells);
+
+        double[] best = new double[cells + 1];
+        BitSet[] taken = new BitSet[n];
+        int[] weights = new int[n];
+        for (int i = 0; i < n; i++) {
+            Candidate item = items.get(i);
+            long weight = roundUp ? (item.costMicros + cellMicros - 1) / cellMicros
+                    : Math.round((double) item.costMicros / cellMicros);
+            weights[i] = (int) Math.min(Integer.MAX_VALUE, weight);
+            taken[i] = new BitSet(cells + 1);
+            if (weights[i] > cells) {
+                continue;
+            }
+            for (int capacity = cells; capacity >= weights[i]; capacity--) {
+                double with = best[capacity - weights[i]] + item.value;
+                if (with > best[capacity]) {
+                    best[capacity] = with;
+                    taken[i].set(capacity);
+                }
+            }
+        }
+
+        List<Candidate> chosen = new ArrayList<>();
+        int capacity = cells;
+        for (int i = n - 1; i >= 0; i--) {
+            if (taken[i].get(capacity)) {
+                chosen.add(items.get(i));
+                capacity -= weights[i];
+            }
+        }
+
+        long cost = costOf(chosen);
+        if (cost > budgetMicros) {
+            chosen.sort(byDensity());
+            while (cost > budgetMicros && !chosen.isEmpty()) {
+                cost -= chosen.remove(chosen.size() - 1).costMicros;
+            }
+        }
+        return chosen;
+    }
+
+    /**
+     * Adds the tests not chosen yet, best value per second first, while they fit
+     */
+    private static List<Candidate> fill(List<Candidate> chosen, List<Candidate> items, long budgetMicros) {
+        List<Candidate> byDensity = new ArrayList<>(items);
+        byDensity.sort(byDensity());
+        List<Candidate> result = new ArrayList<>(chosen);
+        long cost = costOf(result);
+        Set<Candidate> already = Collections.newSetFromMap(new IdentityHashMap<>());
+        already.addAll(result);
+        for (Candidate item : byDensity) {
+            if (!already.contains(item) && cost + item.costMicros <= budgetMicros) {
+                result.add(item);
+                cost += item.costMicros;
+            }
+        }
+        return result;
+    }
+
+    private static Comparator<Candidate> byDensity() {
+        return Comparator.comparingDouble((Candidate item) -> item.value / item.costMicros).reversed();
+    }
+
+    private static long costOf(List<Candidate> items) {
+        long cost = 0;
+        for (Candidate item : items) {
+            cost += item.costMicros;
+        }
+        return cost;
+    }
+
+    private static double valueOf(List<Candidate> items) {
+        double value = 0;
+        for (Candidate item : items) {
+            value += item.value;
+        }
+        return value;
+    }
+
+    /**
+     * A test method, or a whole test class when the method is null
+     */
+    public static final class Candidate {
+        private final String className;
+        private final String methodName;
+        private final long costMicros;
+        private final double value;
+        private final boolean required;
+
+        public Candidate(String className, String methodName, long costMicros, double value, boolean required) {
+            this.className = className;
+            this.methodName = methodName;
+            this.costMicros = costMicros;
+            this.value = value;
+            this.required = required;
+        }
+
+        public String getClassName() { return className; }
+        public String getMethodName() { return methodName; }
+        public long getCostMicros() { return costMicros; }
+        public double getValue() { return value; }
+        public boolean isRequired() { return required; }
+    }
+
+    /**
+     * Chosen tests and the share of the total value they cover
+     */
+    public static final class Selection {
+        private final List<Candidate> selected;
+        private final double totalValue;
+        private final long budgetMicros;
+
+        Selection(List<Candidate> selected, double totalValue, long budgetMicros) {
+            this.selected = selected;
+            this.totalValue = totalValue;
+            this.budgetMicros = budgetMicros;
+        }
+
+        public List<Candidate> getSelected() { return selected; }
+        public double getTotalValue() { return totalValue; }
+        public double getValue() { return valueOf(selected); }
+        public long getCostMicros() { return costOf(selected); }
+        public long getBudgetMicros() { return budgetMicros; }
+
+        public double getValueCoverage() {
+            return totalValue > 0 ? getValue() / totalValue : 1.0;
+        }
+    }
+}
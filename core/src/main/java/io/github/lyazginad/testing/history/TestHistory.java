@@ -0,0 +1,240 @@
+package io.github.lyazginad.testing.history;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Outcome and duration of every test ({@code Class#method}) over past runs.
+ * <p>
+ * Each entry keeps the outcomes of the last 64 runs as bitmasks, newest run in the lowest
+ * bit, and a moving average of the time a run of the test took. All invocations of a
+ * method in one run count as one run: their durations add up, the run failed if any
+ * invocation failed, and it was flaky if any invocation passed only on a rerun.
+ */
+public class TestHistory {
+
+    public static final String DEFAULT_FILE_NAME = "test-history.bin";
+
+    /** Runs the recent failure rate is computed over */
+    public static final int RECENT_RUNS = 20;
+
+    private static final int MAGIC = 0x54485354; // "THST"
+    private static final int VERSION = 2;
+    private static final int FIRST_VERSION_WITH_FLAKY_RUNS = 2;
+    /** Weight of the latest run in the moving average duration */
+    private static final double DURATION_WEIGHT = 0.3;
+
+    private final Map<String, Entry> entries = new TreeMap<>();
+
+    /**
+     * Adds an invocation to the run recorded by this history
+     */
+    public synchronized void record(String testKey, long durationMicros, boolean passed, boolean flaky) {
+        Entry entry = entries.get(testKey);
+        if (entry == null) {
+            entry = new Entry();
+            entry.runs = 1;
+            entries.put(testKey, entry);
+        }
+        entry.meanMicros += durationMicros;
+        if (!passed) {
+            entry.failures |= 1L;
+        }
+        if (flaky) {
+            entry.flakyRuns |= 1L;
+        }
+        entry.lastRunMillis = System.currentTimeMillis();
+    }
+
+    public synchronized Entry get(String testKey) {
+        return entries.get(testKey);
+    }
+
+    public synchronized Map<String, Entry> getEntries() {
+        return Collections.unmodifiableMap(new TreeMap<>(entries));
+    }
+
+    public synchronized boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    /**
+     * Adds the run recorded by this history to earlier runs; tests that did not run keep their entries
+     */
+    public synchronized TestHistory mergeInto(TestHistory earlier) {
+        entries.forEach((testKey, run) -> {
+            synchronized (earlier) {
+                Entry entry = earlier.entries.get(testKey);
+                if (entry == null) {
+                    earlier.entries.put(testKey, run.copy());
+                } else {
+                    entry.addRun(run.meanMicros, (run.failures & 1L) == 0, (run.flakyRuns & 1L) != 0, run.lastRunMillis);
+                }
+            }
+        });
+        return earlier;
+    }
+
+    /**
+     * Merges this run into the file; the file is locked, so forked test JVMs can share it
+     */
+    public void mergeInto(File file) throws IOException {
+        File directory = file.getAbsoluteFile().getParentFile();
+        if (directory != null) {
+            Files.createDirectories(directory.toPath());
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            FileLock lock = channel.lock();
+            try {
+                TestHistory earlier = new TestHistory();
+                if (channel.size() > 0) {
+                    try {
+                        earlier = read(Channels.newInputStream(channel));
+                    } catch (IOException e) {
+                        System.err.println("Replacing unreadable test history " + file + ": " + e.getMessage());
+                    }
+                }
+                TestHistory merged = mergeInto(earlier);
+
+                channel.truncate(0);
+                channel.position(0);
+                merged.write(Channels.newOutputStream(channel));
+            } finally {
+                lock.release();
+            }
+        }
+    }
+
+    public static TestHistory read(File file) throws IOException {
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            return read(in);
+        }
+    }
+
+    public synchronized void write(OutputStream stream) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(entries.size());
+        for (Map.Entry<String, Entry> test : entries.entrySet()) {
+            Entry entry = test.getValue();
+            out.writeUTF(test.getKey());
+            out.writeInt(entry.runs);
+            out.writeLong(entry.failures);
+            out.writeLong(entry.flakyRuns);
+            out.writeLong(entry.meanMicros);
+            out.writeLong(entry.lastRunMillis);
+        }
+        out.flush();
+    }
+
+    public static TestHistory read(InputStream stream) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(stream));
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a test history");
+        }
+        int version = in.readInt();
+        if (version < 1 || version > VERSION) {
+            throw new IOException("Unsupported test history version: " + version);
+        }
+        TestHistory history = new TestHistory();
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            String testKey = in.readUTF();
+            Entry entry = new Entry();
+            entry.runs = in.readInt();
+            entry.failures = in.readLong();
+            if (version >= FIRST_VERSION_WITH_FLAKY_RUNS) {
+                entry.flakyRuns = in.readLong();
+            }
+            entry.meanMicros = in.readLong();
+            entry.lastRunMillis = in.readLong();
+            history.entries.put(testKey, entry);
+        }
+        return history;
+    }
+
+    /**
+     * Past runs of one test
+     */
+    public static final class Entry {
+        private int runs;
+        /** Bit i is set if the i-th latest run failed */
+        private long failures;
+        /** Bit i is set if the i-th latest run passed only after a rerun */
+        private long flakyRuns;
+        private long meanMicros;
+        private long lastRunMillis;
+
+        private void addRun(long durationMicros, boolean passed, boolean flaky, long runMillis) {
+            failures = (failures << 1) | (passed ? 0L : 1L);
+            flakyRuns = (flakyRuns << 1) | (flaky ? 1L : 0L);
+            meanMicros = runs == 0 ? durationMicros
+                    : Math.round(DURATION_WEIGHT * durationMicros + (1 - DURATION_WEIGHT) * meanMicros);
+            runs = runs == Integer.MAX_VALUE ? runs : runs + 1;
+            lastRunMillis = Math.max(lastRunMillis, runMillis);
+        }
+
+        private Entry copy() {
+            Entry copy = new Entry();
+            copy.runs = runs;
+            copy.failures = failures;
+            copy.flakyRuns = flakyRuns;
+            copy.meanMicros = meanMicros;
+            copy.lastRunMillis = lastRunMillis;
+            return copy;
+        }
+
+        public int getRuns() { return runs; }
+        public long getMeanMicros() { return meanMicros; }
+        public long getLastRunMillis() { return lastRunMillis; }
+
+        /** Whether the latest run failed */
+        public boolean lastFailed() {
+            return runs > 0 && (failures & 1L) != 0;
+        }
+
+        /**
+         * Share of failed runs among the last {@value TestHistory#RECENT_RUNS}
+         */
+        public double getRecentFailureRate() {
+            int window = Math.min(runs, RECENT_RUNS);
+            if (window == 0) {
+                return 0;
+            }
+            return (double) Long.bitCount(failures & ((1L << window) - 1)) / window;
+        }
+
+        /**
+         * Share of flaky runs among the last {@value TestHistory#RECENT_RUNS}: runs that passed only
+         * on a rerun, and isolated failures between two passing runs, which reruns would likely have fixed.
+         * A real regression fails several runs in a row and does not count.
+         */
+        public double getFlakinessScore() {
+            int window = Math.min(runs, RECENT_RUNS);
+            if (window == 0) {
+                return 0;
+            }
+            long recent = (1L << window) - 1;
+            // The latest run has no later neighbour yet, nor the oldest known run an earlier one
+            long neighboured = (runs > window ? recent : recent >>> 1) & ~1L;
+            long isolated = failures & ~(failures << 1) & ~(failures >>> 1) & neighboured;
+            return (double) Long.bitCount((flakyRuns & recent) | isolated) / window;
+        }
+    }
+}
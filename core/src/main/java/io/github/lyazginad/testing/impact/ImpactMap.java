@@ -0,0 +1,183 @@
+package io.github.lyazginad.testing.impact;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Which application classes each test ran, for test impact analysis.
+ * <p>
+ * Classes are numbered in a dictionary that also keeps the CRC32 of every class file
+ * as it was loaded; each test ({@code Class#method}) maps to a bitset over the class ids.
+ * Test classes are recorded with their CRC as well, so new or changed tests can be told
+ * apart from tests whose code is unchanged.
+ */
+public class ImpactMap {
+
+    public static final String DEFAULT_FILE_NAME = "test-impact.idx";
+
+    private static final int MAGIC = 0x54494D50; // "TIMP"
+    private static final int VERSION = 1;
+
+    private final Map<String, Integer> classIds = new HashMap<>();
+    private final List<String> classNames = new ArrayList<>();
+    private final List<Long> classChecksums = new ArrayList<>();
+    private final Map<String, Long> testClassChecksums = new LinkedHashMap<>();
+    private final Map<String, BitSet> tests = new LinkedHashMap<>();
+
+    /**
+     * Registers an application class and returns its id; the checksum is updated for known classes
+     */
+    public synchronized int addClass(String className, long checksum) {
+        Integer id = classIds.get(className);
+        if (id != null) {
+            classChecksums.set(id, checksum);
+            return id;
+        }
+        classIds.put(className, classNames.size());
+        classNames.add(className);
+        classChecksums.add(checksum);
+        return classNames.size() - 1;
+    }
+
+    public synchronized void addTestClass(String className, long checksum) {
+        testClassChecksums.put(className, checksum);
+    }
+
+    /**
+     * Adds the classes a test ran; invocations of the same test are combined
+     */
+    public synchronized void addTest(String testKey, BitSet classes) {
+        tests.computeIfAbsent(testKey, key -> new BitSet()).or(classes);
+    }
+
+    public synchronized int getClassCount() {
+        return classNames.size();
+    }
+
+    public synchronized String getClassName(int classId) {
+        return classNames.get(classId);
+    }
+
+    public synchronized long getClassChecksum(int classId) {
+        return classChecksums.get(classId);
+    }
+
+    public synchronized Map<String, Long> getTestClassChecksums() {
+        return Collections.unmodifiableMap(new LinkedHashMap<>(testClassChecksums));
+    }
+
+    public synchronized Set<String> getTests() {
+        return Collections.unmodifiableSet(new TreeSet<>(tests.keySet()));
+    }
+
+    /**
+     * Tests that ran at least one of the given classes
+     */
+    public synchronized Set<String> testsUsing(BitSet classes) {
+        Set<String> affected = new TreeSet<>();
+        tests.forEach((test, used) -> {
+            if (used.intersects(classes)) {
+                affected.add(test);
+            }
+        });
+        return affected;
+    }
+
+    /**
+     * Folds this run into a map of earlier runs: tests that ran now replace their earlier
+     * entries, tests that did not run (e.g. deselected by impact analysis) are kept
+     */
+    public synchronized ImpactMap mergeInto(ImpactMap earlier) {
+        int[] remapped = new int[classNames.size()];
+        for (int id = 0; id < classNames.size(); id++) {
+            remapped[id] = earlier.addClass(classNames.get(id), classChecksums.get(id));
+        }
+        testClassChecksums.forEach(earlier::addTestClass);
+        tests.forEach((test, used) -> {
+            BitSet translated = new BitSet();
+            for (int id = used.nextSetBit(0); id >= 0; id = used.nextSetBit(id + 1)) {
+                translated.set(remapped[id]);
+            }
+            synchronized (earlier) {
+                earlier.tests.put(test, translated);
+            }
+        });
+        return earlier;
+    }
+
+    public synchronized void write(OutputStream stream) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+
+        out.writeInt(classNames.size());
+        for (int id = 0; id < classNames.size(); id++) {
+            out.writeUTF(classNames.get(id));
+            out.writeLong(classChecksums.get(id));
+        }
+
+        out.writeInt(testClassChecksums.size());
+        for (Map.Entry<String, Long> testClass : testClassChecksums.entrySet()) {
+            out.writeUTF(testClass.getKey());
+            out.writeLong(testClass.getValue());
+        }
+
+        out.writeInt(tests.size());
+        for (Map.Entry<String, BitSet> test : tests.entrySet()) {
+            out.writeUTF(test.getKey());
+            long[] words = test.getValue().toLongArray();
+            out.writeInt(words.length);
+            for (long word : words) {
+                out.writeLong(word);
+            }
+        }
+        out.flush();
+    }
+
+    public static ImpactMap read(InputStream stream) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(stream));
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a test impact map");
+        }
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported test impact map version: " + version);
+        }
+
+        ImpactMap map = new ImpactMap();
+        int classCount = in.readInt();
+        for (int i = 0; i < classCount; i++) {
+            map.addClass(in.readUTF(), in.readLong());
+        }
+
+        int testClassCount = in.readInt();
+        for (int i = 0; i < testClassCount; i++) {
+            map.addTestClass(in.readUTF(), in.readLong());
+        }
+
+        int testCount = in.readInt();
+        for (int i = 0; i < testCount; i++) {
+            String test = in.readUTF();
+            long[] words = new long[in.readInt()];
+            for (int w = 0; w < words.length; w++) {
+                words[w] = in.readLong();
+            }
+            map.tests.put(test, BitSet.valueOf(words));
+        }
+        return map;
+    }
+}
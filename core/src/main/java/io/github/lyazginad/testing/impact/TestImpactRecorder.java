@@ -0,0 +1,85 @@
+package io.github.lyazginad.testing.impact;
+
+import io.github.lyazginad.testing.context.TestContext;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+
+/**
+ * Collects the impact map of the running JVM.
+ * <p>
+ * Application classes are instrumented with a call to {@link #hit(int)} at the start of
+ * every method, constructor and static initializer. The hit is recorded in the context of
+ * the test the thread works for, which makes it a thread-local read and, after the first
+ * hit of a class, a bit test.
+ */
+public final class TestImpactRecorder {
+
+    private static final ImpactMap CURRENT = new ImpactMap();
+
+    private TestImpactRecorder() {
+    }
+
+    /**
+     * Called by instrumented application code
+     */
+    public static void hit(int classId) {
+        TestContext context = TestContext.current();
+        if (context != null) {
+            context.recordClass(classId);
+        }
+    }
+
+    public static int registerClass(String className, long checksum) {
+        return CURRENT.addClass(className, checksum);
+    }
+
+    public static void registerTestClass(String className, long checksum) {
+        CURRENT.addTestClass(className, checksum);
+    }
+
+    public static void testFinished(String className, String methodName, BitSet classes) {
+        CURRENT.addTest(className + "#" + methodName, classes);
+    }
+
+    /**
+     * Merges this JVM's map into the file; the file is locked, so forked test JVMs can share it
+     */
+    public static void write(File file) throws IOException {
+        File directory = file.getAbsoluteFile().getParentFile();
+        if (directory != null) {
+            Files.createDirectories(directory.toPath());
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            FileLock lock = channel.lock();
+            try {
+                ImpactMap earlier = new ImpactMap();
+                if (channel.size() > 0) {
+                    try {
+                        InputStream in = Channels.newInputStream(channel);
+                        earlier = ImpactMap.read(in);
+                    } catch (IOException e) {
+                        System.err.println("Replacing unreadable test impact map " + file + ": " + e.getMessage());
+                    }
+                }
+                ImpactMap merged = CURRENT.mergeInto(earlier);
+
+                channel.truncate(0);
+                channel.position(0);
+                OutputStream out = Channels.newOutputStream(channel);
+                merged.write(out);
+            } finally {
+                lock.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package io.github.lyazginad.testing.instrument;
+
+import javassist.CannotCompileException;
+import javassist.ClassPool;
+import javassist.CtBehavior;
+import javassist.CtClass;
+import javassist.Modifier;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+/**
+ * Instruments application classes for test impact analysis: every method, constructor and
+ * the static initializer report the class id to {@code TestImpactRecorder.hit}
+ */
+public class ImpactInstrumenter {
+
+    private static final String RECORDER_CLASS = "io.github.lyazginad.testing.impact.TestImpactRecorder";
+
+    private final ClassPool classPool;
+
+    public ImpactInstrumenter(ClassPool classPool) {
+        this.classPool = classPool;
+    }
+
+    /**
+     * Returns the instrumented class file, or null for classes without code (annotations, plain interfaces)
+     */
+    public byte[] instrument(byte[] classFile, int classId) throws IOException, CannotCompileException {
+        CtClass ctClass = classPool.makeClass(new ByteArrayInputStream(classFile));
+        try {
+            if (ctClass.isAnnotation()) {
+                return null;
+            }
+            String hit = RECORDER_CLASS + ".hit(" + classId + ");";
+
+            boolean transformed = false;
+            // Includes the static initializer
+            for (CtBehavior behavior : ctClass.getDeclaredBehaviors()) {
+                int modifiers = behavior.getModifiers();
+                if (!Modifier.isAbstract(modifiers) && !Modifier.isNative(modifiers)) {
+                    behavior.insertBefore(hit);
+                    transformed = true;
+                }
+            }
+            return transformed ? ctClass.toBytecode() : null;
+        } finally {
+            ctClass.detach();
+        }
+    }
+}
@@ -0,0 +1,299 @@
+package io.github.lyazginad.testing.instrument;
+
+import javassist.CannotCompileException;
+import javassist.ClassPool;
+import javassist.CtClass;
+import javassist.CtMethod;
+import javassist.CtNewMethod;
+import javassist.Modifier;
+import javassist.NotFoundException;
+import javassist.bytecode.AccessFlag;
+import javassist.bytecode.AnnotationsAttribute;
+import javassist.bytecode.AttributeInfo;
+import javassist.bytecode.ClassFile;
+import javassist.bytecode.MethodInfo;
+import javassist.bytecode.ParameterAnnotationsAttribute;
+import javassist.bytecode.annotation.Annotation;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * Weaves the test tracking calls into test classes.
+ * <p>
+ * Used by the agent at class load time and by the {@code instrument} goal at build time;
+ * both produce the same bytecode. Instrumented classes carry a marker attribute, so a class
+ * woven at build time is left alone when the agent is attached as well. The marker holds the
+ * CRC32 of the class file as compiled, which {@link #sourceChecksum(byte[])} reports in place
+ * of the woven bytes' own, so test impact analysis sees the same class either way, and whether
+ * the rerun loop was woven.
+ * <p>
+ * With reruns enabled, the body of a test method moves into a private synthetic copy, which
+ * the test method calls in a loop, so the agent can rerun a failed attempt in place. Classes
+ * that are already loaded cannot get new methods, so they are instrumented without the loop,
+ * and so are methods that pass by throwing an expected exception.
+ */
+public class TestClassInstrumenter {
+
+    /** Class file attribute marking instrumented classes; ignored by the JVM */
+    public static final String MARKER_ATTRIBUTE = "io.github.lyazginad.testing.Instrumented";
+
+    private static final String AGENT_PACKAGE_PREFIX = "io.github.lyazginad.testing.";
+    private static final String AGENT_CLASS = "io.github.lyazginad.testing.agent.TestReportAgent";
+    /** Name prefix of the copies holding the original test method bodies; cannot match name based test scanners */
+    private static final String ATTEMPT_PREFIX = "$testing$attempt$";
+    /** Marker flag of classes woven with the rerun loop */
+    private static final int MARKER_RERUNS = 1;
+    private static final int MARKER_LENGTH = Long.BYTES + 1;
+
+    private final ClassPool classPool;
+    private final boolean reruns;
+
+    public TestClassInstrumenter(ClassPool classPool) {
+        this(classPool, false);
+    }
+
+    /**
+     * @param reruns whether to weave the loop that lets the agent rerun failed attempts and quarantine failures
+     */
+    public TestClassInstrumenter(ClassPool classPool, boolean reruns) {
+        this.classPool = classPool;
+        this.reruns = reruns;
+    }
+
+    public boolean isReruns() {
+        return reruns;
+    }
+
+    /**
+     * Instrument only test classes, never the agent's own classes (TestContext, TestResult, ...)
+     */
+    public static boolean isCandidate(String className) {
+        return className != null && className.contains("Test") && !className.contains("$")
+                && !className.startsWith(AGENT_PACKAGE_PREFIX);
+    }
+
+    /**
+     * Returns the instrumented class file, or null if the class has no test methods or is already instrumented
+     */
+    public byte[] instrument(byte[] classFile) throws IOException, CannotCompileException, NotFoundException {
+        return instrument(classFile, false);
+    }
+
+    /**
+     * @param redefinition whether the class is already loaded and being retransformed; the JVM
+     *                     rejects added methods then, so the rerun loop is left out
+     */
+    public byte[] instrument(byte[] classFile, boolean redefinition)
+            throws IOException, CannotCompileException, NotFoundException {
+        CtClass ctClass = classPool.makeClass(new ByteArrayInputStream(classFile));
+        try {
+            if (isInstrumented(ctClass.getClassFile())) {
+                return null;
+            }
+
+            boolean transformed = false;
+            boolean rerunLoop = reruns && !redefinition;
+
+            // Iterate through all class methods
+            for (CtMethod method : ctClass.getDeclaredMethods()) {
+                if (isTestMethod(method)) {
+                    if (rerunLoop && !expectsException(method.getMethodInfo2())) {
+                        addRerunLoop(ctClass, method);
+                    }
+                    transformTestMethod(method);
+                    transformed = true;
+                }
+            }
+
+            if (!transformed) {
+                return null;
+            }
+            ClassFile file = ctClass.getClassFile();
+            file.addAttribute(new AttributeInfo(file.getConstPool(), MARKER_ATTRIBUTE, ByteBuffer.allocate(MARKER_LENGTH)
+                    .putLong(checksum(classFile)).put((byte) (rerunLoop ? MARKER_RERUNS : 0)).array()));
+            return ctClass.toBytecode();
+        } finally {
+            // A frozen class left in the pool would make later instrumentation of the same class fail
+            ctClass.detach();
+        }
+    }
+
+    private static boolean isInstrumented(ClassFile file) {
+        return file.getAttribute(MARKER_ATTRIBUTE) != null;
+    }
+
+    /**
+     * Whether the class file was woven by this instrumenter
+     */
+    public static boolean isInstrumented(byte[] classFile) {
+        return marker(classFile) != null;
+    }
+
+    /**
+     * Whether the class file was woven with the rerun loop
+     */
+    public static boolean hasRerunLoop(byte[] classFile) {
+        byte[] marker = marker(classFile);
+        return marker != null && (marker[Long.BYTES] & MARKER_RERUNS) != 0;
+    }
+
+    /**
+     * CRC32 of the class file as compiled: read from the marker of an instrumented class,
+     * computed over the bytes otherwise
+     */
+    public static long sourceChecksum(byte[] classFile) {
+        byte[] marker = marker(classFile);
+        return marker != null ? ByteBuffer.wrap(marker).getLong() : checksum(classFile);
+    }
+
+    private static byte[] marker(byte[] classFile) {
+        try {
+            AttributeInfo marker = new ClassFile(new DataInputStream(new ByteArrayInputStream(classFile)))
+                    .getAttribute(MARKER_ATTRIBUTE);
+            if (marker != null && marker.get().length == MARKER_LENGTH) {
+                return marker.get();
+            }
+        } catch (IOException e) {
+            // Not a class file Javassist can read; it is not instrumented either
+        }
+        return null;
+    }
+
+    private static long checksum(byte[] classFile) {
+        CRC32 crc = new CRC32();
+        crc.update(classFile);
+        return crc.getValue();
+    }
+
+    private static boolean isTestMethod(CtMethod method) {
+        return isTestMethod(method.getMethodInfo2());
+    }
+
+    private static boolean isTestMethod(MethodInfo method) {
+        int flags = method.getAccessFlags();
+        if ((flags & (AccessFlag.ABSTRACT | AccessFlag.NATIVE | AccessFlag.SYNTHETIC)) != 0
+                || !method.isMethod()) {
+            return false;
+        }
+        String methodName = method.getName();
+        return methodName.startsWith("test") ||
+                methodName.contains("Test") ||
+                hasTestAnnotations(method);
+    }
+
+    /**
+     * Names of the methods of a class file that the instrumentation treats as tests
+     */
+    public static Set<String> testMethodNames(InputStream classFile) throws IOException {
+        Set<String> names = new LinkedHashSet<>();
+        for (MethodInfo method : new ClassFile(new DataInputStream(classFile)).getMethods()) {
+            if (isTestMethod(method)) {
+                names.add(method.getName());
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Reads annotation type names from the class file, so annotation classes such as
+     * JUnit's do not have to be loadable (they are not on the plugin class path)
+     */
+    private static boolean hasTestAnnotations(MethodInfo method) {
+        AnnotationsAttribute attribute = (AnnotationsAttribute) method.getAttribute(AnnotationsAttribute.visibleTag);
+        if (attribute == null) {
+            return false;
+        }
+        for (Annotation annotation : attribute.getAnnotations()) {
+            String type = annotation.getTypeName();
+            if (type.contains("Test") || type.contains("org.junit") || type.contains("org.testng")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Whether a JUnit 4 or TestNG test passes by throwing an exception; rerunning or quarantining
+     * it would take the expected exception for a failure
+     */
+    private static boolean expectsException(MethodInfo method) {
+        AnnotationsAttribute attribute = (AnnotationsAttribute) method.getAttribute(AnnotationsAttribute.visibleTag);
+        if (attribute == null) {
+            return false;
+        }
+        Annotation junit = attribute.getAnnotation("org.junit.Test");
+        Annotation testng = attribute.getAnnotation("org.testng.annotations.Test");
+        return junit != null && junit.getMemberValue("expected") != null
+                || testng != null && testng.getMemberValue("expectedExceptions") != null;
+    }
+
+    /**
+     * Moves the body into a copy without annotations, so test frameworks do not see it, and
+     * calls it until an attempt passes or the agent declines to rerun it
+     */
+    private static void addRerunLoop(CtClass ctClass, CtMethod method) throws CannotCompileException {
+        CtMethod attempt = CtNewMethod.copy(method, ATTEMPT_PREFIX + method.getName(), ctClass, null);
+        attempt.setModifiers(Modifier.PRIVATE | (method.getModifiers() & Modifier.STATIC));
+        MethodInfo info = attempt.getMethodInfo();
+        info.removeAttribute(AnnotationsAttribute.visibleTag);
+        info.removeAttribute(AnnotationsAttribute.invisibleTag);
+        info.removeAttribute(ParameterAnnotationsAttribute.visibleTag);
+        info.removeAttribute(ParameterAnnotationsAttribute.invisibleTag);
+        info.setAccessFlags(info.getAccessFlags() | AccessFlag.SYNTHETIC);
+        ctClass.addMethod(attempt);
+
+        // Test methods return void; others rethrow instead of being quarantined, having no value to return
+        boolean isVoid = method.getSignature().endsWith(")V");
+        String call = attempt.getName() + "($$)";
+        method.setBody(
+                "{" +
+                        "   Throwable failure = null;" +
+                        "   int attempt = 0;" +
+                        "   do {" +
+                        "       attempt++;" +
+                        "       try {" +
+                        (isVoid ? call + "; return;" : "return " + call + ";") +
+                        "       } catch (Throwable e) {" +
+                        "           failure = e;" +
+                        "       }" +
+                        "   } while (" + AGENT_CLASS + ".rerunAfter(failure, attempt));" +
+                        (isVoid ? "if (" + AGENT_CLASS + ".quarantine(failure)) return;" : "") +
+                        "   throw failure;" +
+                        "}"
+        );
+    }
+
+    private void transformTestMethod(CtMethod method) throws CannotCompileException, NotFoundException {
+        String methodName = method.getName();
+        String descriptor = method.getSignature();
+
+        // Add logic before test execution; a class literal compiles to ldc and is resolved in the
+        // test's own class loader, unlike $class, which looks the class up from Javassist's loader
+        method.insertBefore(
+                AGENT_CLASS + ".invocationStarted(" + method.getDeclaringClass().getName() + ".class, \""
+                        + methodName + "\", \"" + descriptor + "\");"
+        );
+
+        // Add logic after successful test execution (not as finally, failures are handled below)
+        method.insertAfter(
+                AGENT_CLASS + ".invocationFinished(true, null);",
+                false
+        );
+
+        // Add logic for failure interception; assertion failures are Errors, so catch any Throwable
+        method.addCatch(
+                "{" +
+                        "   " + AGENT_CLASS + ".invocationFailed($e);" +
+                        "   throw $e;" +
+                        "}",
+                classPool.get("java.lang.Throwable")
+        );
+    }
+}
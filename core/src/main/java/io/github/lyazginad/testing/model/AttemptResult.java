@@ -0,0 +1,39 @@
+package io.github.lyazginad.testing.model;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * One attempt of a test invocation that was rerun after a failure
+ */
+public class AttemptResult {
+    private final int attempt;
+    private final boolean passed;
+    private final long durationMicros;
+    private final String errorMessage;
+    private final String errorType;
+    private final String stackTraceId;
+
+    @JsonCreator
+    public AttemptResult(@JsonProperty("attempt") int attempt,
+                         @JsonProperty("passed") boolean passed,
+                         @JsonProperty("durationMicros") long durationMicros,
+                         @JsonProperty("errorMessage") String errorMessage,
+                         @JsonProperty("errorType") String errorType,
+                         @JsonProperty("stackTraceId") String stackTraceId) {
+        this.attempt = attempt;
+        this.passed = passed;
+        this.durationMicros = durationMicros;
+        this.errorMessage = errorMessage;
+        this.errorType = errorType;
+        this.stackTraceId = stackTraceId;
+    }
+
+    /** Number of the attempt, starting at 1 */
+    public int getAttempt() { return attempt; }
+    public boolean isPassed() { return passed; }
+    public long getDurationMicros() { return durationMicros; }
+    public String getErrorMessage() { return errorMessage; }
+    public String getErrorType() { return errorType; }
+    public String getStackTraceId() { return stackTraceId; }
+}
@@ -0,0 +1,115 @@
+package io.github.lyazginad.testing.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+/**
+ * Aggregated statistics of all invocations of one test method (parameterized,
+ * repeated or concurrently executed tests).
+ * <p>
+ * Memory is bounded regardless of the number of invocations: durations are kept in a
+ * log-linear histogram (8 sub-buckets per power of two, about 12% relative precision)
+ * that is only allocated once a method runs more than once.
+ */
+public class InvocationStats {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_MAGNITUDE = 42;
+    private static final int BUCKET_COUNT = (MAX_MAGNITUDE - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    private long started;
+    private long count;
+    private long passed;
+    private long minMicros = Long.MAX_VALUE;
+    private long maxMicros;
+    private long totalMicros;
+    private long firstMicros;
+    private int[] histogram;
+
+    /**
+     * Assigns the next invocation number (1-based)
+     */
+    public synchronized long nextInvocation() {
+        return ++started;
+    }
+
+    /**
+     * Records a finished invocation and returns the number of finished invocations so far
+     */
+    public synchronized long record(long durationMicros, boolean success) {
+        long value = Math.max(0, durationMicros);
+        count++;
+        if (success) {
+            passed++;
+        }
+        minMicros = Math.min(minMicros, value);
+        maxMicros = Math.max(maxMicros, value);
+        totalMicros += value;
+
+        if (count == 1) {
+            firstMicros = value;
+        } else {
+            if (histogram == null) {
+                histogram = new int[BUCKET_COUNT];
+                histogram[bucketOf(firstMicros)]++;
+            }
+            histogram[bucketOf(value)]++;
+        }
+        return count;
+    }
+
+    public synchronized long getCount() { return count; }
+    public synchronized long getPassed() { return passed; }
+    public synchronized long getFailed() { return count - passed; }
+    public synchronized double getMinMillis() { return count == 0 ? 0 : minMicros / 1000.0; }
+    public synchronized double getMaxMillis() { return maxMicros / 1000.0; }
+    public synchronized double getMeanMillis() { return count == 0 ? 0 : totalMicros / 1000.0 / count; }
+    public double getP50Millis() { return percentileMillis(0.50); }
+    public double getP90Millis() { return percentileMillis(0.90); }
+    public double getP99Millis() { return percentileMillis(0.99); }
+
+    @JsonIgnore
+    public synchronized boolean isRepeated() { return count > 1; }
+
+    /**
+     * Approximate duration percentile, clamped to the observed minimum and maximum
+     */
+    public synchronized double percentileMillis(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        if (histogram == null) {
+            return firstMicros / 1000.0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile * count));
+        long seen = 0;
+        for (int bucket = 0; bucket < histogram.length; bucket++) {
+            seen += histogram[bucket];
+            if (seen >= rank) {
+                long value = Math.min(maxMicros, Math.max(minMicros, valueOf(bucket)));
+                return value / 1000.0;
+            }
+        }
+        return maxMicros / 1000.0;
+    }
+
+    private static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int magnitude = Math.min(63 - Long.numberOfLeadingZeros(value), MAX_MAGNITUDE);
+        int subBucket = (int) ((value >>> (magnitude - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1));
+        return (magnitude - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /** Midpoint of a bucket */
+    private static long valueOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int magnitude = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long subBucket = bucket % SUB_BUCKETS;
+        long lower = (SUB_BUCKETS + subBucket) << (magnitude - SUB_BUCKET_BITS);
+        return lower + (1L << (magnitude - SUB_BUCKET_BITS)) / 2;
+    }
+}
@@ -1,5 +1,8 @@
 package io.github.lyazginad.testing.model;
 
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
 import java.time.LocalDateTime;
 
 /**
@@ -14,10 +17,20 @@ public class StepResult {
     private String errorMessage;
 
     public StepResult(int order, String description) {
+        this(order, description, LocalDateTime.now());
+    }
+
+    /**
+     * Restores a step with its original start time (report readers)
+     */
+    @JsonCreator
+    public StepResult(@JsonProperty("order") int order,
+                      @JsonProperty("description") String description,
+                      @JsonProperty("startTime") LocalDateTime startTime) {
         this.order = order;
         this.description = description;
         this.passed = true;
-        this.startTime = LocalDateTime.now();
+        this.startTime = startTime;
     }
 
     public long getDuration() {
@@ -33,6 +46,15 @@ public class StepResult {
         this.errorMessage = error;
     }
 
+    /**
+     * Restores the completion state of a step (report readers)
+     */
+    public void restoreCompletion(boolean passed, LocalDateTime endTime, String errorMessage) {
+        this.passed = passed;
+        this.endTime = endTime;
+        this.errorMessage = errorMessage;
+    }
+
     // Getters only (immutable for order and description)
     public int getOrder() { return order; }
     public String getDescription() { return description; }
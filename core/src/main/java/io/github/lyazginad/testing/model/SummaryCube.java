@@ -0,0 +1,393 @@
+package io.github.lyazginad.testing.model;
+
+import io.github.lyazginad.testing.annotations.Priority;
+import io.github.lyazginad.testing.annotations.Severity;
+import io.github.lyazginad.testing.annotations.TestLevel;
+import io.github.lyazginad.testing.annotations.TestMethod;
+import io.github.lyazginad.testing.annotations.TestType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Multi-dimensional test count cube over outcome, the annotation enums, category and author.
+ * <p>
+ * Every combination of dimension values seen so far is one cell. A cell's coordinates are
+ * packed into a single {@code long} (enum ordinals plus dictionary codes for categories and
+ * authors) and stored in an open addressing table of primitive arrays together with the
+ * test count and total duration of the cell. Queries with arbitrary filters and group-by
+ * dimensions only visit the occupied cells, never the individual test results.
+ * <p>
+ * A dictionary dimension holds up to {@code 2^bits - 1} distinct values; further values share
+ * the last code and are reported as {@value #OVERFLOW}, so counts stay correct when the
+ * dictionary is full.
+ */
+public class SummaryCube {
+
+    /**
+     * Dimensions of the cube
+     */
+    public enum Dimension {
+        OUTCOME(1, new String[] {"PASSED", "FAILED"}),
+        SEVERITY(3, names(Severity.Level.values())),
+        PRIORITY(3, names(Priority.Level.values())),
+        LEVEL(3, names(TestLevel.Level.values())),
+        TYPE(3, names(TestType.Type.values())),
+        METHOD(4, names(TestMethod.Method.values())),
+        CATEGORY(20, null),
+        AUTHOR(20, null);
+
+        private final int bits;
+        private final String[] values;
+        private final Map<String, Integer> codes = new HashMap<>();
+        private int shift;
+
+        Dimension(int bits, String[] values) {
+            this.bits = bits;
+            this.values = values;
+            if (values != null) {
+                for (int i = 0; i < values.length; i++) {
+                    codes.put(values[i], i);
+                }
+            }
+        }
+
+        static {
+            int shift = 0;
+            for (Dimension dimension : values()) {
+                dimension.shift = shift;
+                shift += dimension.bits;
+            }
+        }
+
+        private long mask() {
+            return (1L << bits) - 1;
+        }
+
+        private boolean isDictionary() {
+            return values == null;
+        }
+
+        /** Code of an enum value; unknown values share the code after the last constant */
+        private int enumCode(String value) {
+            Integer code = value == null ? null : codes.get(value);
+            return code == null ? values.length : code;
+        }
+    }
+
+    private static final String UNKNOWN = "UNKNOWN";
+    /** Value of the dictionary code shared by values that no longer fit the dictionary */
+    public static final String OVERFLOW = "(other)";
+    private static final long EMPTY = -1L;
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final Map<Dimension, Dictionary> dictionaries = new EnumMap<>(Dimension.class);
+
+    private long[] keys;
+    private int[] counts;
+    private long[] durations;
+    private int cells;
+    private int total;
+
+    public SummaryCube() {
+        dictionaries.put(Dimension.CATEGORY, new Dictionary((int) Dimension.CATEGORY.mask()));
+        dictionaries.put(Dimension.AUTHOR, new Dictionary((int) Dimension.AUTHOR.mask()));
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Adds a finished test result to its cell
+     */
+    public synchronized void add(TestResult result) {
+        long key = 0;
+        key |= code(Dimension.OUTCOME, result.isPassed() ? 0 : 1);
+        key |= code(Dimension.SEVERITY, result.getSeverity().ordinal());
+        key |= code(Dimension.PRIORITY, result.getPriority().ordinal());
+        key |= code(Dimension.LEVEL, Dimension.LEVEL.enumCode(result.getTestLevel()));
+        key |= code(Dimension.TYPE, Dimension.TYPE.enumCode(result.getTestType()));
+        key |= code(Dimension.METHOD, Dimension.METHOD.enumCode(result.getTestMethod()));
+        key |= code(Dimension.CATEGORY, dictionaries.get(Dimension.CATEGORY).encode(result.getCategory()));
+        key |= code(Dimension.AUTHOR, dictionaries.get(Dimension.AUTHOR).encode(result.getAuthor()));
+
+        int slot = slotOf(key);
+        if (keys[slot] == EMPTY) {
+            keys[slot] = key;
+            cells++;
+        }
+        counts[slot]++;
+        durations[slot] += result.getDuration();
+        total++;
+
+        if (cells * 2 > keys.length) {
+            rehash();
+        }
+    }
+
+    public synchronized int getTotal() { return total; }
+    public synchronized int getCellCount() { return cells; }
+
+    /**
+     * Number of tests per value of one dimension. Enum dimensions list every
+     * constant (including zero counts) in declaration order.
+     */
+    public Map<String, Integer> countBy(Dimension dimension) {
+        Map<String, Integer> result = new LinkedHashMap<>();
+        if (!dimension.isDictionary()) {
+            for (String value : dimension.values) {
+                result.put(value, 0);
+            }
+        }
+        for (Map.Entry<List<String>, Aggregate> group : query().groupBy(dimension).execute().entrySet()) {
+            result.put(group.getKey().get(0), group.getValue().getCount());
+        }
+        return result;
+    }
+
+    /**
+     * Starts a filter and group-by query
+     */
+    public Query query() {
+        return new Query();
+    }
+
+    private static long code(Dimension dimension, int code) {
+        return ((long) code & dimension.mask()) << dimension.shift;
+    }
+
+    private static int decode(Dimension dimension, long key) {
+        return (int) ((key >>> dimension.shift) & dimension.mask());
+    }
+
+    private String valueOf(Dimension dimension, int code) {
+        if (dimension.isDictionary()) {
+            return dictionaries.get(dimension).decode(code);
+        }
+        return code < dimension.values.length ? dimension.values[code] : UNKNOWN;
+    }
+
+    private int slotOf(long key) {
+        int mask = keys.length - 1;
+        int slot = (int) mix(key) & mask;
+        while (keys[slot] != EMPTY && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        return key;
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        Arrays.fill(keys, EMPTY);
+        counts = new int[capacity];
+        durations = new long[capacity];
+    }
+
+    private void rehash() {
+        long[] oldKeys = keys;
+        int[] oldCounts = counts;
+        long[] oldDurations = durations;
+        allocate(oldKeys.length * 2);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = slotOf(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                counts[slot] = oldCounts[i];
+                durations[slot] = oldDurations[i];
+            }
+        }
+    }
+
+    /**
+     * Filter and group-by query over the cube
+     */
+    public final class Query {
+        private final Map<Dimension, List<String>> filters = new EnumMap<>(Dimension.class);
+        private final List<Dimension> groupBy = new ArrayList<>();
+
+        private Query() {
+        }
+
+        /**
+         * Restricts a dimension to the given values (values of one dimension are combined with OR)
+         */
+        public Query where(Dimension dimension, String... values) {
+            filters.computeIfAbsent(dimension, d -> new ArrayList<>()).addAll(Arrays.asList(values));
+            return this;
+        }
+
+        public Query groupBy(Dimension... dimensions) {
+            groupBy.addAll(Arrays.asList(dimensions));
+            return this;
+        }
+
+        /**
+         * Aggregates per group, ordered by enum declaration order and then first appearance
+         * of dictionary values; without group-by dimensions the single key is an empty list
+         */
+        public Map<List<String>, Aggregate> execute() {
+            synchronized (SummaryCube.this) {
+                Map<Dimension, boolean[]> allowed = resolveFilters();
+                Map<Long, long[]> groups = new HashMap<>();
+
+                for (int i = 0; i < keys.length; i++) {
+                    long key = keys[i];
+                    if (key == EMPTY || !matches(key, allowed)) {
+                        continue;
+                    }
+                    long groupKey = 0;
+                    for (Dimension dimension : groupBy) {
+                        groupKey |= key & (dimension.mask() << dimension.shift);
+                    }
+                    long[] aggregate = groups.computeIfAbsent(groupKey, k -> new long[2]);
+                    aggregate[0] += counts[i];
+                    aggregate[1] += durations[i];
+                }
+
+                List<Long> groupKeys = new ArrayList<>(groups.keySet());
+                groupKeys.sort((a, b) -> {
+                    for (Dimension dimension : groupBy) {
+                        int compare = Integer.compare(decode(dimension, a), decode(dimension, b));
+                        if (compare != 0) {
+                            return compare;
+                        }
+                    }
+                    return 0;
+                });
+
+                Map<List<String>, Aggregate> result = new LinkedHashMap<>();
+                for (long groupKey : groupKeys) {
+                    List<String> values = new ArrayList<>(groupBy.size());
+                    for (Dimension dimension : groupBy) {
+                        values.add(valueOf(dimension, decode(dimension, groupKey)));
+                    }
+                    long[] aggregate = groups.get(groupKey);
+                    result.put(Collections.unmodifiableList(values), new Aggregate((int) aggregate[0], aggregate[1]));
+                }
+                return result;
+            }
+        }
+
+        /**
+         * Number of tests matching the filters
+         */
+        public int count() {
+            int count = 0;
+            for (Aggregate aggregate : execute().values()) {
+                count += aggregate.getCount();
+            }
+            return count;
+        }
+
+        private Map<Dimension, boolean[]> resolveFilters() {
+            Map<Dimension, boolean[]> allowed = new EnumMap<>(Dimension.class);
+            for (Map.Entry<Dimension, List<String>> filter : filters.entrySet()) {
+                Dimension dimension = filter.getKey();
+                boolean[] codes = new boolean[(int) dimension.mask() + 1];
+                for (String value : filter.getValue()) {
+                    int code = dimension.isDictionary()
+                            ? dictionaries.get(dimension).lookup(value)
+                            : (UNKNOWN.equals(value) ? dimension.values.length : dimension.codes.getOrDefault(value, -1));
+                    if (code >= 0) {
+                        codes[code] = true;
+                    }
+                }
+                allowed.put(dimension, codes);
+            }
+            return allowed;
+        }
+
+        private boolean matches(long key, Map<Dimension, boolean[]> allowed) {
+            for (Map.Entry<Dimension, boolean[]> filter : allowed.entrySet()) {
+                if (!filter.getValue()[decode(filter.getKey(), key)]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Test count and total duration of a group
+     */
+    public static final class Aggregate {
+        private final int count;
+        private final long totalDuration;
+
+        Aggregate(int count, long totalDuration) {
+            this.count = count;
+            this.totalDuration = totalDuration;
+        }
+
+        public int getCount() { return count; }
+        public long getTotalDuration() { return totalDuration; }
+
+        @Override
+        public String toString() {
+            return count + " tests, " + totalDuration + "ms";
+        }
+    }
+
+    /**
+     * String dictionary; code 0 is reserved for null and the highest code for overflow
+     */
+    private static final class Dictionary {
+        private final Map<String, Integer> codes = new HashMap<>();
+        private final List<String> values = new ArrayList<>(Collections.singletonList(null));
+        private final int overflowCode;
+
+        Dictionary(int overflowCode) {
+            this.overflowCode = overflowCode;
+        }
+
+        int encode(String value) {
+            if (value == null) {
+                return 0;
+            }
+            Integer code = codes.get(value);
+            if (code == null) {
+                if (values.size() == overflowCode) {
+                    return overflowCode;
+                }
+                code = values.size();
+                codes.put(value, code);
+                values.add(value);
+            }
+            return code;
+        }
+
+        int lookup(String value) {
+            if (value == null) {
+                return 0;
+            }
+            Integer code = codes.get(value);
+            if (code != null) {
+                return code;
+            }
+            return OVERFLOW.equals(value) ? overflowCode : -1;
+        }
+
+        String decode(int code) {
+            return code == overflowCode ? OVERFLOW : values.get(code);
+        }
+    }
+
+    private static String[] names(Enum<?>[] constants) {
+        String[] names = new String[constants.length];
+        for (int i = 0; i < constants.length; i++) {
+            names[i] = constants[i].name();
+        }
+        return names;
+    }
+}
@@ -1,14 +1,24 @@
 package io.github.lyazginad.testing.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
 import java.time.LocalDateTime;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Comprehensive test execution report containing all test results
  */
+@JsonIgnoreProperties(value = {"severitySummary", "prioritySummary", "categorySummary",
+        "levelSummary", "typeSummary", "methodSummary", "invocationStats"}, allowGetters = true)
 public class TestReport {
     private LocalDateTime executionTime;
     private int totalTests;
@@ -16,31 +26,26 @@ public class TestReport {
     private int failedTests;
     private long totalDuration;
     private List<TestResult> testResults = new ArrayList<>();
-    private Map<String, Integer> severitySummary = new HashMap<>();
-    private Map<String, Integer> prioritySummary = new HashMap<>();
-    private Map<String, Integer> categorySummary = new HashMap<>();
+    private SummaryCube summaryCube = new SummaryCube();
+    private final Map<String, InvocationStats> invocationStats = new ConcurrentHashMap<>();
+    private Map<String, String> stackTraces = new LinkedHashMap<>();
+    private Map<String, Long> agentOverhead;
+    @JsonIgnore
+    private Iterable<TestResult> spilledResults = Collections.emptyList();
 
     public TestReport() {
         this.executionTime = LocalDateTime.now();
-        initializeSummaries();
     }
 
-    private void initializeSummaries() {
-        // Initialize severity summary
-        for (io.github.lyazginad.testing.annotations.Severity.Level level :
-                io.github.lyazginad.testing.annotations.Severity.Level.values()) {
-            severitySummary.put(level.name(), 0);
-        }
-
-        // Initialize priority summary
-        for (io.github.lyazginad.testing.annotations.Priority.Level level :
-                io.github.lyazginad.testing.annotations.Priority.Level.values()) {
-            prioritySummary.put(level.name(), 0);
-        }
+    public synchronized void addTestResult(TestResult result) {
+        testResults.add(result);
+        countTestResult(result);
     }
 
-    public void addTestResult(TestResult result) {
-        testResults.add(result);
+    /**
+     * Counts a result in the totals and summaries without keeping it in {@link #getTestResults()}
+     */
+    public synchronized void countTestResult(TestResult result) {
         totalTests++;
 
         if (result.isPassed()) {
@@ -51,17 +56,8 @@ public class TestReport {
 
         totalDuration += result.getDuration();
 
-        // Update severity summary
-        String severityKey = result.getSeverity().name();
-        severitySummary.put(severityKey, severitySummary.getOrDefault(severityKey, 0) + 1);
-
-        // Update priority summary
-        String priorityKey = result.getPriority().name();
-        prioritySummary.put(priorityKey, prioritySummary.getOrDefault(priorityKey, 0) + 1);
-
-        // Update category summary
-        String categoryKey = result.getCategory();
-        categorySummary.put(categoryKey, categorySummary.getOrDefault(categoryKey, 0) + 1);
+        // Update summary cube
+        summaryCube.add(result);
     }
 
     public double getSuccessRate() {
@@ -81,11 +77,89 @@ public class TestReport {
     public long getTotalDuration() { return totalDuration; }
     public void setTotalDuration(long totalDuration) { this.totalDuration = totalDuration; }
     public List<TestResult> getTestResults() { return testResults; }
-    public void setTestResults(List<TestResult> testResults) { this.testResults = testResults; }
-    public Map<String, Integer> getSeveritySummary() { return severitySummary; }
-    public void setSeveritySummary(Map<String, Integer> severitySummary) { this.severitySummary = severitySummary; }
-    public Map<String, Integer> getPrioritySummary() { return prioritySummary; }
-    public void setPrioritySummary(Map<String, Integer> prioritySummary) { this.prioritySummary = prioritySummary; }
-    public Map<String, Integer> getCategorySummary() { return categorySummary; }
-    public void setCategorySummary(Map<String, Integer> categorySummary) { this.categorySummary = categorySummary; }
+
+    public void setTestResults(List<TestResult> testResults) {
+        this.testResults = testResults;
+        // Rebuild the cube, e.g. when the report is read back from JSON
+        this.summaryCube = new SummaryCube();
+        testResults.forEach(summaryCube::add);
+    }
+
+    @JsonIgnore
+    public SummaryCube getSummaryCube() { return summaryCube; }
+
+    /**
+     * Results that are counted in this report but kept outside {@link #getTestResults()}, e.g. on disk
+     */
+    @JsonIgnore
+    public Iterable<TestResult> getSpilledResults() { return spilledResults; }
+
+    public void setSpilledResults(Iterable<TestResult> spilledResults) {
+        this.spilledResults = spilledResults != null ? spilledResults : Collections.emptyList();
+    }
+
+    /**
+     * Results in memory followed by spilled results; spilled results are streamed, not loaded at once
+     */
+    public Iterable<TestResult> allTestResults() {
+        Iterable<TestResult> spilled = spilledResults;
+        return () -> Stream.concat(testResults.stream(), StreamSupport.stream(spilled.spliterator(), false)).iterator();
+    }
+
+    /**
+     * Invocation statistics of a test method, created on first use
+     */
+    public InvocationStats invocationStatsFor(String methodKey) {
+        return invocationStats.computeIfAbsent(methodKey, key -> new InvocationStats());
+    }
+
+    /**
+     * Statistics of methods that were invoked more than once (parameterized, repeated or concurrent tests)
+     */
+    public Map<String, InvocationStats> getInvocationStats() {
+        Map<String, InvocationStats> repeated = new TreeMap<>();
+        invocationStats.forEach((methodKey, stats) -> {
+            if (stats.isRepeated()) {
+                repeated.put(methodKey, stats);
+            }
+        });
+        return repeated;
+    }
+
+    /**
+     * Distinct failure stack traces by id, referenced by {@link TestResult#getStackTraceId()}
+     */
+    public synchronized Map<String, String> getStackTraces() {
+        return new LinkedHashMap<>(stackTraces);
+    }
+
+    public synchronized void setStackTraces(Map<String, String> stackTraces) {
+        this.stackTraces = stackTraces != null ? new LinkedHashMap<>(stackTraces) : new LinkedHashMap<>();
+    }
+
+    public synchronized String getStackTrace(String id) {
+        return stackTraces.get(id);
+    }
+
+    public synchronized boolean hasStackTrace(String id) {
+        return stackTraces.containsKey(id);
+    }
+
+    public synchronized void addStackTrace(String id, String stackTrace) {
+        stackTraces.putIfAbsent(id, stackTrace);
+    }
+
+    /**
+     * Time and work the agent spent on its own tracking, see {@code AgentOverheadMXBean}; null without the agent
+     */
+    public Map<String, Long> getAgentOverhead() { return agentOverhead; }
+    public void setAgentOverhead(Map<String, Long> agentOverhead) { this.agentOverhead = agentOverhead; }
+
+    // Single-dimension summaries, derived from the summary cube
+    public Map<String, Integer> getSeveritySummary() { return summaryCube.countBy(SummaryCube.Dimension.SEVERITY); }
+    public Map<String, Integer> getPrioritySummary() { return summaryCube.countBy(SummaryCube.Dimension.PRIORITY); }
+    public Map<String, Integer> getCategorySummary() { return summaryCube.countBy(SummaryCube.Dimension.CATEGORY); }
+    public Map<String, Integer> getLevelSummary() { return summaryCube.countBy(SummaryCube.Dimension.LEVEL); }
+    public Map<String, Integer> getTypeSummary() { return summaryCube.countBy(SummaryCube.Dimension.TYPE); }
+    public Map<String, Integer> getMethodSummary() { return summaryCube.countBy(SummaryCube.Dimension.METHOD); }
 }
\ No newline at end of file
@@ -2,6 +2,9 @@ package io.github.lyazginad.testing.model;
 
 import io.github.lyazginad.testing.annotations.Priority;
 import io.github.lyazginad.testing.annotations.Severity;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
@@ -12,6 +15,9 @@ import java.util.List;
 public class TestResult {
     private final String className;
     private final String methodName;
+    private String invocationId;
+    private String threadName;
+    private String forkId;
     private int order;
     private String testName;
     private String category;
@@ -19,7 +25,12 @@ public class TestResult {
     private final LocalDateTime startTime;
     private LocalDateTime endTime;
     private String errorMessage;
-    private final List<StepResult> steps = new ArrayList<>();
+    private String errorType;
+    private String stackTraceId;
+    // Grows by the step, most tests have one or two
+    private final List<StepResult> steps = new ArrayList<>(0);
+    private final List<AttemptResult> attempts = new ArrayList<>();
+    private boolean quarantined;
     private Severity.Level severity;
     private Priority.Level priority;
     private String testLevel;
@@ -28,14 +39,30 @@ public class TestResult {
     private String author;
     private String version;
     private String description;
+    private boolean timedOut;
+    private long timeoutMillis;
+    private String hangStackTrace;
+    private String threadDump;
 
     public TestResult(String className, String methodName, int order, String testName) {
+        this(className, methodName, order, testName, LocalDateTime.now());
+    }
+
+    /**
+     * Restores a result with its original start time (report readers)
+     */
+    @JsonCreator
+    public TestResult(@JsonProperty("className") String className,
+                      @JsonProperty("methodName") String methodName,
+                      @JsonProperty("order") int order,
+                      @JsonProperty("testName") String testName,
+                      @JsonProperty("startTime") LocalDateTime startTime) {
         this.className = className;
         this.methodName = methodName;
         this.order = order;
         this.testName = testName;
         this.passed = true;
-        this.startTime = LocalDateTime.now();
+        this.startTime = startTime;
         this.category = "general";
         this.severity = Severity.Level.MEDIUM;
         this.priority = Priority.Level.P2;
@@ -55,7 +82,7 @@ public class TestResult {
         steps.add(step);
     }
 
-    public void markCompleted(boolean success, String error) {
+    public synchronized void markCompleted(boolean success, String error) {
         this.endTime = LocalDateTime.now();
         this.passed = success;
         this.errorMessage = error;
@@ -68,7 +95,33 @@ public class TestResult {
         }
     }
 
-    public void markStepCompleted(int stepOrder, boolean success, String error) {
+    /**
+     * Restores the completion state of a result (report readers)
+     */
+    public void restoreCompletion(boolean passed, LocalDateTime endTime, String errorMessage) {
+        this.passed = passed;
+        this.endTime = endTime;
+        this.errorMessage = errorMessage;
+    }
+
+    /**
+     * Adds an attempt of an invocation that was rerun after a failure
+     */
+    public synchronized void addAttempt(AttemptResult attempt) {
+        attempts.add(attempt);
+    }
+
+    /**
+     * Clears the step outcomes of a failed attempt before the test runs again
+     */
+    public synchronized void restartSteps() {
+        for (int i = 0; i < steps.size(); i++) {
+            StepResult step = steps.get(i);
+            steps.set(i, new StepResult(step.getOrder(), step.getDescription()));
+        }
+    }
+
+    public synchronized void markStepCompleted(int stepOrder, boolean success, String error) {
         for (StepResult step : steps) {
             if (step.getOrder() == stepOrder) {
                 step.markCompleted(success, error);
@@ -80,6 +133,9 @@ public class TestResult {
     // Getters
     public String getClassName() { return className; }
     public String getMethodName() { return methodName; }
+    public String getInvocationId() { return invocationId; }
+    public String getThreadName() { return threadName; }
+    public String getForkId() { return forkId; }
     public int getOrder() { return order; }
     public String getTestName() { return testName; }
     public String getCategory() { return category; }
@@ -87,7 +143,13 @@ public class TestResult {
     public LocalDateTime getStartTime() { return startTime; }
     public LocalDateTime getEndTime() { return endTime; }
     public String getErrorMessage() { return errorMessage; }
+    public String getErrorType() { return errorType; }
+    public String getStackTraceId() { return stackTraceId; }
     public List<StepResult> getSteps() { return steps; }
+    /** Every attempt of an invocation that was rerun; empty if the first attempt was the only one */
+    public List<AttemptResult> getAttempts() { return attempts; }
+    /** Whether a failure of this known flaky test was reported without failing the test run */
+    public boolean isQuarantined() { return quarantined; }
     public Severity.Level getSeverity() { return severity; }
     public Priority.Level getPriority() { return priority; }
     public String getTestLevel() { return testLevel; }
@@ -96,8 +158,23 @@ public class TestResult {
     public String getAuthor() { return author; }
     public String getVersion() { return version; }
     public String getDescription() { return description; }
+    public boolean isTimedOut() { return timedOut; }
+    public long getTimeoutMillis() { return timeoutMillis; }
+    public String getHangStackTrace() { return hangStackTrace; }
+    public String getThreadDump() { return threadDump; }
+
+    /**
+     * Whether the test passed only after a rerun
+     */
+    @JsonIgnore
+    public boolean isFlaky() {
+        return passed && !attempts.isEmpty();
+    }
 
     // Setters only for fields that need to be modified
+    public void setInvocationId(String invocationId) { this.invocationId = invocationId; }
+    public void setThreadName(String threadName) { this.threadName = threadName; }
+    public void setForkId(String forkId) { this.forkId = forkId; }
     public void setOrder(int order) { this.order = order; }
     public void setTestName(String testName) { this.testName = testName; }
     public void setCategory(String category) { this.category = category; }
@@ -109,4 +186,17 @@ public class TestResult {
     public void setAuthor(String author) { this.author = author; }
     public void setVersion(String version) { this.version = version; }
     public void setDescription(String description) { this.description = description; }
+    public void setErrorType(String errorType) { this.errorType = errorType; }
+    public void setStackTraceId(String stackTraceId) { this.stackTraceId = stackTraceId; }
+    public void setQuarantined(boolean quarantined) { this.quarantined = quarantined; }
+
+    /**
+     * Records that the test exceeded its time limit, with the diagnostics captured at that moment
+     */
+    public void markTimedOut(long timeoutMillis, String hangStackTrace, String threadDump) {
+        this.timedOut = true;
+        this.timeoutMillis = timeoutMillis;
+        this.hangStackTrace = hangStackTrace;
+        this.threadDump = threadDump;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,200 @@
+package io.github.lyazginad.testing.query;
+
+import io.github.lyazginad.testing.model.SummaryCube.Dimension;
+import io.github.lyazginad.testing.model.TestReport;
+import io.github.lyazginad.testing.model.TestResult;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Secondary indexes over the results of a report.
+ * <p>
+ * Low cardinality dimensions (outcome and the annotation enums) are indexed with one
+ * bitmap per value; high cardinality dimensions (category and author) with sorted
+ * posting lists of row numbers. Durations are indexed by a row permutation sorted by
+ * duration, which answers range filters with a binary search and top-N queries by
+ * walking from the slow end.
+ */
+public class ReportIndex {
+
+    private final List<TestResult> rows;
+    private final Map<Dimension, Map<String, BitSet>> bitmaps = new EnumMap<>(Dimension.class);
+    private final Map<Dimension, Map<String, Postings>> postings = new EnumMap<>(Dimension.class);
+    private final int[] rowsByDuration;
+    private final long[] sortedDurations;
+
+    public ReportIndex(TestReport report) {
+        this(report.getTestResults());
+    }
+
+    public ReportIndex(List<TestResult> results) {
+        this.rows = new ArrayList<>(results);
+        int size = rows.size();
+
+        for (Dimension dimension : Dimension.values()) {
+            if (isHighCardinality(dimension)) {
+                postings.put(dimension, new HashMap<>());
+            } else {
+                bitmaps.put(dimension, new HashMap<>());
+            }
+        }
+
+        long[] durations = new long[size];
+        for (int row = 0; row < size; row++) {
+            TestResult result = rows.get(row);
+            for (Dimension dimension : Dimension.values()) {
+                String value = valueOf(result, dimension);
+                if (isHighCardinality(dimension)) {
+                    postings.get(dimension).computeIfAbsent(value, v -> new Postings()).add(row);
+                } else {
+                    bitmaps.get(dimension).computeIfAbsent(value, v -> new BitSet(size)).set(row);
+                }
+            }
+            durations[row] = result.getDuration();
+        }
+
+        // Sort row numbers by duration (ties keep row order)
+        this.rowsByDuration = sortByKey(durations);
+        this.sortedDurations = new long[size];
+        for (int i = 0; i < size; i++) {
+            sortedDurations[i] = durations[rowsByDuration[i]];
+        }
+    }
+
+    public int size() {
+        return rows.size();
+    }
+
+    public TestResult get(int row) {
+        return rows.get(row);
+    }
+
+    /**
+     * Starts a query over this index
+     */
+    public ReportQuery query() {
+        return new ReportQuery(this);
+    }
+
+    /**
+     * Rows having any of the given values in a dimension
+     */
+    BitSet rowsWith(Dimension dimension, List<String> values) {
+        BitSet result = new BitSet(rows.size());
+        for (String value : values) {
+            if (isHighCardinality(dimension)) {
+                Postings list = postings.get(dimension).get(value);
+                if (list != null) {
+                    list.addTo(result);
+                }
+            } else {
+                BitSet bitmap = bitmaps.get(dimension).get(value);
+                if (bitmap != null) {
+                    result.or(bitmap);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Rows with a duration within [min, max]
+     */
+    BitSet rowsWithDuration(long min, long max) {
+        BitSet result = new BitSet(rows.size());
+        for (int i = lowerBound(min); i < sortedDurations.length && sortedDurations[i] <= max; i++) {
+            result.set(rowsByDuration[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Rows in descending duration order
+     */
+    int rowByDurationDescending(int position) {
+        return rowsByDuration[rowsByDuration.length - 1 - position];
+    }
+
+    /**
+     * Distinct values of a dimension
+     */
+    public List<String> values(Dimension dimension) {
+        List<String> values = new ArrayList<>(isHighCardinality(dimension)
+                ? postings.get(dimension).keySet() : bitmaps.get(dimension).keySet());
+        values.sort(Comparator.nullsFirst(Comparator.naturalOrder()));
+        return values;
+    }
+
+    private int lowerBound(long duration) {
+        int low = 0;
+        int high = sortedDurations.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (sortedDurations[middle] < duration) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static boolean isHighCardinality(Dimension dimension) {
+        return dimension == Dimension.CATEGORY || dimension == Dimension.AUTHOR;
+    }
+
+    static String valueOf(TestResult result, Dimension dimension) {
+        switch (dimension) {
+            case OUTCOME: return result.isPassed() ? "PASSED" : "FAILED";
+            case SEVERITY: return result.getSeverity().name();
+            case PRIORITY: return result.getPriority().name();
+            case LEVEL: return result.getTestLevel();
+            case TYPE: return result.getTestType();
+            case METHOD: return result.getTestMethod();
+            case CATEGORY: return result.getCategory();
+            case AUTHOR: return result.getAuthor();
+            default: throw new IllegalArgumentException("Unknown dimension: " + dimension);
+        }
+    }
+
+    private static int[] sortByKey(long[] keys) {
+        Integer[] order = new Integer[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(keys[a], keys[b]));
+        int[] result = new int[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            result[i] = order[i];
+        }
+        return result;
+    }
+
+    /**
+     * Growable sorted list of row numbers
+     */
+    private static final class Postings {
+        private int[] rows = new int[4];
+        private int size;
+
+        void add(int row) {
+            if (size == rows.length) {
+                rows = Arrays.copyOf(rows, size * 2);
+            }
+            rows[size++] = row;
+        }
+
+        void addTo(BitSet bitSet) {
+            for (int i = 0; i < size; i++) {
+                bitSet.set(rows[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package io.github.lyazginad.testing.query;
+
+import io.github.lyazginad.testing.model.SummaryCube.Dimension;
+import io.github.lyazginad.testing.model.TestResult;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Filter and top-N query over a {@link ReportIndex}.
+ * <p>
+ * Filters on the same dimension are combined with OR, filters on different
+ * dimensions with AND. Matching rows are computed by intersecting bitmaps,
+ * never by scanning the results.
+ */
+public class ReportQuery {
+
+    private final ReportIndex index;
+    private final Map<Dimension, List<String>> filters = new EnumMap<>(Dimension.class);
+    private long minDuration = Long.MIN_VALUE;
+    private long maxDuration = Long.MAX_VALUE;
+    private boolean slowestFirst;
+    private int limit = Integer.MAX_VALUE;
+
+    ReportQuery(ReportIndex index) {
+        this.index = index;
+    }
+
+    public ReportQuery where(Dimension dimension, String... values) {
+        filters.computeIfAbsent(dimension, d -> new ArrayList<>()).addAll(Arrays.asList(values));
+        return this;
+    }
+
+    public ReportQuery durationBetween(long minMillis, long maxMillis) {
+        this.minDuration = minMillis;
+        this.maxDuration = maxMillis;
+        return this;
+    }
+
+    /**
+     * Orders the results by descending duration (top-N slowest together with {@link #limit(int)})
+     */
+    public ReportQuery slowestFirst() {
+        this.slowestFirst = true;
+        return this;
+    }
+
+    public ReportQuery limit(int limit) {
+        this.limit = limit;
+        return this;
+    }
+
+    /**
+     * Number of matching results, ignoring the limit
+     */
+    public int count() {
+        return matchingRows().cardinality();
+    }
+
+    public List<TestResult> execute() {
+        BitSet rows = matchingRows();
+        List<TestResult> results = new ArrayList<>(Math.min(limit, rows.cardinality()));
+
+        if (slowestFirst) {
+            for (int position = 0; position < index.size() && results.size() < limit; position++) {
+                int row = index.rowByDurationDescending(position);
+                if (rows.get(row)) {
+                    results.add(index.get(row));
+                }
+            }
+        } else {
+            for (int row = rows.nextSetBit(0); row >= 0 && results.size() < limit; row = rows.nextSetBit(row + 1)) {
+                results.add(index.get(row));
+            }
+        }
+        return results;
+    }
+
+    private BitSet matchingRows() {
+        BitSet rows;
+        if (minDuration != Long.MIN_VALUE || maxDuration != Long.MAX_VALUE) {
+            rows = index.rowsWithDuration(minDuration, maxDuration);
+        } else {
+            rows = new BitSet(index.size());
+            rows.set(0, index.size());
+        }
+        for (Map.Entry<Dimension, List<String>> filter : filters.entrySet()) {
+            rows.and(index.rowsWith(filter.getKey(), filter.getValue()));
+            if (rows.isEmpty()) {
+                break;
+            }
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,491 @@
+package io.github.lyazginad.testing.report;
+
+import io.github.lyazginad.testing.annotations.Priority;
+import io.github.lyazginad.testing.annotations.Severity;
+import io.github.lyazginad.testing.model.AttemptResult;
+import io.github.lyazginad.testing.model.StepResult;
+import io.github.lyazginad.testing.model.TestReport;
+import io.github.lyazginad.testing.model.TestResult;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary encoding of test reports.
+ * <p>
+ * Results are written as a stream of records with variable length integers and a
+ * per-stream string table, so repeated class names, categories, authors and error
+ * messages are stored once. Totals and the distinct failure stack traces are written
+ * in a trailer, which keeps the format
+ * streamable: results can be appended one by one and read back one by one.
+ */
+public final class BinaryReportFormat {
+
+    public static final String FILE_EXTENSION = ".bin";
+
+    private static final int MAGIC = 0x54524550; // "TREP"
+    private static final int VERSION = 5;
+    private static final int FIRST_VERSION_WITH_INVOCATIONS = 2;
+    private static final int FIRST_VERSION_WITH_STACK_TRACES = 3;
+    private static final int FIRST_VERSION_WITH_THREADS = 4;
+    private static final int FIRST_VERSION_WITH_ATTEMPTS = 5;
+    private static final int RECORD = 1;
+    private static final int END = 0;
+    private static final int MAX_INTERNED_LENGTH = 512;
+    private static final long SECONDS_PER_DAY = 86_400;
+
+    private static final int STRING_NULL = 0;
+    private static final int STRING_INTERNED = 1;
+    private static final int STRING_INLINE = 2;
+    private static final int STRING_REFERENCE = 3;
+
+    private BinaryReportFormat() {
+    }
+
+    /**
+     * Writes a complete report
+     */
+    public static void write(TestReport report, File file) throws IOException {
+        try (Writer writer = new Writer(Files.newOutputStream(file.toPath()), report.getExecutionTime())) {
+            for (TestResult result : report.allTestResults()) {
+                writer.write(result);
+            }
+            writer.finish(report);
+        }
+    }
+
+    /**
+     * Reads a complete report
+     */
+    public static TestReport read(File file) throws IOException {
+        try (Reader reader = new Reader(Files.newInputStream(file.toPath()))) {
+            TestReport report = new TestReport();
+            report.setExecutionTime(reader.getExecutionTime());
+            TestResult result;
+            while ((result = reader.next()) != null) {
+                report.addTestResult(result);
+            }
+            reader.restoreTotals(report);
+            report.setStackTraces(reader.getStackTraces());
+            return report;
+        }
+    }
+
+    /**
+     * Returns true if the stream starts with the binary report header
+     */
+    public static boolean isBinaryReport(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(file.toPath()))) {
+            return in.readInt() == MAGIC;
+        } catch (EOFException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Streaming writer of result records
+     */
+    public static final class Writer implements Closeable {
+        private final DataOutputStream out;
+        private final Map<String, Integer> strings = new HashMap<>();
+        private final int maxInternedStrings;
+        private boolean finished;
+
+        public Writer(OutputStream stream, LocalDateTime executionTime) throws IOException {
+            this(stream, executionTime, Integer.MAX_VALUE);
+        }
+
+        /**
+         * Writer with a bounded string table; once it is full, new strings are written inline.
+         * Keeps the writer's memory constant for long streams of unique test names.
+         */
+        public Writer(OutputStream stream, LocalDateTime executionTime, int maxInternedStrings) throws IOException {
+            this.maxInternedStrings = maxInternedStrings;
+            this.out = new DataOutputStream(new BufferedOutputStream(stream, 1 << 16));
+            out.writeInt(MAGIC);
+            writeVarInt(VERSION);
+            writeTime(executionTime);
+        }
+
+        public void write(TestResult result) throws IOException {
+            writeVarInt(RECORD);
+            writeString(result.getClassName());
+            writeString(result.getMethodName());
+            writeString(result.getInvocationId());
+            writeString(result.getThreadName());
+            writeString(result.getForkId());
+            writeVarLong(zigzag(result.getOrder()));
+            writeString(result.getTestName());
+            writeString(result.getCategory());
+            out.writeBoolean(result.isPassed());
+            writeTime(result.getStartTime());
+            writeTime(result.getEndTime());
+            writeString(result.getErrorMessage());
+            writeString(result.getErrorType());
+            writeString(result.getStackTraceId());
+            writeVarInt(result.getSeverity().ordinal());
+            writeVarInt(result.getPriority().ordinal());
+            writeString(result.getTestLevel());
+            writeString(result.getTestType());
+            writeString(result.getTestMethod());
+            writeString(result.getAuthor());
+            writeString(result.getVersion());
+            writeString(result.getDescription());
+
+            out.writeBoolean(result.isTimedOut());
+            if (result.isTimedOut()) {
+                writeVarLong(result.getTimeoutMillis());
+                writeString(result.getHangStackTrace());
+                writeString(result.getThreadDump());
+            }
+
+            List<StepResult> steps = result.getSteps();
+            writeVarInt(steps.size());
+            for (StepResult step : steps) {
+                writeVarLong(zigzag(step.getOrder()));
+                writeString(step.getDescription());
+                out.writeBoolean(step.isPassed());
+                writeTime(step.getStartTime());
+                writeTime(step.getEndTime());
+                writeString(step.getErrorMessage());
+            }
+
+            out.writeBoolean(result.isQuarantined());
+            List<AttemptResult> attempts = result.getAttempts();
+            writeVarInt(attempts.size());
+            for (AttemptResult attempt : attempts) {
+                writeVarInt(attempt.getAttempt());
+                out.writeBoolean(attempt.isPassed());
+                writeVarLong(attempt.getDurationMicros());
+                writeString(attempt.getErrorMessage());
+                writeString(attempt.getErrorType());
+                writeString(attempt.getStackTraceId());
+            }
+        }
+
+        /**
+         * Writes the trailer with the report totals; results may not be written afterwards
+         */
+        public void finish(TestReport report) throws IOException {
+            writeVarInt(END);
+            writeVarInt(report.getTotalTests());
+            writeVarInt(report.getPassedTests());
+            writeVarInt(report.getFailedTests());
+            writeVarLong(report.getTotalDuration());
+            Map<String, String> stackTraces = report.getStackTraces();
+            writeVarInt(stackTraces.size());
+            for (Map.Entry<String, String> stackTrace : stackTraces.entrySet()) {
+                writeString(stackTrace.getKey());
+                writeString(stackTrace.getValue());
+            }
+            finished = true;
+        }
+
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!finished) {
+                writeVarInt(END);
+            }
+            out.close();
+        }
+
+        /** Short strings go into the string table, long ones (stack traces, dumps) are written inline */
+        private void writeString(String value) throws IOException {
+            if (value == null) {
+                writeVarInt(STRING_NULL);
+                return;
+            }
+            boolean intern = value.length() <= MAX_INTERNED_LENGTH;
+            if (intern) {
+                Integer id = strings.get(value);
+                if (id != null) {
+                    writeVarInt(STRING_REFERENCE + id);
+                    return;
+                }
+                intern = strings.size() < maxInternedStrings;
+                if (intern) {
+                    strings.put(value, strings.size());
+                }
+            }
+            writeVarInt(intern ? STRING_INTERNED : STRING_INLINE);
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(bytes.length);
+            out.write(bytes);
+        }
+
+        private void writeTime(LocalDateTime time) throws IOException {
+            if (time == null) {
+                out.writeBoolean(false);
+                return;
+            }
+            out.writeBoolean(true);
+            writeVarLong(zigzag(time.toEpochSecond(ZoneOffset.UTC)));
+            writeVarInt(time.getNano());
+        }
+
+        private void writeVarInt(int value) throws IOException {
+            writeVarLong(value & 0xFFFFFFFFL);
+        }
+
+        private void writeVarLong(long value) throws IOException {
+            while ((value & ~0x7FL) != 0) {
+                out.writeByte((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            out.writeByte((int) value);
+        }
+
+        private static long zigzag(long value) {
+            return (value << 1) ^ (value >> 63);
+        }
+    }
+
+    /**
+     * Streaming reader of result records
+     */
+    public static final class Reader implements Closeable {
+        private final DataInputStream in;
+        private final List<String> strings = new ArrayList<>();
+        private final LocalDateTime executionTime;
+        private final int version;
+        private int[] totals;
+        private long totalDuration;
+        private final Map<String, String> stackTraces = new LinkedHashMap<>();
+        /** Day of the last time read; a run's timestamps share a few days, not one per timestamp */
+        private LocalDate day;
+        /** Encoded string being read; reused, only the decoded strings are kept */
+        private byte[] buffer = new byte[MAX_INTERNED_LENGTH];
+
+        public Reader(InputStream stream) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(stream, 1 << 16));
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a binary test report");
+            }
+            this.version = readVarInt();
+            if (version < 1 || version > VERSION) {
+                throw new IOException("Unsupported binary report version: " + version);
+            }
+            this.executionTime = readTime();
+        }
+
+        public LocalDateTime getExecutionTime() {
+            return executionTime;
+        }
+
+        /**
+         * Next result, or null at the end of the stream
+         */
+        public TestResult next() throws IOException {
+            if (totals != null) {
+                return null;
+            }
+            int marker;
+            try {
+                marker = readVarInt();
+            } catch (EOFException e) {
+                // Stream of a process that did not finish writing
+                totals = new int[0];
+                return null;
+            }
+            if (marker == END) {
+                readTrailer();
+                return null;
+            }
+
+            String className = readString();
+            String methodName = readString();
+            String invocationId = null;
+            if (version >= FIRST_VERSION_WITH_INVOCATIONS) {
+                invocationId = readString();
+            }
+            String threadName = null;
+            String forkId = null;
+            if (version >= FIRST_VERSION_WITH_THREADS) {
+                threadName = readString();
+                forkId = readString();
+            }
+            int order = (int) unzigzag(readVarLong());
+            String testName = readString();
+            String category = readString();
+            boolean passed = in.readBoolean();
+            LocalDateTime startTime = readTime();
+            LocalDateTime endTime = readTime();
+            String errorMessage = readString();
+            String errorType = null;
+            String stackTraceId = null;
+            if (version >= FIRST_VERSION_WITH_STACK_TRACES) {
+                errorType = readString();
+                stackTraceId = readString();
+            }
+
+            TestResult result = new TestResult(className, methodName, order, testName, startTime);
+            result.setInvocationId(invocationId);
+            result.setThreadName(threadName);
+            result.setForkId(forkId);
+            result.setCategory(category);
+            result.restoreCompletion(passed, endTime, errorMessage);
+            result.setErrorType(errorType);
+            result.setStackTraceId(stackTraceId);
+            result.setSeverity(Severity.Level.values()[readVarInt()]);
+            result.setPriority(Priority.Level.values()[readVarInt()]);
+            result.setTestLevel(readString());
+            result.setTestType(readString());
+            result.setTestMethod(readString());
+            result.setAuthor(readString());
+            result.setVersion(readString());
+            result.setDescription(readString());
+
+            if (in.readBoolean()) {
+                long timeoutMillis = readVarLong();
+                result.markTimedOut(timeoutMillis, readString(), readString());
+            }
+
+            int stepCount = readVarInt();
+            for (int i = 0; i < stepCount; i++) {
+                int stepOrder = (int) unzigzag(readVarLong());
+                String description = readString();
+                boolean stepPassed = in.readBoolean();
+                LocalDateTime stepStart = readTime();
+                LocalDateTime stepEnd = readTime();
+                String stepError = readString();
+
+                StepResult step = new StepResult(stepOrder, description, stepStart);
+                step.restoreCompletion(stepPassed, stepEnd, stepError);
+                result.addStep(step);
+            }
+
+            if (version >= FIRST_VERSION_WITH_ATTEMPTS) {
+                result.setQuarantined(in.readBoolean());
+                int attemptCount = readVarInt();
+                for (int i = 0; i < attemptCount; i++) {
+                    int attempt = readVarInt();
+                    boolean attemptPassed = in.readBoolean();
+                    long durationMicros = readVarLong();
+                    result.addAttempt(new AttemptResult(attempt, attemptPassed, durationMicros,
+                            readString(), readString(), readString()));
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Copies the trailer totals into a report built from the records; they differ
+         * when the writer counted results it did not store
+         */
+        public void restoreTotals(TestReport report) {
+            if (totals != null && totals.length == 3) {
+                report.setTotalTests(totals[0]);
+                report.setPassedTests(totals[1]);
+                report.setFailedTests(totals[2]);
+                report.setTotalDuration(totalDuration);
+            }
+        }
+
+        /**
+         * Stack traces from the trailer, available once all records are read
+         */
+        public Map<String, String> getStackTraces() {
+            return stackTraces;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+
+        private void readTrailer() throws IOException {
+            int totalTests;
+            try {
+                totalTests = readVarInt();
+            } catch (EOFException e) {
+                // Writer closed without finish: the records are complete, the totals unknown
+                totals = new int[0];
+                return;
+            }
+            totals = new int[] {totalTests, readVarInt(), readVarInt()};
+            totalDuration = readVarLong();
+            if (version >= FIRST_VERSION_WITH_STACK_TRACES) {
+                int count = readVarInt();
+                for (int i = 0; i < count; i++) {
+                    stackTraces.put(readString(), readString());
+                }
+            }
+        }
+
+        private String readString() throws IOException {
+            int marker = readVarInt();
+            if (marker == STRING_NULL) {
+                return null;
+            }
+            if (marker >= STRING_REFERENCE) {
+                return strings.get(marker - STRING_REFERENCE);
+            }
+            int length = readVarInt();
+            if (buffer.length < length) {
+                buffer = new byte[Math.max(length, buffer.length * 2)];
+            }
+            in.readFully(buffer, 0, length);
+            String value = new String(buffer, 0, length, StandardCharsets.UTF_8);
+            if (marker == STRING_INTERNED) {
+                strings.add(value);
+            }
+            return value;
+        }
+
+        private LocalDateTime readTime() throws IOException {
+            if (!in.readBoolean()) {
+                return null;
+            }
+            long seconds = unzigzag(readVarLong());
+            long epochDay = Math.floorDiv(seconds, SECONDS_PER_DAY);
+            if (day == null || day.toEpochDay() != epochDay) {
+                day = LocalDate.ofEpochDay(epochDay);
+            }
+            long nanoOfDay = Math.floorMod(seconds, SECONDS_PER_DAY) * 1_000_000_000L + readVarInt();
+            return LocalDateTime.of(day, LocalTime.ofNanoOfDay(nanoOfDay));
+        }
+
+        private int readVarInt() throws IOException {
+            return (int) readVarLong();
+        }
+
+        private long readVarLong() throws IOException {
+            long value = 0;
+            int shift = 0;
+            int b;
+            do {
+                b = in.readUnsignedByte();
+                value |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return value;
+        }
+
+        private static long unzigzag(long value) {
+            return (value >>> 1) ^ -(value & 1);
+        }
+    }
+}
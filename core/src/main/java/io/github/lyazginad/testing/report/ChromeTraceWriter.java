@@ -0,0 +1,179 @@
+package io.github.lyazginad.testing.report;
+
+import io.github.lyazginad.testing.model.StepResult;
+import io.github.lyazginad.testing.model.TestReport;
+import io.github.lyazginad.testing.model.TestResult;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes the test run as a timeline in the Chrome trace event format, for Perfetto
+ * ({@code ui.perfetto.dev}) or {@code chrome://tracing}.
+ * <p>
+ * Every fork is a process and every thread a track. Tests are spans with their annotation
+ * values as args; steps are nested spans that run from the end of the previous step (or
+ * the start of the test) to their own completion. The lane utilization and the critical
+ * path of the run are added as {@code otherData}.
+ */
+public final class ChromeTraceWriter {
+
+    public static final String DEFAULT_FILE_NAME = "test-timeline.json";
+
+    private static final int CRITICAL_PATH_LIMIT = 20;
+
+    private ChromeTraceWriter() {
+    }
+
+    public static TimelineAnalysis write(TestReport report, File file) throws IOException {
+        TimelineAnalysis timeline = TimelineAnalysis.of(report.allTestResults());
+        long origin = timeline.getStartMicros();
+
+        Map<String, Integer> forks = new LinkedHashMap<>();
+        for (TimelineAnalysis.Lane lane : timeline.getLanes()) {
+            forks.putIfAbsent(lane.getForkId(), forks.size() + 1);
+        }
+
+        try (JsonGenerator json = new JsonFactory().createGenerator(file, JsonEncoding.UTF8)) {
+            json.writeStartObject();
+            json.writeStringField("displayTimeUnit", "ms");
+            json.writeArrayFieldStart("traceEvents");
+
+            for (Map.Entry<String, Integer> fork : forks.entrySet()) {
+                writeMetadata(json, "process_name", fork.getValue(), null,
+                        "fork " + (fork.getKey() != null ? fork.getKey() : "?"));
+            }
+            for (TimelineAnalysis.Lane lane : timeline.getLanes()) {
+                writeMetadata(json, "thread_name", forks.get(lane.getForkId()), lane.getIndex(),
+                        lane.getThreadName() != null ? lane.getThreadName() : "thread");
+            }
+
+            for (TestResult result : report.allTestResults()) {
+                TimelineAnalysis.Lane lane = timeline.laneOf(result);
+                if (lane == null) {
+                    continue;
+                }
+                writeTest(json, result, forks.get(lane.getForkId()), lane.getIndex(), origin);
+            }
+            json.writeEndArray();
+
+            writeSummary(json, timeline);
+            json.writeEndObject();
+        }
+        return timeline;
+    }
+
+    private static void writeMetadata(JsonGenerator json, String name, int pid, Integer tid, String value)
+            throws IOException {
+        json.writeStartObject();
+        json.writeStringField("name", name);
+        json.writeStringField("ph", "M");
+        json.writeNumberField("pid", pid);
+        if (tid != null) {
+            json.writeNumberField("tid", tid);
+        }
+        json.writeObjectFieldStart("args");
+        json.writeStringField("name", value);
+        json.writeEndObject();
+        json.writeEndObject();
+    }
+
+    private static void writeTest(JsonGenerator json, TestResult result, int pid, int tid, long origin)
+            throws IOException {
+        long start = TimelineAnalysis.micros(result.getStartTime());
+        long end = Math.max(start, TimelineAnalysis.micros(result.getEndTime()));
+
+        json.writeStartObject();
+        json.writeStringField("name", result.getTestName() != null ? result.getTestName() : result.getMethodName());
+        json.writeStringField("cat", "test");
+        json.writeStringField("ph", "X");
+        json.writeNumberField("ts", start - origin);
+        json.writeNumberField("dur", end - start);
+        json.writeNumberField("pid", pid);
+        json.writeNumberField("tid", tid);
+        if (!result.isPassed()) {
+            json.writeStringField("cname", "terrible");
+        }
+        json.writeObjectFieldStart("args");
+        writeArg(json, "id", result.getInvocationId());
+        writeArg(json, "class", result.getClassName());
+        json.writeBooleanField("passed", result.isPassed());
+        writeArg(json, "error", result.getErrorMessage());
+        writeArg(json, "severity", result.getSeverity() != null ? result.getSeverity().name() : null);
+        writeArg(json, "priority", result.getPriority() != null ? result.getPriority().name() : null);
+        writeArg(json, "category", result.getCategory());
+        writeArg(json, "level", result.getTestLevel());
+        writeArg(json, "type", result.getTestType());
+        writeArg(json, "method", result.getTestMethod());
+        writeArg(json, "author", result.getAuthor());
+        writeArg(json, "version", result.getVersion());
+        if (result.isTimedOut()) {
+            json.writeNumberField("timeoutMillis", result.getTimeoutMillis());
+        }
+        if (!result.getAttempts().isEmpty()) {
+            json.writeNumberField("attempts", result.getAttempts().size());
+        }
+        if (result.isQuarantined()) {
+            json.writeBooleanField("quarantined", true);
+        }
+        json.writeEndObject();
+        json.writeEndObject();
+
+        List<StepResult> steps = new ArrayList<>(result.getSteps());
+        steps.removeIf(step -> step.getEndTime() == null);
+        steps.sort(Comparator.comparing(StepResult::getEndTime));
+        long stepStart = start;
+        for (StepResult step : steps) {
+            long stepEnd = Math.min(end, Math.max(stepStart, TimelineAnalysis.micros(step.getEndTime())));
+            json.writeStartObject();
+            json.writeStringField("name", "Step " + step.getOrder() + ": " + step.getDescription());
+            json.writeStringField("cat", "step");
+            json.writeStringField("ph", "X");
+            json.writeNumberField("ts", stepStart - origin);
+            json.writeNumberField("dur", stepEnd - stepStart);
+            json.writeNumberField("pid", pid);
+            json.writeNumberField("tid", tid);
+            json.writeObjectFieldStart("args");
+            json.writeBooleanField("passed", step.isPassed());
+            writeArg(json, "error", step.getErrorMessage());
+            json.writeEndObject();
+            json.writeEndObject();
+            stepStart = stepEnd;
+        }
+    }
+
+    private static void writeSummary(JsonGenerator json, TimelineAnalysis timeline) throws IOException {
+        json.writeObjectFieldStart("otherData");
+        json.writeNumberField("wallMillis", timeline.getWallMicros() / 1000.0);
+        json.writeNumberField("lanes", timeline.getLanes().size());
+        json.writeNumberField("utilization", Math.round(timeline.getUtilization() * 1000) / 1000.0);
+        json.writeNumberField("tailMillis", timeline.getTailMicros() / 1000.0);
+        if (timeline.getCriticalLane() != null) {
+            json.writeStringField("criticalLane", timeline.getCriticalLane().getName());
+        }
+        json.writeArrayFieldStart("criticalPath");
+        for (TimelineAnalysis.Span span : timeline.getLongestOnCriticalPath(CRITICAL_PATH_LIMIT)) {
+            json.writeStartObject();
+            json.writeStringField("test", span.getTestId());
+            json.writeNumberField("durationMillis", span.getDurationMicros() / 1000.0);
+            json.writeBooleanField("passed", span.isPassed());
+            json.writeEndObject();
+        }
+        json.writeEndArray();
+        json.writeEndObject();
+    }
+
+    private static void writeArg(JsonGenerator json, String name, String value) throws IOException {
+        if (value != null) {
+            json.writeStringField(name, value);
+        }
+    }
+}
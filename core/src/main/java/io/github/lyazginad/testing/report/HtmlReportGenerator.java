@@ -0,0 +1,253 @@
+package io.github.lyazginad.testing.report;
+
+import io.github.lyazginad.testing.annotations.Priority;
+import io.github.lyazginad.testing.annotations.Severity;
+import io.github.lyazginad.testing.model.TestReport;
+import io.github.lyazginad.testing.model.TestResult;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Generates a static HTML report viewer that scales to very large reports.
+ * <p>
+ * Test rows are written pre-sorted into fixed size data chunks; a compact columnar
+ * index (outcome, severity, priority, category, duration, name and the alternative
+ * sort orders) is written separately and only loaded once the user filters or sorts.
+ * The page itself starts from the small summary file with precomputed aggregates and
+ * renders only the rows that are visible. Data files are JavaScript so that the
+ * report also works when opened directly from disk.
+ */
+public class HtmlReportGenerator {
+
+    public static final int DEFAULT_CHUNK_SIZE = 1000;
+
+    private static final String VIEWER_RESOURCE = "index.html";
+    private static final String DATA_DIRECTORY = "data";
+    private static final String CALLBACK = "window.__testingReport.";
+
+    /** Failures first, then by severity, priority, declared order and name */
+    private static final Comparator<TestResult> DEFAULT_ORDER = Comparator
+            .comparing(TestResult::isPassed)
+            .thenComparing(TestResult::getSeverity)
+            .thenComparing(TestResult::getPriority)
+            .thenComparingInt(TestResult::getOrder)
+            .thenComparing(TestResult::getTestName, Comparator.nullsLast(Comparator.naturalOrder()));
+
+    private final int chunkSize;
+    private final JsonFactory jsonFactory = new JsonFactory()
+            .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+    public HtmlReportGenerator() {
+        this(DEFAULT_CHUNK_SIZE);
+    }
+
+    public HtmlReportGenerator(int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize must be positive: " + chunkSize);
+        }
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Writes the viewer and its data files into the given directory and returns the page to open
+     */
+    public File generate(TestReport report, File outputDirectory) throws IOException {
+        Path dataDirectory = outputDirectory.toPath().resolve(DATA_DIRECTORY);
+        Files.createDirectories(dataDirectory);
+
+        // Rows are sorted before chunking, so spilled results are loaded back here
+        List<TestResult> rows = new ArrayList<>(report.getTestResults().size());
+        report.allTestResults().forEach(rows::add);
+        rows.sort(DEFAULT_ORDER);
+
+        Map<String, Integer> categories = new LinkedHashMap<>();
+        for (TestResult row : rows) {
+            categories.putIfAbsent(row.getCategory(), categories.size());
+        }
+
+        int chunkCount = writeChunks(rows, dataDirectory);
+        writeIndex(rows, categories, dataDirectory);
+        writeSummary(report, rows, categories, chunkCount, dataDirectory);
+
+        File page = new File(outputDirectory, VIEWER_RESOURCE);
+        try (InputStream viewer = HtmlReportGenerator.class.getResourceAsStream(VIEWER_RESOURCE)) {
+            if (viewer == null) {
+                throw new IOException("Report viewer resource is missing: " + VIEWER_RESOURCE);
+            }
+            Files.copy(viewer, page.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        return page;
+    }
+
+    private int writeChunks(List<TestResult> rows, Path dataDirectory) throws IOException {
+        int chunkCount = (rows.size() + chunkSize - 1) / chunkSize;
+        for (int chunk = 0; chunk < chunkCount; chunk++) {
+            int from = chunk * chunkSize;
+            int to = Math.min(rows.size(), from + chunkSize);
+            try (Writer writer = open(dataDirectory.resolve(chunkFileName(chunk)))) {
+                writer.write(CALLBACK + "chunk(" + chunk + ", ");
+                JsonGenerator json = jsonFactory.createGenerator(writer);
+                json.writeStartArray();
+                for (int i = from; i < to; i++) {
+                    writeRow(json, rows.get(i));
+                }
+                json.writeEndArray();
+                json.flush();
+                writer.write(");\n");
+            }
+        }
+        return chunkCount;
+    }
+
+    private void writeRow(JsonGenerator json, TestResult result) throws IOException {
+        json.writeStartArray();
+        json.writeString(result.getTestName());
+        json.writeString(result.getClassName());
+        json.writeString(result.getMethodName());
+        json.writeString(result.getCategory());
+        json.writeNumber(result.isPassed() ? 1 : 0);
+        json.writeString(result.getSeverity().name());
+        json.writeString(result.getPriority().name());
+        json.writeString(result.getTestLevel());
+        json.writeString(result.getTestType());
+        json.writeNumber(result.getDuration());
+        json.writeString(result.getErrorMessage());
+        json.writeString(result.getAuthor());
+        json.writeNumber(result.getSteps().size());
+        json.writeEndArray();
+    }
+
+    private void writeIndex(List<TestResult> rows, Map<String, Integer> categories, Path dataDirectory) throws IOException {
+        int size = rows.size();
+        try (Writer writer = open(dataDirectory.resolve("index.js"))) {
+            writer.write(CALLBACK + "index(");
+            JsonGenerator json = jsonFactory.createGenerator(writer);
+            json.writeStartObject();
+
+            json.writeArrayFieldStart("passed");
+            for (TestResult row : rows) json.writeNumber(row.isPassed() ? 1 : 0);
+            json.writeEndArray();
+
+            json.writeArrayFieldStart("severity");
+            for (TestResult row : rows) json.writeNumber(row.getSeverity().ordinal());
+            json.writeEndArray();
+
+            json.writeArrayFieldStart("priority");
+            for (TestResult row : rows) json.writeNumber(row.getPriority().ordinal());
+            json.writeEndArray();
+
+            json.writeArrayFieldStart("category");
+            for (TestResult row : rows) json.writeNumber(categories.get(row.getCategory()));
+            json.writeEndArray();
+
+            json.writeArrayFieldStart("name");
+            for (TestResult row : rows) {
+                json.writeString((row.getTestName() + " " + row.getClassName()).toLowerCase(Locale.ROOT));
+            }
+            json.writeEndArray();
+
+            long[] durations = new long[size];
+            for (int i = 0; i < size; i++) {
+                durations[i] = rows.get(i).getDuration();
+            }
+
+            json.writeObjectFieldStart("sorts");
+            writeOrder(json, "duration", size, Comparator.<Integer>comparingLong(i -> durations[i]).reversed());
+            writeOrder(json, "name", size, Comparator.comparing(i -> String.valueOf(rows.get(i).getTestName())));
+            json.writeEndObject();
+
+            json.writeEndObject();
+            json.flush();
+            writer.write(");\n");
+        }
+    }
+
+    private void writeOrder(JsonGenerator json, String name, int size, Comparator<Integer> order) throws IOException {
+        List<Integer> ids = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            ids.add(i);
+        }
+        ids.sort(order);
+        json.writeArrayFieldStart(name);
+        for (int id : ids) {
+            json.writeNumber(id);
+        }
+        json.writeEndArray();
+    }
+
+    private void writeSummary(TestReport report, List<TestResult> rows, Map<String, Integer> categories,
+                              int chunkCount, Path dataDirectory) throws IOException {
+        int[][] severity = new int[Severity.Level.values().length][2];
+        int[][] priority = new int[Priority.Level.values().length][2];
+        int[][] category = new int[categories.size()][2];
+        for (TestResult row : rows) {
+            int outcome = row.isPassed() ? 0 : 1;
+            severity[row.getSeverity().ordinal()][outcome]++;
+            priority[row.getPriority().ordinal()][outcome]++;
+            category[categories.get(row.getCategory())][outcome]++;
+        }
+
+        try (Writer writer = open(dataDirectory.resolve("summary.js"))) {
+            writer.write(CALLBACK + "summary(");
+            JsonGenerator json = jsonFactory.createGenerator(writer);
+            json.writeStartObject();
+            json.writeStringField("executionTime", String.valueOf(report.getExecutionTime()));
+            json.writeNumberField("totalTests", report.getTotalTests());
+            json.writeNumberField("passedTests", report.getPassedTests());
+            json.writeNumberField("failedTests", report.getFailedTests());
+            json.writeNumberField("successRate", report.getSuccessRate());
+            json.writeNumberField("totalDuration", report.getTotalDuration());
+            json.writeNumberField("rowCount", rows.size());
+            json.writeNumberField("chunkSize", chunkSize);
+            json.writeNumberField("chunkCount", chunkCount);
+
+            List<String> severityNames = new ArrayList<>();
+            for (Severity.Level level : Severity.Level.values()) severityNames.add(level.name());
+            List<String> priorityNames = new ArrayList<>();
+            for (Priority.Level level : Priority.Level.values()) priorityNames.add(level.name());
+
+            writeAggregate(json, "severity", severityNames, severity);
+            writeAggregate(json, "priority", priorityNames, priority);
+            writeAggregate(json, "category", new ArrayList<>(categories.keySet()), category);
+
+            json.writeEndObject();
+            json.flush();
+            writer.write(");\n");
+        }
+    }
+
+    private void writeAggregate(JsonGenerator json, String name, List<String> keys, int[][] counts) throws IOException {
+        json.writeArrayFieldStart(name);
+        for (int i = 0; i < keys.size(); i++) {
+            json.writeStartObject();
+            json.writeStringField("name", keys.get(i));
+            json.writeNumberField("total", counts[i][0] + counts[i][1]);
+            json.writeNumberField("failed", counts[i][1]);
+            json.writeEndObject();
+        }
+        json.writeEndArray();
+    }
+
+    private static Writer open(Path file) throws IOException {
+        return Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+    }
+
+    private static String chunkFileName(int chunk) {
+        return String.format("rows-%05d.js", chunk);
+    }
+}
@@ -0,0 +1,61 @@
+package io.github.lyazginad.testing.report;
+
+import io.github.lyazginad.testing.model.TestReport;
+import io.github.lyazginad.testing.model.TestResult;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Writes JSON reports with a streaming generator.
+ * <p>
+ * The report header (totals, summaries) is serialized as usual, the results are then
+ * written one by one from {@link TestReport#allTestResults()}, so results spilled to
+ * disk are never loaded back into memory all at once.
+ */
+public final class JsonReportWriter {
+
+    private JsonReportWriter() {
+    }
+
+    public static void write(TestReport report, File file, boolean prettyPrint) throws IOException {
+        ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.registerModule(new JavaTimeModule());
+        objectMapper.disable(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        objectMapper.addMixIn(TestReport.class, WithoutResults.class);
+        ObjectWriter resultWriter = objectMapper.writerFor(TestResult.class);
+
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(file, JsonEncoding.UTF8)) {
+            if (prettyPrint) {
+                generator.useDefaultPrettyPrinter();
+            }
+
+            generator.writeStartObject();
+            JsonNode header = objectMapper.valueToTree(report);
+            for (Map.Entry<String, JsonNode> field : header.properties()) {
+                generator.writeFieldName(field.getKey());
+                objectMapper.writeTree(generator, field.getValue());
+            }
+
+            generator.writeArrayFieldStart("testResults");
+            for (TestResult result : report.allTestResults()) {
+                resultWriter.writeValue(generator, result);
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+        }
+    }
+
+    @JsonIgnoreProperties("testResults")
+    private abstract static class WithoutResults {
+    }
+}
@@ -0,0 +1,42 @@
+package io.github.lyazginad.testing.report;
+
+import io.github.lyazginad.testing.model.TestReport;
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.PropertyAccessor;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Reads JSON and binary test reports back into a {@link TestReport}
+ */
+public final class ReportReader {
+
+    private ReportReader() {
+    }
+
+    /**
+     * Reads a report, detecting the format from the file header
+     */
+    public static TestReport read(File file) throws IOException {
+        if (BinaryReportFormat.isBinaryReport(file)) {
+            return BinaryReportFormat.read(file);
+        }
+        return createJsonMapper().readValue(file, TestReport.class);
+    }
+
+    /**
+     * Object mapper for reading JSON reports; completion state is restored from fields
+     * and derived properties such as durations and summaries are ignored
+     */
+    public static ObjectMapper createJsonMapper() {
+        ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.registerModule(new JavaTimeModule());
+        objectMapper.setVisibility(PropertyAccessor.FIELD, JsonAutoDetect.Visibility.ANY);
+        objectMapper.disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        return objectMapper;
+    }
+}
@@ -0,0 +1,126 @@
+package io.github.lyazginad.testing.report;
+
+import io.github.lyazginad.testing.model.TestResult;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Temporary file holding test results that were moved off the heap.
+ * <p>
+ * Results are appended in the {@link BinaryReportFormat} record encoding and can be
+ * iterated any number of times; every iteration streams the file and only sees the
+ * results written before it started.
+ */
+public class ResultSpill implements Iterable<TestResult>, Closeable {
+
+    /** Class names, categories and authors repeat; test names mostly do not */
+    private static final int MAX_INTERNED_STRINGS = 1 << 14;
+
+    private final File file;
+    private final BinaryReportFormat.Writer writer;
+    private int size;
+    private boolean closed;
+
+    public ResultSpill(File directory, LocalDateTime executionTime) throws IOException {
+        Files.createDirectories(directory.toPath());
+        this.file = File.createTempFile("test-results-", ".spill", directory);
+        this.file.deleteOnExit();
+        this.writer = new BinaryReportFormat.Writer(Files.newOutputStream(file.toPath()), executionTime,
+                MAX_INTERNED_STRINGS);
+    }
+
+    public synchronized void write(TestResult result) throws IOException {
+        if (closed) {
+            throw new IOException("Spill file is closed: " + file);
+        }
+        writer.write(result);
+        size++;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    @Override
+    public Iterator<TestResult> iterator() {
+        int count;
+        BinaryReportFormat.Reader reader;
+        try {
+            synchronized (this) {
+                if (closed) {
+                    throw new IOException("Spill file is closed: " + file);
+                }
+                writer.flush();
+                count = size;
+            }
+            reader = new BinaryReportFormat.Reader(Files.newInputStream(file.toPath()));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read spilled test results from " + file, e);
+        }
+
+        return new Iterator<TestResult>() {
+            private int read;
+
+            @Override
+            public boolean hasNext() {
+                if (read < count) {
+                    return true;
+                }
+                closeQuietly(reader);
+                return false;
+            }
+
+            @Override
+            public TestResult next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                try {
+                    TestResult result = reader.next();
+                    if (result == null) {
+                        throw new IOException("Spill file ended after " + read + " of " + count + " results");
+                    }
+                    read++;
+                    return result;
+                } catch (IOException e) {
+                    closeQuietly(reader);
+                    throw new UncheckedIOException("Failed to read spilled test results from " + file, e);
+                }
+            }
+        };
+    }
+
+    /**
+     * Closes and deletes the spill file
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            try {
+                writer.close();
+            } finally {
+                Files.deleteIfExists(file.toPath());
+            }
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            // Nothing left to read
+        }
+    }
+}
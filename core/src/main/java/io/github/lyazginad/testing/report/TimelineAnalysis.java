@@ -0,0 +1,201 @@
+package io.github.lyazginad.testing.report;
+
+import io.github.lyazginad.testing.model.TestResult;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Lanes and critical path of a test run.
+ * <p>
+ * A lane is one thread of one fork; a lane runs its tests one after another. The run ends
+ * with the lane that finishes last, so the tests of that lane make up the critical path:
+ * shortening any other lane does not make the run shorter. The tail is the time the last
+ * lane still ran after all other lanes were done.
+ * <p>
+ * Results are streamed twice, so spilled results are never held in memory at once.
+ */
+public final class TimelineAnalysis {
+
+    private final Map<String, Lane> lanes = new LinkedHashMap<>();
+    private final List<Span> criticalPath = new ArrayList<>();
+    private long startMicros = Long.MAX_VALUE;
+    private long endMicros = Long.MIN_VALUE;
+    private Lane criticalLane;
+    private long tailMicros;
+
+    private TimelineAnalysis() {
+    }
+
+    public static TimelineAnalysis of(Iterable<TestResult> results) {
+        TimelineAnalysis analysis = new TimelineAnalysis();
+        for (TestResult result : results) {
+            if (result.getStartTime() == null || result.getEndTime() == null) {
+                continue;
+            }
+            long start = micros(result.getStartTime());
+            long end = Math.max(start, micros(result.getEndTime()));
+            analysis.startMicros = Math.min(analysis.startMicros, start);
+            analysis.endMicros = Math.max(analysis.endMicros, end);
+            analysis.lanes.computeIfAbsent(laneKey(result),
+                    key -> new Lane(analysis.lanes.size(), result.getForkId(), result.getThreadName()))
+                    .add(start, end);
+        }
+        if (analysis.lanes.isEmpty()) {
+            analysis.startMicros = 0;
+            analysis.endMicros = 0;
+            return analysis;
+        }
+
+        for (Lane lane : analysis.lanes.values()) {
+            if (analysis.criticalLane == null || lane.lastEndMicros > analysis.criticalLane.lastEndMicros) {
+                analysis.criticalLane = lane;
+            }
+        }
+        if (analysis.lanes.size() > 1) {
+            long otherLanesEnd = Long.MIN_VALUE;
+            for (Lane lane : analysis.lanes.values()) {
+                if (lane != analysis.criticalLane) {
+                    otherLanesEnd = Math.max(otherLanesEnd, lane.lastEndMicros);
+                }
+            }
+            analysis.tailMicros = analysis.endMicros - otherLanesEnd;
+        }
+
+        for (TestResult result : results) {
+            if (result.getStartTime() != null && result.getEndTime() != null
+                    && analysis.lanes.get(laneKey(result)) == analysis.criticalLane) {
+                long start = micros(result.getStartTime());
+                analysis.criticalPath.add(new Span(result, start, Math.max(start, micros(result.getEndTime()))));
+            }
+        }
+        analysis.criticalPath.sort(Comparator.comparingLong(Span::getStartMicros));
+        return analysis;
+    }
+
+    /**
+     * Microseconds since the epoch, treating report times as UTC like the binary format does
+     */
+    public static long micros(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC) * 1_000_000L + time.getNano() / 1_000;
+    }
+
+    static String laneKey(TestResult result) {
+        return result.getForkId() + '\u0000' + result.getThreadName();
+    }
+
+    public long getStartMicros() { return startMicros; }
+    public long getEndMicros() { return endMicros; }
+    public long getWallMicros() { return endMicros - startMicros; }
+    public long getTailMicros() { return tailMicros; }
+    public Lane getCriticalLane() { return criticalLane; }
+
+    public List<Lane> getLanes() {
+        return Collections.unmodifiableList(new ArrayList<>(lanes.values()));
+    }
+
+    Lane laneOf(TestResult result) {
+        return lanes.get(laneKey(result));
+    }
+
+    /**
+     * Tests of the critical lane in execution order
+     */
+    public List<Span> getCriticalPath() {
+        return Collections.unmodifiableList(criticalPath);
+    }
+
+    /**
+     * The longest tests on the critical path, longest first
+     */
+    public List<Span> getLongestOnCriticalPath(int limit) {
+        List<Span> longest = new ArrayList<>(criticalPath);
+        longest.sort(Comparator.comparingLong(Span::getDurationMicros).reversed());
+        return longest.subList(0, Math.min(limit, longest.size()));
+    }
+
+    /**
+     * Share of the wall-clock time the lanes were busy, 1.0 when every lane ran tests all the time
+     */
+    public double getUtilization() {
+        if (lanes.isEmpty() || getWallMicros() == 0) {
+            return 0;
+        }
+        long busy = 0;
+        for (Lane lane : lanes.values()) {
+            busy += lane.busyMicros;
+        }
+        return (double) busy / ((double) getWallMicros() * lanes.size());
+    }
+
+    /**
+     * One thread of one fork
+     */
+    public static final class Lane {
+        private final int index;
+        private final String forkId;
+        private final String threadName;
+        private long busyMicros;
+        private long firstStartMicros = Long.MAX_VALUE;
+        private long lastEndMicros = Long.MIN_VALUE;
+        private int tests;
+
+        Lane(int index, String forkId, String threadName) {
+            this.index = index;
+            this.forkId = forkId;
+            this.threadName = threadName;
+        }
+
+        private void add(long start, long end) {
+            busyMicros += end - start;
+            firstStartMicros = Math.min(firstStartMicros, start);
+            lastEndMicros = Math.max(lastEndMicros, end);
+            tests++;
+        }
+
+        public int getIndex() { return index; }
+        public String getForkId() { return forkId; }
+        public String getThreadName() { return threadName; }
+        public long getBusyMicros() { return busyMicros; }
+        public long getFirstStartMicros() { return firstStartMicros; }
+        public long getLastEndMicros() { return lastEndMicros; }
+        public int getTests() { return tests; }
+
+        public String getName() {
+            return (forkId != null ? forkId : "fork") + "/" + (threadName != null ? threadName : "thread");
+        }
+    }
+
+    /**
+     * A test on the critical path
+     */
+    public static final class Span {
+        private final String testId;
+        private final String className;
+        private final boolean passed;
+        private final long startMicros;
+        private final long endMicros;
+
+        Span(TestResult result, long startMicros, long endMicros) {
+            this.testId = result.getInvocationId() != null
+                    ? result.getInvocationId() : result.getClassName() + "#" + result.getMethodName();
+            this.className = result.getClassName();
+            this.passed = result.isPassed();
+            this.startMicros = startMicros;
+            this.endMicros = endMicros;
+        }
+
+        public String getTestId() { return testId; }
+        public String getClassName() { return className; }
+        public boolean isPassed() { return passed; }
+        public long getStartMicros() { return startMicros; }
+        public long getEndMicros() { return endMicros; }
+        public long getDurationMicros() { return endMicros - startMicros; }
+    }
+}
@@ -0,0 +1,258 @@
+package io.github.lyazginad.testing.util;
+
+import io.github.lyazginad.testing.annotations.Priority;
+import io.github.lyazginad.testing.annotations.Severity;
+import io.github.lyazginad.testing.model.StepResult;
+import io.github.lyazginad.testing.model.TestResult;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Annotation values of test methods, read from the index written at compile time by the
+ * {@code testing-annotations} annotation processor ({@value #INDEX_RESOURCE}).
+ * <p>
+ * A class that has entries in the index was compiled with the processor, so a method of
+ * such a class without an entry has no testing annotations. Classes without entries are
+ * not covered and have to be inspected by reflection.
+ */
+public class AnnotationIndex {
+
+    public static final String INDEX_RESOURCE = "META-INF/testing-annotations/index";
+
+    private static final AnnotationIndex EMPTY = new AnnotationIndex();
+    /**
+     * Indexes are held weakly: the map drops the entry of a collected class loader only on a
+     * later lookup, and would keep its index on the heap until then
+     */
+    private static final Map<ClassLoader, WeakReference<AnnotationIndex>> BY_CLASS_LOADER = new WeakHashMap<>();
+    /** Keeps the index of a class loader reachable from its classes, as long as they are loaded */
+    private static final ClassValue<AnnotationIndex> BY_CLASS = new ClassValue<>() {
+        @Override
+        protected AnnotationIndex computeValue(Class<?> type) {
+            return forClassLoader(type.getClassLoader());
+        }
+    };
+
+    /** Entries by class name and method signature */
+    private final Map<String, Map<String, Entry>> entries = new LinkedHashMap<>();
+
+    /**
+     * Index of the class loader that loaded the class
+     */
+    public static AnnotationIndex forClass(Class<?> type) {
+        return BY_CLASS.get(type);
+    }
+
+    /**
+     * Index of all index resources visible to the class loader, loaded once per class loader
+     */
+    public static AnnotationIndex forClassLoader(ClassLoader classLoader) {
+        if (classLoader == null) {
+            return EMPTY;
+        }
+        synchronized (BY_CLASS_LOADER) {
+            WeakReference<AnnotationIndex> known = BY_CLASS_LOADER.get(classLoader);
+            AnnotationIndex index = known != null ? known.get() : null;
+            if (index == null) {
+                index = new AnnotationIndex();
+                try {
+                    Enumeration<URL> resources = classLoader.getResources(INDEX_RESOURCE);
+                    while (resources.hasMoreElements()) {
+                        try (InputStream in = resources.nextElement().openStream()) {
+                            index.readEntries(in);
+                        }
+                    }
+                } catch (IOException e) {
+                    System.err.println("Could not read test annotation index: " + e.getMessage());
+                }
+                BY_CLASS_LOADER.put(classLoader, new WeakReference<>(index));
+            }
+            return index;
+        }
+    }
+
+    /**
+     * Reads an index file, e.g. from {@code target/test-classes}
+     */
+    public static AnnotationIndex read(InputStream in) throws IOException {
+        AnnotationIndex index = new AnnotationIndex();
+        index.readEntries(in);
+        return index;
+    }
+
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    /**
+     * True if the class was compiled with the annotation processor
+     */
+    public boolean covers(String className) {
+        return entries.containsKey(className);
+    }
+
+    /**
+     * Entry of a method, or null if it has no testing annotations or is not covered
+     */
+    public Entry get(Method method) {
+        Map<String, Entry> methods = entries.get(method.getDeclaringClass().getName());
+        return methods != null ? methods.get(MethodDescriptors.readableSignature(method)) : null;
+    }
+
+    public Collection<Entry> entries() {
+        List<Entry> all = new ArrayList<>();
+        entries.values().forEach(methods -> all.addAll(methods.values()));
+        return Collections.unmodifiableList(all);
+    }
+
+    private void readEntries(InputStream in) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        // The index lives as long as the test classes; class names and values such as authors,
+        // categories and step descriptions repeat across methods and are kept once
+        Map<String, String> values = new HashMap<>();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] fields = line.split("\t");
+            if (fields.length < 2) {
+                continue;
+            }
+            Entry entry = new Entry(shared(values, unescape(fields[0])), unescape(fields[1]));
+            for (int i = 2; i < fields.length; i++) {
+                int separator = fields[i].indexOf('=');
+                if (separator > 0) {
+                    entry.set(fields[i].substring(0, separator), unescape(fields[i].substring(separator + 1)), values);
+                }
+            }
+            entries.computeIfAbsent(entry.className, className -> new LinkedHashMap<>()).put(entry.signature, entry);
+        }
+    }
+
+    private static String shared(Map<String, String> values, String value) {
+        String known = values.putIfAbsent(value, value);
+        return known != null ? known : value;
+    }
+
+    private static String unescape(String value) {
+        if (value.indexOf('\\') < 0) {
+            return value;
+        }
+        StringBuilder unescaped = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' && i + 1 < value.length()) {
+                char next = value.charAt(++i);
+                unescaped.append(next == 't' ? '\t' : next == 'n' ? '\n' : next == 'r' ? '\r' : next);
+            } else {
+                unescaped.append(c);
+            }
+        }
+        return unescaped.toString();
+    }
+
+    /**
+     * Annotation values of one test method
+     */
+    public static final class Entry {
+        private final String className;
+        private final String signature;
+        private boolean testCase;
+        private int order = Integer.MAX_VALUE;
+        private String name = "";
+        private String category;
+        private Severity.Level severity;
+        private Priority.Level priority;
+        private String level;
+        private String type;
+        private String method;
+        private boolean testInfo;
+        private String author;
+        private String version;
+        private String description;
+        private final List<StepResult> steps = new ArrayList<>(0);
+
+        Entry(String className, String signature) {
+            this.className = className;
+            this.signature = signature;
+        }
+
+        public String getClassName() { return className; }
+        public String getSignature() { return signature; }
+        public Priority.Level getPriority() { return priority; }
+        public Severity.Level getSeverity() { return severity; }
+        public String getLevel() { return level; }
+
+        public String getMethodName() {
+            int parameters = signature.indexOf('(');
+            return parameters < 0 ? signature : signature.substring(0, parameters);
+        }
+
+        /**
+         * Applies the annotation values like {@link AnnotationProcessor#processTestAnnotations} does
+         */
+        public void applyTo(TestResult testResult) {
+            if (testCase) {
+                testResult.setOrder(order);
+                testResult.setTestName(name.isEmpty() ? getMethodName() : name);
+                testResult.setCategory(category);
+            }
+            if (severity != null) testResult.setSeverity(severity);
+            if (priority != null) testResult.setPriority(priority);
+            if (level != null) testResult.setTestLevel(level);
+            if (type != null) testResult.setTestType(type);
+            if (method != null) testResult.setTestMethod(method);
+            if (testInfo) {
+                testResult.setAuthor(author);
+                testResult.setVersion(version);
+                testResult.setDescription(description);
+            }
+            for (StepResult step : steps) {
+                testResult.addStep(new StepResult(step.getOrder(), step.getDescription()));
+            }
+        }
+
+        private void set(String key, String rawValue, Map<String, String> values) {
+            String value = key.equals("step") ? rawValue : shared(values, rawValue);
+            switch (key) {
+                case "testCase.order": testCase = true; order = Integer.parseInt(value); break;
+                case "testCase.name": testCase = true; name = value; break;
+                case "testCase.category": testCase = true; category = value; break;
+                case "severity": severity = Severity.Level.valueOf(value); break;
+                case "priority": priority = Priority.Level.valueOf(value); break;
+                case "level": level = value; break;
+                case "type": type = value; break;
+                case "method": method = value; break;
+                case "author": testInfo = true; author = value; break;
+                case "version": testInfo = true; version = value; break;
+                case "description": testInfo = true; description = value; break;
+                case "step":
+                    int separator = value.indexOf(':');
+                    // Only a template, the steps of a result get their own start time
+                    steps.add(new StepResult(Integer.parseInt(value.substring(0, separator)),
+                            shared(values, value.substring(separator + 1)), null));
+                    break;
+                default:
+                    // Keys of newer processor versions
+                    break;
+            }
+        }
+    }
+}
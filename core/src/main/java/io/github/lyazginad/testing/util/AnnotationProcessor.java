@@ -14,6 +14,17 @@ import java.util.ArrayList;
 public class AnnotationProcessor {
 
     public static void processTestAnnotations(Method method, TestResult testResult) {
+        // Classes compiled with the annotation processor are looked up in its index
+        Class<?> declaringClass = method.getDeclaringClass();
+        AnnotationIndex index = AnnotationIndex.forClass(declaringClass);
+        if (index.covers(declaringClass.getName())) {
+            AnnotationIndex.Entry entry = index.get(method);
+            if (entry != null) {
+                entry.applyTo(testResult);
+            }
+            return;
+        }
+
         // Process @TestCase annotation
         if (method.isAnnotationPresent(TestCase.class)) {
             TestCase testCase = method.getAnnotation(TestCase.class);
@@ -90,7 +101,8 @@ public class AnnotationProcessor {
         try {
             @SuppressWarnings("unchecked")
             Class<? extends java.lang.annotation.Annotation> junitTest =
-                    (Class<? extends java.lang.annotation.Annotation>) Class.forName("org.junit.Test");
+                    (Class<? extends java.lang.annotation.Annotation>) Class.forName("org.junit.Test", false,
+                            method.getDeclaringClass().getClassLoader());
             return method.isAnnotationPresent(junitTest);
         } catch (ClassNotFoundException e) {
             return false;
@@ -101,7 +113,8 @@ public class AnnotationProcessor {
         try {
             @SuppressWarnings("unchecked")
             Class<? extends java.lang.annotation.Annotation> testngTest =
-                    (Class<? extends java.lang.annotation.Annotation>) Class.forName("org.testng.annotations.Test");
+                    (Class<? extends java.lang.annotation.Annotation>) Class.forName("org.testng.annotations.Test", false,
+                            method.getDeclaringClass().getClassLoader());
             return method.isAnnotationPresent(testngTest);
         } catch (ClassNotFoundException e) {
             return false;
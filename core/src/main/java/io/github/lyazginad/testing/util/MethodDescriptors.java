@@ -0,0 +1,82 @@
+package io.github.lyazginad.testing.util;
+
+import java.lang.reflect.Method;
+import java.util.StringJoiner;
+
+/**
+ * JVM method descriptors ({@code (Ljava/lang/String;I)V}) for matching bytecode-level
+ * method references against reflective {@link Method}s, e.g. to tell overloads apart
+ */
+public final class MethodDescriptors {
+
+    private MethodDescriptors() {
+    }
+
+    public static String descriptorOf(Method method) {
+        StringBuilder descriptor = new StringBuilder("(");
+        for (Class<?> parameterType : method.getParameterTypes()) {
+            appendType(descriptor, parameterType);
+        }
+        descriptor.append(')');
+        appendType(descriptor, method.getReturnType());
+        return descriptor.toString();
+    }
+
+    /**
+     * Finds a declared method by name and descriptor; without a descriptor the
+     * no-argument overload is preferred. Returns null if there is no such method.
+     */
+    public static Method findDeclaredMethod(Class<?> type, String name, String descriptor) {
+        Method byName = null;
+        for (Method method : type.getDeclaredMethods()) {
+            if (!method.getName().equals(name)) {
+                continue;
+            }
+            if (descriptor != null) {
+                if (descriptor.equals(descriptorOf(method))) {
+                    return method;
+                }
+            } else if (method.getParameterCount() == 0) {
+                return method;
+            } else if (byName == null) {
+                byName = method;
+            }
+        }
+        return byName;
+    }
+
+    /**
+     * Readable signature for report keys, e.g. {@code testLogin(java.lang.String,int)}
+     */
+    public static String readableSignature(Method method) {
+        StringJoiner parameters = new StringJoiner(",", method.getName() + "(", ")");
+        for (Class<?> parameterType : method.getParameterTypes()) {
+            parameters.add(parameterType.getTypeName());
+        }
+        return parameters.toString();
+    }
+
+    private static void appendType(StringBuilder descriptor, Class<?> type) {
+        while (type.isArray()) {
+            descriptor.append('[');
+            type = type.getComponentType();
+        }
+        if (type.isPrimitive()) {
+            descriptor.append(primitiveDescriptor(type));
+        } else {
+            descriptor.append('L').append(type.getName().replace('.', '/')).append(';');
+        }
+    }
+
+    private static char primitiveDescriptor(Class<?> type) {
+        if (type == int.class) return 'I';
+        if (type == long.class) return 'J';
+        if (type == boolean.class) return 'Z';
+        if (type == byte.class) return 'B';
+        if (type == char.class) return 'C';
+        if (type == short.class) return 'S';
+        if (type == float.class) return 'F';
+        if (type == double.class) return 'D';
+        return 'V';
+    }
+}
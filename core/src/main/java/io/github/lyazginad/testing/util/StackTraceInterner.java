@@ -0,0 +1,83 @@
+package io.github.lyazginad.testing.util;
+
+import io.github.lyazginad.testing.model.TestReport;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * Stores failure stack traces in a report once per distinct trace.
+ * <p>
+ * Traces are identified by a hash over the exception types and frames of the whole cause
+ * chain, so the same failure in thousands of tests (a database that is down, a broken
+ * fixture) is rendered and stored once; the tests refer to it by id. Frames beyond the
+ * depth cap are neither hashed nor stored. The stored text is that of the first
+ * occurrence; the message of every test stays in its own result.
+ */
+public class StackTraceInterner {
+
+    /** Causes followed per failure; also guards against cause cycles */
+    private static final int MAX_CAUSES = 16;
+
+    private final TestReport report;
+    private final int maxDepth;
+
+    public StackTraceInterner(TestReport report, int maxDepth) {
+        this.report = report;
+        this.maxDepth = Math.max(1, maxDepth);
+    }
+
+    /**
+     * Id of the failure's stack trace in the report, adding the trace if it is new
+     */
+    public String intern(Throwable failure) {
+        String id = String.format("%016x", hash(failure));
+        if (!report.hasStackTrace(id)) {
+            report.addStackTrace(id, render(failure));
+        }
+        return id;
+    }
+
+    private long hash(Throwable failure) {
+        long hash = 0xcbf29ce484222325L;
+        int causes = 0;
+        Set<Throwable> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Throwable current = failure; current != null && causes < MAX_CAUSES && seen.add(current);
+             current = current.getCause(), causes++) {
+            hash = mix(hash, current.getClass().getName().hashCode());
+            StackTraceElement[] frames = current.getStackTrace();
+            int depth = Math.min(frames.length, maxDepth);
+            for (int i = 0; i < depth; i++) {
+                hash = mix(hash, frames[i].hashCode());
+            }
+        }
+        return hash;
+    }
+
+    private static long mix(long hash, int value) {
+        return (hash ^ value) * 0x100000001b3L;
+    }
+
+    private String render(Throwable failure) {
+        StringBuilder trace = new StringBuilder(256);
+        int causes = 0;
+        Set<Throwable> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Throwable current = failure; current != null && causes < MAX_CAUSES && seen.add(current);
+             current = current.getCause(), causes++) {
+            if (current != failure) {
+                trace.append("Caused by: ");
+            }
+            trace.append(current).append('\n');
+            StackTraceElement[] frames = current.getStackTrace();
+            int depth = Math.min(frames.length, maxDepth);
+            for (int i = 0; i < depth; i++) {
+                trace.append("\tat ").append(frames[i]).append('\n');
+            }
+            if (frames.length > depth) {
+                trace.append("\t... ").append(frames.length - depth).append(" more\n");
+            }
+        }
+        return trace.toString();
+    }
+}
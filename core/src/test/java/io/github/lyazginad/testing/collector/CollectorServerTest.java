@@ -0,0 +1,137 @@
+package io.github.lyazginad.testing.collector;
+
+import io.github.lyazginad.testing.model.TestReport;
+import io.github.lyazginad.testing.model.TestResult;
+import io.github.lyazginad.testing.report.BinaryReportFormat;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CollectorServerTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2025, 1, 1, 12, 0);
+    private static final String STACK_TRACE = "java.lang.AssertionError: expected\n\tat com.example.CollectedTest.test1";
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void acceptsEncodedBatches() throws IOException {
+        TestReport source = new TestReport();
+        source.addStackTrace("trace-1", STACK_TRACE);
+        CollectorServer server = server();
+        try {
+            int accepted = server.accept(CollectorProtocol.encodeBatch(7, 1, List.of(result(0, true), result(1, false)), source));
+
+            TestReport report = server.getReport();
+            assertEquals(2, accepted);
+            assertEquals(2, report.getTotalTests());
+            assertEquals(1, report.getFailedTests());
+            assertEquals(STACK_TRACE, report.getStackTrace("trace-1"));
+        } finally {
+            CollectorServer.requestShutdown(server.getPort(), 5_000);
+        }
+    }
+
+    @Test
+    void skipsJournalsOfCollectedBatches() throws IOException {
+        File journal = directory.resolve("collector-1.journal").toFile();
+        CollectorServer server = server();
+        server.accept(CollectorProtocol.encodeBatch(7, 3, List.of(result(0, true)), null));
+        File collected = CollectorProtocol.unacknowledgedJournal(journal, 7, 3);
+        File lost = CollectorProtocol.unacknowledgedJournal(journal, 7, 4);
+        writeJournal(collected, List.of(result(0, true)));
+        writeJournal(lost, List.of(result(1, true), result(2, true)));
+
+        int total = CollectorServer.requestShutdown(server.getPort(), 5_000);
+
+        assertEquals(3, total);
+        assertFalse(collected.exists());
+        assertFalse(lost.exists());
+    }
+
+    @Test
+    void namesJournalsOfUnacknowledgedBatches() {
+        File journal = CollectorProtocol.unacknowledgedJournal(new File("collector-1.journal"), -2, 17);
+
+        assertArrayEquals(new long[] {-2, 17}, CollectorProtocol.unacknowledgedBatch(journal.getName()));
+        assertNull(CollectorProtocol.unacknowledgedBatch("collector-1.journal"));
+    }
+
+    @Test
+    void journalsResultsWhenTheCollectorIsUnreachable() throws IOException {
+        int port;
+        try (ServerSocket closed = new ServerSocket(0)) {
+            port = closed.getLocalPort();
+        }
+        File journal = directory.resolve("collector-1.journal").toFile();
+        CollectorClient client = new CollectorClient("127.0.0.1:" + port, 2, 16, 1_000, journal, new TestReport());
+        client.start();
+
+        for (int i = 0; i < 3; i++) {
+            client.send(result(i, i != 1));
+        }
+        client.close();
+
+        TestReport journaled = BinaryReportFormat.read(journal);
+        assertEquals(3, journaled.getTotalTests());
+        assertEquals(1, journaled.getFailedTests());
+        assertTrue(client.getStatus().contains("3 journaled"), client.getStatus());
+    }
+
+    @Test
+    void journalsAnUnacknowledgedBatchOnItsOwn() throws Exception {
+        File journal = directory.resolve("collector-1.journal").toFile();
+        try (ServerSocket silent = new ServerSocket(0)) {
+            CollectorClient client = new CollectorClient("127.0.0.1:" + silent.getLocalPort(), 10, 16, 500, journal,
+                    new TestReport());
+            client.start();
+            client.send(result(0, true));
+            try (Socket accepted = silent.accept()) {
+                client.close();
+            }
+        }
+
+        File[] batches = directory.toFile().listFiles((dir, name) -> CollectorProtocol.unacknowledgedBatch(name) != null);
+        assertEquals(1, batches.length);
+        assertEquals(1, BinaryReportFormat.read(batches[0]).getTotalTests());
+        assertFalse(journal.exists());
+    }
+
+    private CollectorServer server() throws IOException {
+        CollectorServer server = new CollectorServer(0, directory.toFile(), "collected.json", directory.toFile(), 60_000);
+        server.start(60_000);
+        return server;
+    }
+
+    private static void writeJournal(File file, List<TestResult> results) throws IOException {
+        byte[] payload = CollectorProtocol.encodeBatch(0, 0, results, null);
+        try (OutputStream out = Files.newOutputStream(file.toPath())) {
+            out.write(payload, CollectorProtocol.BATCH_HEADER_LENGTH, payload.length - CollectorProtocol.BATCH_HEADER_LENGTH);
+        }
+    }
+
+    private static TestResult result(int order, boolean passed) {
+        TestResult result = new TestResult("com.example.CollectedTest", "test" + order, order, "test" + order, START);
+        result.restoreCompletion(passed, START.plusNanos(1_000_000), passed ? null : "expected");
+        if (!passed) {
+            result.setStackTraceId("trace-1");
+        }
+        return result;
+    }
+}
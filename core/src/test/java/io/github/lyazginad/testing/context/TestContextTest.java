@@ -0,0 +1,66 @@
+package io.github.lyazginad.testing.context;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class TestContextTest {
+
+    @Test
+    void recordsEveryClassOnce() {
+        TestContext context = TestContext.begin("ATest#one", null);
+        try {
+            for (int classId : new int[] {3, 0, 63, 64, 200, 3, 64}) {
+                context.recordClass(classId);
+            }
+
+            BitSet expected = new BitSet();
+            for (int classId : new int[] {0, 3, 63, 64, 200}) {
+                expected.set(classId);
+            }
+            assertEquals(expected, context.getClassHits());
+        } finally {
+            TestContext.end("ATest#one");
+        }
+        assertNull(TestContext.current());
+    }
+
+    @Test
+    void keepsClassesRecordedConcurrently() throws Exception {
+        TestContext context = TestContext.begin("ATest#two", null);
+        int threads = 4;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            Future<?>[] recorders = new Future<?>[threads];
+            for (int t = 0; t < threads; t++) {
+                int first = t;
+                // Every thread grows the array at its own pace, so copies race with updates
+                recorders[t] = executor.submit(TestContext.wrap((Callable<Void>) () -> {
+                    start.await();
+                    for (int classId = first; classId < 4096; classId += threads) {
+                        TestContext.current().recordClass(classId);
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> recorder : recorders) {
+                recorder.get();
+            }
+
+            assertEquals(4096, context.getClassHits().cardinality());
+        } finally {
+            executor.shutdown();
+            TestContext.end("ATest#two");
+        }
+    }
+}
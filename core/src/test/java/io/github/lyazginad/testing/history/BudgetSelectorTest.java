@@ -0,0 +1,114 @@
+package io.github.lyazginad.testing.history;
+
+import io.github.lyazginad.testing.annotations.Priority;
+import io.github.lyazginad.testing.annotations.Severity;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BudgetSelectorTest {
+
+    private static final long MINUTE_MICROS = 60_000_000L;
+
+    @Test
+    void matchesBruteForceOnMillisecondDurations() {
+        Random random = new Random(7);
+        for (int instance = 0; instance < 500; instance++) {
+            List<BudgetSelector.Candidate> candidates = new ArrayList<>();
+            int n = 1 + random.nextInt(14);
+            long total = 0;
+            for (int i = 0; i < n; i++) {
+                long cost = 1_000L * (1 + random.nextInt(50));
+                total += cost;
+                candidates.add(candidate(i, cost, 1 + 100 * random.nextDouble()));
+            }
+            long budget = 1_000L * (1 + random.nextInt((int) (total / 1_000)));
+
+            assertOptimal(candidates, budget, "instance " + instance);
+        }
+    }
+
+    @Test
+    void matchesBruteForceOnArbitraryDurations() {
+        // Budgets above a minute are rounded to cells coarser than a millisecond
+        Random random = new Random(11);
+        for (int instance = 0; instance < 500; instance++) {
+            List<BudgetSelector.Candidate> candidates = new ArrayList<>();
+            int n = 1 + random.nextInt(14);
+            long total = 0;
+            for (int i = 0; i < n; i++) {
+                long cost = 1 + (long) (random.nextDouble() * 10 * MINUTE_MICROS);
+                total += cost;
+                candidates.add(candidate(i, cost, 1 + 100 * random.nextDouble()));
+            }
+            long budget = 1 + (long) (random.nextDouble() * total);
+
+            assertOptimal(candidates, budget, "instance " + instance);
+        }
+    }
+
+    @Test
+    void alwaysSelectsRequiredAndInstantTests() {
+        List<BudgetSelector.Candidate> candidates = new ArrayList<>();
+        BudgetSelector.Candidate required = new BudgetSelector.Candidate("com.example.P0Test", null, 5 * MINUTE_MICROS, 1, true);
+        BudgetSelector.Candidate instant = new BudgetSelector.Candidate("com.example.FastTest", "test", 0, 1, false);
+        BudgetSelector.Candidate optional = candidate(0, MINUTE_MICROS, 100);
+        candidates.add(required);
+        candidates.add(instant);
+        candidates.add(optional);
+
+        BudgetSelector.Selection selection = BudgetSelector.select(candidates, MINUTE_MICROS);
+
+        assertEquals(List.of(required, instant), selection.getSelected());
+        assertEquals(5 * MINUTE_MICROS, selection.getCostMicros());
+        assertEquals(2.0 / 102, selection.getValueCoverage(), 1e-12);
+    }
+
+    @Test
+    void valuesPriorityFailuresAndFlakiness() {
+        double p2 = BudgetSelector.value(Priority.Level.P2, Severity.Level.MEDIUM, null, 0, 0);
+
+        assertTrue(BudgetSelector.value(Priority.Level.P0, Severity.Level.MEDIUM, null, 0, 0) > p2);
+        assertTrue(BudgetSelector.value(Priority.Level.P2, Severity.Level.MEDIUM, "SYSTEM", 0, 0) > p2);
+        assertEquals(5 * p2, BudgetSelector.value(Priority.Level.P2, Severity.Level.MEDIUM, null, 1, 0), 1e-9);
+        assertEquals(p2, BudgetSelector.value(null, null, null, 0, 0), 1e-9);
+        assertEquals(0, BudgetSelector.value(Priority.Level.P2, Severity.Level.TRIVIAL, null, 1, 1), 1e-9);
+        assertEquals(BudgetSelector.value(Priority.Level.P2, Severity.Level.CRITICAL, null, 0, 0),
+                BudgetSelector.value(Priority.Level.P2, Severity.Level.CRITICAL, null, 1, 1), 1e-9);
+    }
+
+    private static void assertOptimal(List<BudgetSelector.Candidate> candidates, long budget, String message) {
+        BudgetSelector.Selection selection = BudgetSelector.select(candidates, budget);
+
+        double optimum = bruteForce(candidates, budget);
+        assertTrue(selection.getCostMicros() <= budget, message);
+        assertEquals(optimum, selection.getValue(), optimum * 1e-9, message);
+    }
+
+    private static double bruteForce(List<BudgetSelector.Candidate> candidates, long budget) {
+        double best = 0;
+        for (int subset = 0; subset < 1 << candidates.size(); subset++) {
+            long cost = 0;
+            double value = 0;
+            for (int i = 0; i < candidates.size(); i++) {
+                if ((subset & 1 << i) != 0) {
+                    cost += candidates.get(i).getCostMicros();
+                    value += candidates.get(i).getValue();
+                }
+            }
+            if (cost <= budget && value > best) {
+                best = value;
+            }
+        }
+        return best;
+    }
+
+    private static BudgetSelector.Candidate candidate(int index, long costMicros, double value) {
+        return new BudgetSelector.Candidate("com.example.BudgetTest", "test" + index, costMicros, value, false);
+    }
+}
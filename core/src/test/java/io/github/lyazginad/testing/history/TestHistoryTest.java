@@ -0,0 +1,165 @@
+package io.github.lyazginad.testing.history;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TestHistoryTest {
+
+    private static final String TEST = "com.example.ATest#one";
+    private static final double DELTA = 1e-9;
+
+    @Test
+    void countsAnIsolatedFailureAsFlaky() {
+        TestHistory.Entry entry = history(true, false, true).get(TEST);
+
+        assertEquals(1.0 / 3, entry.getRecentFailureRate(), DELTA);
+        assertEquals(1.0 / 3, entry.getFlakinessScore(), DELTA);
+        assertFalse(entry.lastFailed());
+    }
+
+    @Test
+    void doesNotCountConsecutiveFailuresAsFlaky() {
+        TestHistory.Entry entry = history(true, false, false, true).get(TEST);
+
+        assertEquals(2.0 / 4, entry.getRecentFailureRate(), DELTA);
+        assertEquals(0, entry.getFlakinessScore(), DELTA);
+    }
+
+    @Test
+    void doesNotCountFailuresWithoutBothNeighbours() {
+        // The latest run may be the first of a regression, the oldest known one the last
+        TestHistory.Entry latest = history(true, true, false).get(TEST);
+        TestHistory.Entry oldest = history(false, true, true).get(TEST);
+
+        assertTrue(latest.lastFailed());
+        assertEquals(1.0 / 3, latest.getRecentFailureRate(), DELTA);
+        assertEquals(0, latest.getFlakinessScore(), DELTA);
+        assertEquals(1.0 / 3, oldest.getRecentFailureRate(), DELTA);
+        assertEquals(0, oldest.getFlakinessScore(), DELTA);
+    }
+
+    @Test
+    void looksBeyondTheWindowForTheNeighbourOfItsOldestRun() {
+        boolean[] window = runs(TestHistory.RECENT_RUNS);
+        window[0] = false;
+        boolean[] passedBefore = prepend(true, window);
+        boolean[] failedBefore = prepend(false, window);
+
+        TestHistory.Entry full = history(window).get(TEST);
+        TestHistory.Entry isolated = history(passedBefore).get(TEST);
+        TestHistory.Entry regression = history(failedBefore).get(TEST);
+
+        assertEquals(TestHistory.RECENT_RUNS, full.getRuns());
+        assertEquals(0, full.getFlakinessScore(), DELTA);
+        assertEquals(1.0 / TestHistory.RECENT_RUNS, isolated.getFlakinessScore(), DELTA);
+        assertEquals(0, regression.getFlakinessScore(), DELTA);
+        // Only the window counts towards the rate
+        assertEquals(1.0 / TestHistory.RECENT_RUNS, regression.getRecentFailureRate(), DELTA);
+    }
+
+    @Test
+    void countsRunsThatPassedOnARerunAsFlaky() {
+        TestHistory run = new TestHistory();
+        run.record(TEST, 1_000, true, true);
+
+        TestHistory.Entry entry = run.mergeInto(history(true)).get(TEST);
+
+        assertEquals(0, entry.getRecentFailureRate(), DELTA);
+        assertEquals(1.0 / 2, entry.getFlakinessScore(), DELTA);
+    }
+
+    @Test
+    void combinesTheInvocationsOfARun() {
+        TestHistory run = new TestHistory();
+        run.record(TEST, 1_000, true, false);
+        run.record(TEST, 2_000, false, false);
+
+        TestHistory.Entry entry = run.mergeInto(new TestHistory()).get(TEST);
+
+        assertEquals(1, entry.getRuns());
+        assertEquals(3_000, entry.getMeanMicros());
+        assertTrue(entry.lastFailed());
+    }
+
+    @Test
+    void readsWhatItWrites() throws IOException {
+        TestHistory history = history(true, false, true, true);
+        TestHistory run = new TestHistory();
+        run.record("com.example.BTest#two", 5_000, true, true);
+        run.mergeInto(history);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        history.write(bytes);
+        TestHistory read = TestHistory.read(new ByteArrayInputStream(bytes.toByteArray()));
+
+        assertEquals(history.getEntries().keySet(), read.getEntries().keySet());
+        for (String testKey : history.getEntries().keySet()) {
+            TestHistory.Entry written = history.get(testKey);
+            TestHistory.Entry entry = read.get(testKey);
+            assertEquals(written.getRuns(), entry.getRuns());
+            assertEquals(written.getMeanMicros(), entry.getMeanMicros());
+            assertEquals(written.getLastRunMillis(), entry.getLastRunMillis());
+            assertEquals(written.getRecentFailureRate(), entry.getRecentFailureRate(), DELTA);
+            assertEquals(written.getFlakinessScore(), entry.getFlakinessScore(), DELTA);
+        }
+    }
+
+    @Test
+    void readsTheFirstVersion() throws IOException {
+        // Version 1 did not record runs that passed on a rerun
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(0x54485354); // "THST"
+            out.writeInt(1);
+            out.writeInt(1);
+            out.writeUTF(TEST);
+            out.writeInt(3);
+            out.writeLong(0b010L);
+            out.writeLong(1_500);
+            out.writeLong(1_700_000_000_000L);
+        }
+
+        TestHistory.Entry entry = TestHistory.read(new ByteArrayInputStream(bytes.toByteArray())).get(TEST);
+
+        assertEquals(3, entry.getRuns());
+        assertEquals(1_500, entry.getMeanMicros());
+        assertEquals(1_700_000_000_000L, entry.getLastRunMillis());
+        assertEquals(1.0 / 3, entry.getRecentFailureRate(), DELTA);
+        assertEquals(1.0 / 3, entry.getFlakinessScore(), DELTA);
+    }
+
+    /**
+     * History of {@link #TEST} with the given outcomes, oldest run first
+     */
+    private static TestHistory history(boolean... passed) {
+        TestHistory history = new TestHistory();
+        for (boolean outcome : passed) {
+            TestHistory run = new TestHistory();
+            run.record(TEST, 1_000, outcome, false);
+            history = run.mergeInto(history);
+        }
+        return history;
+    }
+
+    private static boolean[] runs(int count) {
+        boolean[] passed = new boolean[count];
+        Arrays.fill(passed, true);
+        return passed;
+    }
+
+    private static boolean[] prepend(boolean oldest, boolean[] runs) {
+        boolean[] passed = new boolean[runs.length + 1];
+        passed[0] = oldest;
+        System.arraycopy(runs, 0, passed, 1, runs.length);
+        return passed;
+    }
+}
@@ -0,0 +1,82 @@
+package io.github.lyazginad.testing.impact;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ImpactMapTest {
+
+    @Test
+    void remapsClassIdsWhenMerging() {
+        ImpactMap earlier = new ImpactMap();
+        earlier.addClass("com.example.Old", 1);
+        earlier.addClass("com.example.Shared", 2);
+        earlier.addTest("com.example.OldTest#test", classes(0));
+        earlier.addTest("com.example.SharedTest#test", classes(0, 1));
+
+        ImpactMap run = new ImpactMap();
+        run.addClass("com.example.New", 3);
+        run.addClass("com.example.Shared", 4);
+        run.addTestClass("com.example.SharedTest", 5);
+        run.addTest("com.example.SharedTest#test", classes(0, 1));
+
+        ImpactMap merged = run.mergeInto(earlier);
+
+        assertEquals(3, merged.getClassCount());
+        assertEquals("com.example.New", merged.getClassName(2));
+        assertEquals(4, merged.getClassChecksum(1));
+        assertEquals(Map.of("com.example.SharedTest", 5L), merged.getTestClassChecksums());
+        // The test that ran replaces its entry, the one that did not keeps it
+        assertEquals(Set.of("com.example.SharedTest#test"), merged.testsUsing(classes(2)));
+        assertEquals(Set.of("com.example.OldTest#test"), merged.testsUsing(classes(0)));
+        assertEquals(Set.of("com.example.SharedTest#test"), merged.testsUsing(classes(1)));
+    }
+
+    @Test
+    void readsWhatItWrites() throws IOException {
+        ImpactMap map = new ImpactMap();
+        for (int i = 0; i < 130; i++) {
+            map.addClass("com.example.Class" + i, i * 31L);
+        }
+        map.addTestClass("com.example.ATest", -1);
+        map.addTest("com.example.ATest#one", classes(0, 64, 129));
+        map.addTest("com.example.ATest#two", new BitSet());
+
+        ImpactMap read = ImpactMap.read(new ByteArrayInputStream(bytes(map)));
+
+        assertEquals(130, read.getClassCount());
+        assertEquals("com.example.Class129", read.getClassName(129));
+        assertEquals(129 * 31L, read.getClassChecksum(129));
+        assertEquals(Map.of("com.example.ATest", -1L), read.getTestClassChecksums());
+        assertEquals(map.getTests(), read.getTests());
+        assertEquals(Set.of("com.example.ATest#one"), read.testsUsing(classes(64)));
+        assertEquals(Set.of(), read.testsUsing(classes(1, 128)));
+    }
+
+    @Test
+    void rejectsOtherFiles() {
+        assertThrows(IOException.class, () -> ImpactMap.read(new ByteArrayInputStream(new byte[] {0, 0, 0, 1, 0, 0, 0, 1})));
+    }
+
+    private static BitSet classes(int... ids) {
+        BitSet classes = new BitSet();
+        for (int id : ids) {
+            classes.set(id);
+        }
+        return classes;
+    }
+
+    private static byte[] bytes(ImpactMap map) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        map.write(out);
+        return out.toByteArray();
+    }
+}
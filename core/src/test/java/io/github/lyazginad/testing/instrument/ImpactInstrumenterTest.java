@@ -0,0 +1,69 @@
+package io.github.lyazginad.testing.instrument;
+
+import javassist.ClassPool;
+import javassist.bytecode.ClassFile;
+import javassist.bytecode.CodeIterator;
+import javassist.bytecode.ConstPool;
+import javassist.bytecode.MethodInfo;
+import javassist.bytecode.Opcode;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ImpactInstrumenterTest {
+
+    private static final String RECORDER_CLASS = "io.github.lyazginad.testing.impact.TestImpactRecorder";
+
+    @Test
+    void reportsEveryBehaviorOnce() throws Exception {
+        byte[] instrumented = new ImpactInstrumenter(new ClassPool(true)).instrument(classFile(Initialized.class), 7);
+
+        ClassFile file = new ClassFile(new DataInputStream(new ByteArrayInputStream(instrumented)));
+        assertEquals(1, hits(file, "<clinit>"));
+        assertEquals(1, hits(file, "<init>"));
+        assertEquals(1, hits(file, "value"));
+    }
+
+    @Test
+    void leavesAnnotationsAlone() throws Exception {
+        assertNull(new ImpactInstrumenter(new ClassPool(true)).instrument(classFile(Test.class), 7));
+    }
+
+    private static int hits(ClassFile file, String methodName) throws Exception {
+        MethodInfo method = file.getMethod(methodName);
+        ConstPool constPool = file.getConstPool();
+        int hits = 0;
+        for (CodeIterator code = method.getCodeAttribute().iterator(); code.hasNext(); ) {
+            int index = code.next();
+            if (code.byteAt(index) == Opcode.INVOKESTATIC) {
+                int methodRef = code.u16bitAt(index + 1);
+                if (constPool.getMethodrefClassName(methodRef).equals(RECORDER_CLASS)
+                        && constPool.getMethodrefName(methodRef).equals("hit")) {
+                    hits++;
+                }
+            }
+        }
+        return hits;
+    }
+
+    private static byte[] classFile(Class<?> type) throws IOException {
+        String name = type.getName();
+        try (InputStream in = type.getResourceAsStream(name.substring(name.lastIndexOf('.') + 1) + ".class")) {
+            return in.readAllBytes();
+        }
+    }
+
+    static class Initialized {
+        static final long LOADED = System.nanoTime();
+
+        long value() {
+            return LOADED;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package io.github.lyazginad.testing.instrument;
+
+import org.opentest4j.TestAbortedException;
+
+/**
+ * Test class woven by the instrumentation tests; every copy loaded from the woven bytes
+ * counts the runs of its methods in {@link #runs}
+ */
+public class InstrumentationFixture {
+
+    public static int runs;
+
+    public void testPasses() {
+        runs++;
+    }
+
+    public void testFails() {
+        runs++;
+        throw new AssertionError("always fails");
+    }
+
+    public void testFailsOnce() {
+        if (++runs == 1) {
+            throw new AssertionError("first attempt fails");
+        }
+    }
+
+    public void testKnownFlaky() {
+        runs++;
+        throw new AssertionError("fails again");
+    }
+
+    public void testSkipped() {
+        runs++;
+        throw new TestAbortedException("assumption failed");
+    }
+
+    public void testThrowsExpected() {
+        runs++;
+        throw new IllegalStateException("expected by the test");
+    }
+
+    public void helper() {
+        runs++;
+    }
+}
@@ -0,0 +1,272 @@
+package io.github.lyazginad.testing.instrument;
+
+import io.github.lyazginad.testing.agent.TestReportAgent;
+import io.github.lyazginad.testing.history.TestHistory;
+import io.github.lyazginad.testing.model.AttemptResult;
+import io.github.lyazginad.testing.model.TestResult;
+import javassist.ClassPool;
+import javassist.bytecode.AnnotationsAttribute;
+import javassist.bytecode.ClassFile;
+import javassist.bytecode.ConstPool;
+import javassist.bytecode.MethodInfo;
+import javassist.bytecode.annotation.Annotation;
+import javassist.bytecode.annotation.ClassMemberValue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.opentest4j.TestAbortedException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TestClassInstrumenterTest {
+
+    private static final String ATTEMPT_PREFIX = "$testing$attempt$";
+    private static final int RERUNS = 2;
+
+    /**
+     * The agent reads its configuration once, on the first woven test it tracks: two reruns,
+     * and quarantine for {@code testKnownFlaky}, which failed on its last run and passed before
+     */
+    @BeforeAll
+    static void configureAgent() throws IOException {
+        Path directory = Files.createTempDirectory("instrumenter-test");
+        TestHistory pastRuns = new TestHistory();
+        for (boolean passed : new boolean[] {true, false, true}) {
+            TestHistory run = new TestHistory();
+            run.record(InstrumentationFixture.class.getName() + "#testKnownFlaky", 1_000, passed, false);
+            pastRuns = run.mergeInto(pastRuns);
+        }
+        Path historyFile = directory.resolve(TestHistory.DEFAULT_FILE_NAME);
+        try (OutputStream out = Files.newOutputStream(historyFile)) {
+            pastRuns.write(out);
+        }
+        System.setProperty("testing.outputDirectory", directory.toString());
+        System.setProperty("testing.history.file", historyFile.toString());
+        System.setProperty("testing.rerun.count", String.valueOf(RERUNS));
+        System.setProperty("testing.flaky.quarantine", "MEDIUM");
+        System.setProperty("testing.watchdog", "false");
+        System.setProperty("testing.jmx", "false");
+    }
+
+    @AfterEach
+    void resetReport() {
+        TestReportAgent.resetReport();
+    }
+
+    @Test
+    void weavesTheRerunLoopIntoPrivateCopies() throws Exception {
+        byte[] woven = new TestClassInstrumenter(new ClassPool(true), true).instrument(fixture());
+
+        Set<String> methods = methods(woven);
+        for (String test : new String[] {"testPasses", "testFails", "testFailsOnce", "testSkipped"}) {
+            assertTrue(methods.contains(ATTEMPT_PREFIX + test + "()V"), test);
+        }
+        assertFalse(methods.contains(ATTEMPT_PREFIX + "helper()V"));
+        assertTrue(TestClassInstrumenter.isInstrumented(woven));
+        assertTrue(TestClassInstrumenter.hasRerunLoop(woven));
+    }
+
+    @Test
+    void addsNoMethodsToClassesBeingRedefined() throws Exception {
+        byte[] original = fixture();
+
+        byte[] woven = new TestClassInstrumenter(new ClassPool(true), true).instrument(original, true);
+
+        assertEquals(methods(original), methods(woven));
+        assertTrue(TestClassInstrumenter.isInstrumented(woven));
+        assertFalse(TestClassInstrumenter.hasRerunLoop(woven));
+    }
+
+    @Test
+    void addsNoMethodsWithoutReruns() throws Exception {
+        byte[] original = fixture();
+
+        byte[] woven = new TestClassInstrumenter(new ClassPool(true)).instrument(original);
+
+        assertEquals(methods(original), methods(woven));
+        assertTrue(TestClassInstrumenter.isInstrumented(woven));
+        assertFalse(TestClassInstrumenter.hasRerunLoop(woven));
+        assertFalse(TestClassInstrumenter.isInstrumented(original));
+    }
+
+    @Test
+    void leavesOutTheRerunLoopForExpectedExceptions() throws Exception {
+        byte[] annotated = withExpectedException(fixture(), "testThrowsExpected");
+
+        byte[] woven = new TestClassInstrumenter(new ClassPool(true), true).instrument(annotated);
+
+        Set<String> methods = methods(woven);
+        assertFalse(methods.contains(ATTEMPT_PREFIX + "testThrowsExpected()V"));
+        assertTrue(methods.contains(ATTEMPT_PREFIX + "testFails()V"));
+    }
+
+    @Test
+    void reportsAPassingTest() throws Exception {
+        Class<?> woven = loadWoven();
+
+        invoke(woven, "testPasses");
+
+        TestResult result = result("testPasses");
+        assertEquals(1, runs(woven));
+        assertTrue(result.isPassed());
+        assertTrue(result.getAttempts().isEmpty());
+    }
+
+    @Test
+    void rerunsAFailedAttempt() throws Exception {
+        Class<?> woven = loadWoven();
+
+        invoke(woven, "testFailsOnce");
+
+        TestResult result = result("testFailsOnce");
+        assertEquals(2, runs(woven));
+        assertTrue(result.isPassed());
+        assertTrue(result.isFlaky());
+        assertEquals(List.of(false, true), result.getAttempts().stream().map(AttemptResult::isPassed).toList());
+    }
+
+    @Test
+    void failsAfterTheLastRerun() throws Exception {
+        Class<?> woven = loadWoven();
+
+        Throwable failure = assertThrows(InvocationTargetException.class, () -> invoke(woven, "testFails")).getCause();
+
+        TestResult result = result("testFails");
+        assertInstanceOf(AssertionError.class, failure);
+        assertEquals(RERUNS + 1, runs(woven));
+        assertFalse(result.isPassed());
+        assertFalse(result.isQuarantined());
+        assertEquals("always fails", result.getErrorMessage());
+        assertEquals(RERUNS + 1, result.getAttempts().size());
+        assertTrue(result.getAttempts().stream().noneMatch(AttemptResult::isPassed));
+    }
+
+    @Test
+    void neverRerunsASkippedTest() throws Exception {
+        Class<?> woven = loadWoven();
+
+        Throwable failure = assertThrows(InvocationTargetException.class, () -> invoke(woven, "testSkipped")).getCause();
+
+        assertInstanceOf(TestAbortedException.class, failure);
+        assertEquals(1, runs(woven));
+        assertTrue(result("testSkipped").getAttempts().isEmpty());
+    }
+
+    @Test
+    void quarantinesAKnownFlakyTest() throws Exception {
+        Class<?> woven = loadWoven();
+
+        invoke(woven, "testKnownFlaky");
+
+        TestResult result = result("testKnownFlaky");
+        assertEquals(RERUNS + 1, runs(woven));
+        assertTrue(result.isQuarantined());
+        assertFalse(result.isPassed());
+        assertEquals("fails again", result.getErrorMessage());
+        assertEquals(AssertionError.class.getName(), result.getErrorType());
+    }
+
+    @Test
+    void skipsClassesThatAreAlreadyWoven() throws Exception {
+        byte[] original = fixture();
+        TestClassInstrumenter instrumenter = new TestClassInstrumenter(new ClassPool(true), true);
+        byte[] woven = instrumenter.instrument(original);
+
+        CRC32 crc = new CRC32();
+        crc.update(original);
+        assertNull(instrumenter.instrument(woven));
+        assertEquals(crc.getValue(), TestClassInstrumenter.sourceChecksum(original));
+        assertEquals(crc.getValue(), TestClassInstrumenter.sourceChecksum(woven));
+    }
+
+    static byte[] fixture() throws IOException {
+        try (InputStream in = InstrumentationFixture.class.getResourceAsStream("InstrumentationFixture.class")) {
+            return in.readAllBytes();
+        }
+    }
+
+    /**
+     * Adds a JUnit 4 {@code @Test(expected = IllegalStateException.class)} to a method; the
+     * annotation type does not have to be loadable for that
+     */
+    static byte[] withExpectedException(byte[] classFile, String methodName) throws IOException {
+        ClassFile file = new ClassFile(new DataInputStream(new ByteArrayInputStream(classFile)));
+        ConstPool constPool = file.getConstPool();
+        Annotation test = new Annotation("org.junit.Test", constPool);
+        test.addMemberValue("expected", new ClassMemberValue(IllegalStateException.class.getName(), constPool));
+        AnnotationsAttribute attribute = new AnnotationsAttribute(constPool, AnnotationsAttribute.visibleTag);
+        attribute.addAnnotation(test);
+        file.getMethod(methodName).addAttribute(attribute);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            file.write(out);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * A copy of the fixture woven with the rerun loop, with its own {@code runs} counter
+     */
+    private static Class<?> loadWoven() throws Exception {
+        byte[] woven = new TestClassInstrumenter(new ClassPool(true), true).instrument(fixture());
+        ClassLoader loader = new ClassLoader(TestClassInstrumenterTest.class.getClassLoader()) {
+            @Override
+            protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+                if (!name.equals(InstrumentationFixture.class.getName())) {
+                    return super.loadClass(name, resolve);
+                }
+                synchronized (getClassLoadingLock(name)) {
+                    Class<?> loaded = findLoadedClass(name);
+                    return loaded != null ? loaded : defineClass(name, woven, 0, woven.length);
+                }
+            }
+        };
+        return loader.loadClass(InstrumentationFixture.class.getName());
+    }
+
+    private static void invoke(Class<?> woven, String methodName) throws Exception {
+        Method method = woven.getMethod(methodName);
+        method.invoke(woven.getConstructor().newInstance());
+    }
+
+    private static int runs(Class<?> woven) throws ReflectiveOperationException {
+        return woven.getField("runs").getInt(null);
+    }
+
+    private static TestResult result(String methodName) {
+        return TestReportAgent.getCurrentReport().getTestResults().stream()
+                .filter(result -> result.getMethodName().equals(methodName))
+                .findFirst()
+                .orElseThrow(() -> new AssertionError("No result for " + methodName));
+    }
+
+    private static Set<String> methods(byte[] classFile) throws IOException {
+        Set<String> methods = new TreeSet<>();
+        for (MethodInfo method : new ClassFile(new DataInputStream(new ByteArrayInputStream(classFile))).getMethods()) {
+            methods.add(method.getName() + method.getDescriptor());
+        }
+        return methods;
+    }
+}
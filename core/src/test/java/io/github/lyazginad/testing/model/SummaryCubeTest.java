@@ -0,0 +1,148 @@
+package io.github.lyazginad.testing.model;
+
+import io.github.lyazginad.testing.annotations.Priority;
+import io.github.lyazginad.testing.annotations.Severity;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SummaryCubeTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2025, 1, 1, 12, 0);
+
+    private static final String[] LEVELS = {"UNIT", "INTEGRATION", "SYSTEM", "SMOKE"};
+    private static final String[] CATEGORIES = {"general", "security", "payments", null};
+    private static final String[] AUTHORS = {"Jane Smith", "John Doe", null};
+
+    @Test
+    void countsEveryEnumConstantInDeclarationOrder() {
+        SummaryCube cube = new SummaryCube();
+        cube.add(result(true, Severity.Level.HIGH, "UNIT", "general", 10));
+        cube.add(result(false, Severity.Level.HIGH, "UNIT", "general", 10));
+        cube.add(result(true, Severity.Level.TRIVIAL, "UNIT", "general", 10));
+
+        Map<String, Integer> expected = new LinkedHashMap<>();
+        expected.put("CRITICAL", 0);
+        expected.put("HIGH", 2);
+        expected.put("MEDIUM", 0);
+        expected.put("LOW", 0);
+        expected.put("TRIVIAL", 1);
+        assertEquals(expected, cube.countBy(SummaryCube.Dimension.SEVERITY));
+        assertEquals(Arrays.asList("CRITICAL", "HIGH", "MEDIUM", "LOW", "TRIVIAL"),
+                new ArrayList<>(cube.countBy(SummaryCube.Dimension.SEVERITY).keySet()));
+    }
+
+    @Test
+    void groupsUnknownEnumValuesTogether() {
+        SummaryCube cube = new SummaryCube();
+        cube.add(result(true, Severity.Level.MEDIUM, "SMOKE", "general", 10));
+        cube.add(result(true, Severity.Level.MEDIUM, "EXPLORATORY", "general", 10));
+        cube.add(result(true, Severity.Level.MEDIUM, null, "general", 10));
+
+        assertEquals(3, (int) cube.countBy(SummaryCube.Dimension.LEVEL).get("UNKNOWN"));
+        assertEquals(3, cube.query().where(SummaryCube.Dimension.LEVEL, "UNKNOWN").count());
+        assertEquals(0, cube.query().where(SummaryCube.Dimension.LEVEL, "SMOKE").count());
+    }
+
+    @Test
+    void queriesMatchAScanOfTheResults() {
+        Random random = new Random(42);
+        List<TestResult> results = new ArrayList<>();
+        SummaryCube cube = new SummaryCube();
+        for (int i = 0; i < 5_000; i++) {
+            TestResult result = result(random.nextInt(4) != 0,
+                    Severity.Level.values()[random.nextInt(Severity.Level.values().length)],
+                    LEVELS[random.nextInt(LEVELS.length)],
+                    CATEGORIES[random.nextInt(CATEGORIES.length)],
+                    random.nextInt(1_000));
+            result.setPriority(Priority.Level.values()[random.nextInt(Priority.Level.values().length)]);
+            result.setAuthor(AUTHORS[random.nextInt(AUTHORS.length)]);
+            results.add(result);
+            cube.add(result);
+        }
+
+        assertEquals(results.size(), cube.getTotal());
+
+        Map<List<String>, SummaryCube.Aggregate> groups = cube.query()
+                .where(SummaryCube.Dimension.OUTCOME, "FAILED")
+                .where(SummaryCube.Dimension.SEVERITY, "CRITICAL", "HIGH")
+                .groupBy(SummaryCube.Dimension.CATEGORY, SummaryCube.Dimension.AUTHOR)
+                .execute();
+
+        Map<List<String>, long[]> expected = new LinkedHashMap<>();
+        for (TestResult result : results) {
+            if (!result.isPassed() && result.getSeverity().compareTo(Severity.Level.HIGH) <= 0) {
+                long[] aggregate = expected.computeIfAbsent(
+                        Arrays.asList(result.getCategory(), result.getAuthor()), key -> new long[2]);
+                aggregate[0]++;
+                aggregate[1] += result.getDuration();
+            }
+        }
+        assertEquals(expected.keySet(), groups.keySet());
+        for (Map.Entry<List<String>, long[]> group : expected.entrySet()) {
+            SummaryCube.Aggregate aggregate = groups.get(group.getKey());
+            assertEquals(group.getValue()[0], aggregate.getCount(), "count of " + group.getKey());
+            assertEquals(group.getValue()[1], aggregate.getTotalDuration(), "duration of " + group.getKey());
+        }
+
+        long integrationP0 = results.stream()
+                .filter(result -> "INTEGRATION".equals(result.getTestLevel()))
+                .filter(result -> result.getPriority() == Priority.Level.P0)
+                .count();
+        assertEquals(integrationP0, cube.query()
+                .where(SummaryCube.Dimension.LEVEL, "INTEGRATION")
+                .where(SummaryCube.Dimension.PRIORITY, "P0")
+                .count());
+    }
+
+    @Test
+    void ungroupedQueryHasASingleEmptyKey() {
+        SummaryCube cube = new SummaryCube();
+        cube.add(result(true, Severity.Level.MEDIUM, "UNIT", "general", 10));
+        cube.add(result(false, Severity.Level.MEDIUM, "UNIT", "security", 30));
+
+        Map<List<String>, SummaryCube.Aggregate> total = cube.query().execute();
+
+        assertEquals(Collections.singleton(Collections.emptyList()), total.keySet());
+        assertEquals(2, total.get(Collections.emptyList()).getCount());
+        assertEquals(40, total.get(Collections.emptyList()).getTotalDuration());
+    }
+
+    @Test
+    void countsCategoriesBeyondTheDictionaryAsOverflow() {
+        int capacity = (1 << 20) - 2; // 20-bit codes without null and the overflow code
+        int extra = 1_000;
+        SummaryCube cube = new SummaryCube();
+        TestResult result = result(true, Severity.Level.MEDIUM, "UNIT", null, 0);
+        for (int i = 0; i < capacity + extra; i++) {
+            result.setCategory("category-" + i);
+            cube.add(result);
+        }
+
+        assertEquals(capacity + extra, cube.getTotal());
+        assertEquals(extra, cube.query().where(SummaryCube.Dimension.CATEGORY, SummaryCube.OVERFLOW).count());
+        assertEquals(1, cube.query().where(SummaryCube.Dimension.CATEGORY, "category-0").count());
+        assertEquals(1, cube.query().where(SummaryCube.Dimension.CATEGORY, "category-" + (capacity - 1)).count());
+        assertEquals(0, cube.query().where(SummaryCube.Dimension.CATEGORY, "category-" + capacity).count());
+        assertEquals(0, cube.query().where(SummaryCube.Dimension.CATEGORY, (String) null).count());
+    }
+
+    private static TestResult result(boolean passed, Severity.Level severity, String level,
+                                     String category, long durationMillis) {
+        TestResult result = new TestResult("com.example.SampleTest", "test", 0, "test", START);
+        result.restoreCompletion(passed, START.plusNanos(durationMillis * 1_000_000), passed ? null : "failed");
+        result.setSeverity(severity);
+        result.setTestLevel(level);
+        result.setCategory(category);
+        return result;
+    }
+}
@@ -0,0 +1,364 @@
+package io.github.lyazginad.testing.report;
+
+import io.github.lyazginad.testing.annotations.Priority;
+import io.github.lyazginad.testing.annotations.Severity;
+import io.github.lyazginad.testing.model.AttemptResult;
+import io.github.lyazginad.testing.model.StepResult;
+import io.github.lyazginad.testing.model.TestReport;
+import io.github.lyazginad.testing.model.TestResult;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BinaryReportFormatTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2025, 3, 14, 9, 26, 53, 589_793_000);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void roundTripKeepsEveryField() throws IOException {
+        TestReport report = new TestReport();
+        report.setExecutionTime(START);
+        report.addTestResult(passingResult());
+        report.addTestResult(failingResult());
+        report.addStackTrace("st-1", "java.lang.AssertionError: expected\n\tat com.example.PaymentTest.refund");
+        File file = directory.resolve("report" + BinaryReportFormat.FILE_EXTENSION).toFile();
+
+        BinaryReportFormat.write(report, file);
+        TestReport read = BinaryReportFormat.read(file);
+
+        assertTrue(BinaryReportFormat.isBinaryReport(file));
+        assertEquals(START, read.getExecutionTime());
+        assertEquals(2, read.getTotalTests());
+        assertEquals(1, read.getPassedTests());
+        assertEquals(1, read.getFailedTests());
+        assertEquals(report.getTotalDuration(), read.getTotalDuration());
+        assertEquals(report.getStackTraces(), read.getStackTraces());
+        assertEquals(2, read.getTestResults().size());
+        assertSameResult(report.getTestResults().get(0), read.getTestResults().get(0));
+        assertSameResult(report.getTestResults().get(1), read.getTestResults().get(1));
+    }
+
+    @Test
+    void readsStreamsWithABoundedStringTable() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        List<TestResult> written = new ArrayList<>();
+        try (BinaryReportFormat.Writer writer = new BinaryReportFormat.Writer(bytes, START, 2)) {
+            for (int i = 0; i < 10; i++) {
+                TestResult result = passingResult();
+                result.setTestName("refund #" + i);
+                writer.write(result);
+                written.add(result);
+            }
+        }
+
+        try (BinaryReportFormat.Reader reader = new BinaryReportFormat.Reader(new ByteArrayInputStream(bytes.toByteArray()))) {
+            for (TestResult expected : written) {
+                assertSameResult(expected, reader.next());
+            }
+            assertNull(reader.next());
+        }
+    }
+
+    @Test
+    void readsTheResultsOfAnUnfinishedStream() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        BinaryReportFormat.Writer writer = new BinaryReportFormat.Writer(bytes, START);
+        writer.write(passingResult());
+        writer.flush();
+
+        try (BinaryReportFormat.Reader reader = new BinaryReportFormat.Reader(new ByteArrayInputStream(bytes.toByteArray()))) {
+            assertSameResult(passingResult(), reader.next());
+            assertNull(reader.next());
+            assertNull(reader.next());
+
+            TestReport report = new TestReport();
+            reader.restoreTotals(report);
+            assertEquals(0, report.getTotalTests());
+        }
+    }
+
+    @Test
+    void readsEveryEarlierVersion() throws IOException {
+        for (int version = 1; version <= 4; version++) {
+            byte[] stream = legacyStream(version);
+
+            try (BinaryReportFormat.Reader reader = new BinaryReportFormat.Reader(new ByteArrayInputStream(stream))) {
+                assertEquals(START, reader.getExecutionTime(), "version " + version);
+                TestResult result = reader.next();
+                assertNull(reader.next(), "version " + version);
+
+                assertEquals("com.example.PaymentTest", result.getClassName(), "version " + version);
+                assertEquals("refund", result.getMethodName(), "version " + version);
+                assertEquals(3, result.getOrder(), "version " + version);
+                assertEquals("com.example.PaymentTest", result.getTestName(), "version " + version);
+                assertEquals("payments", result.getCategory(), "version " + version);
+                assertFalse(result.isPassed(), "version " + version);
+                assertEquals(START, result.getStartTime(), "version " + version);
+                assertEquals(START.plusNanos(250_000_000), result.getEndTime(), "version " + version);
+                assertEquals("expected 10 but was 9", result.getErrorMessage(), "version " + version);
+                assertEquals(Severity.Level.HIGH, result.getSeverity(), "version " + version);
+                assertEquals(Priority.Level.P1, result.getPriority(), "version " + version);
+                assertEquals("INTEGRATION", result.getTestLevel(), "version " + version);
+                assertEquals("Jane Smith", result.getAuthor(), "version " + version);
+                assertEquals(1, result.getSteps().size(), "version " + version);
+                assertEquals("Open account", result.getSteps().get(0).getDescription(), "version " + version);
+                assertFalse(result.isTimedOut(), "version " + version);
+
+                assertEquals(version >= 2 ? "inv-1" : null, result.getInvocationId(), "version " + version);
+                assertEquals(version >= 3 ? "java.lang.AssertionError" : null, result.getErrorType(), "version " + version);
+                assertEquals(version >= 3 ? "st-1" : null, result.getStackTraceId(), "version " + version);
+                assertEquals(version >= 4 ? "main" : null, result.getThreadName(), "version " + version);
+                assertEquals(version >= 4 ? "1" : null, result.getForkId(), "version " + version);
+                assertTrue(result.getAttempts().isEmpty(), "version " + version);
+                assertFalse(result.isQuarantined(), "version " + version);
+
+                assertEquals(version >= 3 ? Collections.singletonMap("st-1", "trace") : Collections.emptyMap(),
+                        reader.getStackTraces(), "version " + version);
+                TestReport report = new TestReport();
+                reader.restoreTotals(report);
+                assertEquals(1, report.getTotalTests(), "version " + version);
+                assertEquals(1, report.getFailedTests(), "version " + version);
+                assertEquals(250, report.getTotalDuration(), "version " + version);
+            }
+        }
+    }
+
+    @Test
+    void rejectsNewerVersions() throws IOException {
+        byte[] stream = new LegacyStream(6).finish(0, 0, 0, 0);
+
+        assertThrows(IOException.class, () -> new BinaryReportFormat.Reader(new ByteArrayInputStream(stream)));
+    }
+
+    private static TestResult passingResult() {
+        TestResult result = new TestResult("com.example.PaymentTest", "refund", 1, "Refund a payment", START);
+        result.setInvocationId("inv-1");
+        result.setThreadName("worker-1");
+        result.setForkId("2");
+        result.setCategory("payments");
+        result.setSeverity(Severity.Level.CRITICAL);
+        result.setPriority(Priority.Level.P0);
+        result.setAuthor("Jane Smith");
+        result.setVersion("1.2");
+        result.setDescription("Refunds a captured payment");
+        StepResult step = new StepResult(1, "Capture", START);
+        step.restoreCompletion(true, START.plusNanos(5_000_000), null);
+        result.addStep(step);
+        result.restoreCompletion(true, START.plusNanos(20_000_000), null);
+        return result;
+    }
+
+    private static TestResult failingResult() {
+        TestResult result = new TestResult("com.example.PaymentTest", "refundTwice", -2, null, START.plusSeconds(1));
+        result.setCategory(null);
+        result.setTestLevel("SMOKE");
+        result.setErrorType("java.lang.AssertionError");
+        result.setStackTraceId("st-1");
+        result.markTimedOut(5_000, "\"main\" waiting", "full dump");
+        result.addAttempt(new AttemptResult(1, false, 1_500, "first", "java.lang.AssertionError", "st-1"));
+        result.addAttempt(new AttemptResult(2, false, 2_500, "second", "java.lang.AssertionError", "st-1"));
+        result.setQuarantined(true);
+        result.restoreCompletion(false, START.plusSeconds(6), "expected");
+        return result;
+    }
+
+    private static void assertSameResult(TestResult expected, TestResult actual) {
+        assertEquals(expected.getClassName(), actual.getClassName());
+        assertEquals(expected.getMethodName(), actual.getMethodName());
+        assertEquals(expected.getInvocationId(), actual.getInvocationId());
+        assertEquals(expected.getThreadName(), actual.getThreadName());
+        assertEquals(expected.getForkId(), actual.getForkId());
+        assertEquals(expected.getOrder(), actual.getOrder());
+        assertEquals(expected.getTestName(), actual.getTestName());
+        assertEquals(expected.getCategory(), actual.getCategory());
+        assertEquals(expected.isPassed(), actual.isPassed());
+        assertEquals(expected.getStartTime(), actual.getStartTime());
+        assertEquals(expected.getEndTime(), actual.getEndTime());
+        assertEquals(expected.getErrorMessage(), actual.getErrorMessage());
+        assertEquals(expected.getErrorType(), actual.getErrorType());
+        assertEquals(expected.getStackTraceId(), actual.getStackTraceId());
+        assertEquals(expected.getSeverity(), actual.getSeverity());
+        assertEquals(expected.getPriority(), actual.getPriority());
+        assertEquals(expected.getTestLevel(), actual.getTestLevel());
+        assertEquals(expected.getTestType(), actual.getTestType());
+        assertEquals(expected.getTestMethod(), actual.getTestMethod());
+        assertEquals(expected.getAuthor(), actual.getAuthor());
+        assertEquals(expected.getVersion(), actual.getVersion());
+        assertEquals(expected.getDescription(), actual.getDescription());
+        assertEquals(expected.isTimedOut(), actual.isTimedOut());
+        assertEquals(expected.getTimeoutMillis(), actual.getTimeoutMillis());
+        assertEquals(expected.getHangStackTrace(), actual.getHangStackTrace());
+        assertEquals(expected.getThreadDump(), actual.getThreadDump());
+        assertEquals(expected.isQuarantined(), actual.isQuarantined());
+
+        assertEquals(expected.getSteps().size(), actual.getSteps().size());
+        for (int i = 0; i < expected.getSteps().size(); i++) {
+            StepResult expectedStep = expected.getSteps().get(i);
+            StepResult actualStep = actual.getSteps().get(i);
+            assertEquals(expectedStep.getOrder(), actualStep.getOrder());
+            assertEquals(expectedStep.getDescription(), actualStep.getDescription());
+            assertEquals(expectedStep.isPassed(), actualStep.isPassed());
+            assertEquals(expectedStep.getStartTime(), actualStep.getStartTime());
+            assertEquals(expectedStep.getEndTime(), actualStep.getEndTime());
+            assertEquals(expectedStep.getErrorMessage(), actualStep.getErrorMessage());
+        }
+
+        assertEquals(expected.getAttempts().size(), actual.getAttempts().size());
+        for (int i = 0; i < expected.getAttempts().size(); i++) {
+            AttemptResult expectedAttempt = expected.getAttempts().get(i);
+            AttemptResult actualAttempt = actual.getAttempts().get(i);
+            assertEquals(expectedAttempt.getAttempt(), actualAttempt.getAttempt());
+            assertEquals(expectedAttempt.isPassed(), actualAttempt.isPassed());
+            assertEquals(expectedAttempt.getDurationMicros(), actualAttempt.getDurationMicros());
+            assertEquals(expectedAttempt.getErrorMessage(), actualAttempt.getErrorMessage());
+            assertEquals(expectedAttempt.getErrorType(), actualAttempt.getErrorType());
+            assertEquals(expectedAttempt.getStackTraceId(), actualAttempt.getStackTraceId());
+        }
+    }
+
+    /**
+     * One failed result in the record layout of an earlier version, written field by field,
+     * so the test keeps checking the old layouts whatever the current writer does
+     */
+    private static byte[] legacyStream(int version) throws IOException {
+        LegacyStream stream = new LegacyStream(version);
+        stream.record();
+        stream.internedString("com.example.PaymentTest");
+        stream.inlineString("refund");
+        if (version >= 2) {
+            stream.inlineString("inv-1");
+        }
+        if (version >= 4) {
+            stream.inlineString("main");
+            stream.inlineString("1");
+        }
+        stream.varLong(3 << 1);
+        stream.stringReference(0);
+        stream.inlineString("payments");
+        stream.bool(false);
+        stream.time(START);
+        stream.time(START.plusNanos(250_000_000));
+        stream.inlineString("expected 10 but was 9");
+        if (version >= 3) {
+            stream.inlineString("java.lang.AssertionError");
+            stream.inlineString("st-1");
+        }
+        stream.varLong(Severity.Level.HIGH.ordinal());
+        stream.varLong(Priority.Level.P1.ordinal());
+        stream.inlineString("INTEGRATION");
+        stream.inlineString("FUNCTIONAL");
+        stream.inlineString("BLACK_BOX");
+        stream.inlineString("Jane Smith");
+        stream.nullString();
+        stream.nullString();
+        stream.bool(false);
+
+        stream.varLong(1);
+        stream.varLong(1 << 1);
+        stream.inlineString("Open account");
+        stream.bool(true);
+        stream.time(START);
+        stream.time(START.plusNanos(100_000_000));
+        stream.nullString();
+
+        if (version >= 3) {
+            return stream.finish(1, 0, 1, 250, "st-1", "trace");
+        }
+        return stream.finish(1, 0, 1, 250);
+    }
+
+    private static final class LegacyStream {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+        private final int version;
+
+        LegacyStream(int version) throws IOException {
+            this.version = version;
+            out.writeInt(0x54524550);
+            varLong(version);
+            time(START);
+        }
+
+        void record() throws IOException {
+            varLong(1);
+        }
+
+        byte[] finish(int total, int passed, int failed, long duration, String... stackTraces) throws IOException {
+            varLong(0);
+            varLong(total);
+            varLong(passed);
+            varLong(failed);
+            varLong(duration);
+            if (version >= 3) {
+                varLong(stackTraces.length / 2);
+                for (String value : stackTraces) {
+                    inlineString(value);
+                }
+            }
+            return bytes.toByteArray();
+        }
+
+        void nullString() throws IOException {
+            varLong(0);
+        }
+
+        void internedString(String value) throws IOException {
+            string(1, value);
+        }
+
+        void inlineString(String value) throws IOException {
+            string(2, value);
+        }
+
+        void stringReference(int id) throws IOException {
+            varLong(3 + id);
+        }
+
+        private void string(int marker, String value) throws IOException {
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            varLong(marker);
+            varLong(utf8.length);
+            out.write(utf8);
+        }
+
+        void bool(boolean value) throws IOException {
+            out.writeBoolean(value);
+        }
+
+        void time(LocalDateTime time) throws IOException {
+            bool(true);
+            long seconds = time.toEpochSecond(ZoneOffset.UTC);
+            varLong((seconds << 1) ^ (seconds >> 63));
+            varLong(time.getNano());
+        }
+
+        void varLong(long value) throws IOException {
+            while ((value & ~0x7FL) != 0) {
+                out.writeByte((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            out.writeByte((int) value);
+        }
+    }
+}
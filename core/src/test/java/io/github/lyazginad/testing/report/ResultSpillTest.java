@@ -0,0 +1,100 @@
+package io.github.lyazginad.testing.report;
+
+import io.github.lyazginad.testing.model.TestResult;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ResultSpillTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2025, 1, 1, 12, 0);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void iteratesTheWrittenResultsAnyNumberOfTimes() throws IOException {
+        try (ResultSpill spill = new ResultSpill(directory.toFile(), START)) {
+            for (int i = 0; i < 3; i++) {
+                spill.write(result(i));
+            }
+
+            assertEquals(3, spill.size());
+            assertEquals(List.of("test0", "test1", "test2"), methodNames(spill));
+            assertEquals(List.of("test0", "test1", "test2"), methodNames(spill));
+        }
+    }
+
+    @Test
+    void iterationOnlySeesResultsWrittenBeforeItStarted() throws IOException {
+        try (ResultSpill spill = new ResultSpill(directory.toFile(), START)) {
+            spill.write(result(0));
+            Iterator<TestResult> iterator = spill.iterator();
+            spill.write(result(1));
+
+            assertEquals("test0", iterator.next().getMethodName());
+            assertFalse(iterator.hasNext());
+            assertThrows(NoSuchElementException.class, iterator::next);
+            assertEquals(List.of("test0", "test1"), methodNames(spill));
+        }
+    }
+
+    @Test
+    void keepsResultsBeyondTheStringTable() throws IOException {
+        int count = 20_000;
+        try (ResultSpill spill = new ResultSpill(directory.toFile(), START)) {
+            for (int i = 0; i < count; i++) {
+                spill.write(result(i));
+            }
+
+            List<String> names = methodNames(spill);
+            assertEquals(count, names.size());
+            for (int i = 0; i < count; i++) {
+                assertEquals("test" + i, names.get(i));
+            }
+        }
+    }
+
+    @Test
+    void closeDeletesTheFile() throws IOException {
+        ResultSpill spill = new ResultSpill(directory.toFile(), START);
+        spill.write(result(0));
+        File file = spill.getFile();
+        assertTrue(file.isFile());
+
+        spill.close();
+        spill.close();
+
+        assertFalse(file.exists());
+        assertThrows(IOException.class, () -> spill.write(result(1)));
+        assertThrows(UncheckedIOException.class, spill::iterator);
+    }
+
+    private static TestResult result(int order) {
+        TestResult result = new TestResult("com.example.SpillTest", "test" + order, order, "test" + order, START);
+        result.restoreCompletion(true, START.plusNanos(1_000_000), null);
+        return result;
+    }
+
+    private static List<String> methodNames(ResultSpill spill) {
+        List<String> names = new ArrayList<>();
+        for (TestResult result : spill) {
+            names.add(result.getMethodName());
+        }
+        return names;
+    }
+}
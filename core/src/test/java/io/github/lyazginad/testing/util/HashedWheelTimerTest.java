@@ -0,0 +1,99 @@
+package io.github.lyazginad.testing.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HashedWheelTimerTest {
+
+    private HashedWheelTimer timer;
+
+    @AfterEach
+    void stopTimer() {
+        if (timer != null) {
+            timer.stop();
+        }
+    }
+
+    @Test
+    void runsTaskNoEarlierThanItsDelay() throws InterruptedException {
+        timer = new HashedWheelTimer("test-timer", 10, TimeUnit.MILLISECONDS, 64);
+        CountDownLatch ran = new CountDownLatch(1);
+        long start = System.nanoTime();
+
+        HashedWheelTimer.Timeout timeout = timer.newTimeout(ran::countDown, 50, TimeUnit.MILLISECONDS);
+
+        assertTrue(ran.await(5, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+        assertTrue(timeout.isExpired());
+        assertFalse(timeout.cancel());
+    }
+
+    @Test
+    void cancelledTaskNeverRuns() throws InterruptedException {
+        timer = new HashedWheelTimer("test-timer", 10, TimeUnit.MILLISECONDS, 64);
+        AtomicBoolean cancelledRan = new AtomicBoolean();
+        CountDownLatch laterRan = new CountDownLatch(1);
+
+        HashedWheelTimer.Timeout timeout = timer.newTimeout(() -> cancelledRan.set(true), 30, TimeUnit.MILLISECONDS);
+        timer.newTimeout(laterRan::countDown, 100, TimeUnit.MILLISECONDS);
+
+        assertTrue(timeout.cancel());
+        assertFalse(timeout.cancel());
+        assertTrue(laterRan.await(5, TimeUnit.SECONDS));
+        assertFalse(cancelledRan.get());
+        assertTrue(timeout.isCancelled());
+        assertFalse(timeout.isExpired());
+    }
+
+    @Test
+    void runsTasksScheduledSeveralRoundsAhead() throws InterruptedException {
+        // Four ticks of 10ms: a 110ms delay wraps around the wheel twice
+        timer = new HashedWheelTimer("test-timer", 10, TimeUnit.MILLISECONDS, 4);
+        List<String> order = new CopyOnWriteArrayList<>();
+        CountDownLatch ran = new CountDownLatch(2);
+        long start = System.nanoTime();
+
+        timer.newTimeout(() -> {
+            order.add("late");
+            ran.countDown();
+        }, 110, TimeUnit.MILLISECONDS);
+        timer.newTimeout(() -> {
+            order.add("early");
+            ran.countDown();
+        }, 20, TimeUnit.MILLISECONDS);
+
+        assertTrue(ran.await(5, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(110));
+        assertEquals(List.of("early", "late"), order);
+    }
+
+    @Test
+    void failingTaskDoesNotStopTheWorker() throws InterruptedException {
+        timer = new HashedWheelTimer("test-timer", 10, TimeUnit.MILLISECONDS, 64);
+        CountDownLatch ran = new CountDownLatch(1);
+
+        timer.newTimeout(() -> {
+            throw new IllegalStateException("expected by the test");
+        }, 10, TimeUnit.MILLISECONDS);
+        timer.newTimeout(ran::countDown, 50, TimeUnit.MILLISECONDS);
+
+        assertTrue(ran.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void rejectsNonPositiveTickDuration() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new HashedWheelTimer("test-timer", 0, TimeUnit.MILLISECONDS, 64));
+    }
+}
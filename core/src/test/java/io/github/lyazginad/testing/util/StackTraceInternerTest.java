@@ -0,0 +1,76 @@
+package io.github.lyazginad.testing.util;
+
+import io.github.lyazginad.testing.model.TestReport;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class StackTraceInternerTest {
+
+    @Test
+    void storesATraceOnceWhateverItsMessage() {
+        TestReport report = new TestReport();
+        StackTraceInterner interner = new StackTraceInterner(report, 64);
+
+        String first = interner.intern(failure(new IllegalStateException("connection refused: db-1"), 3));
+        String second = interner.intern(failure(new IllegalStateException("connection refused: db-2"), 3));
+        String other = interner.intern(failure(new IllegalArgumentException("connection refused: db-1"), 3));
+
+        assertEquals(first, second);
+        assertNotEquals(first, other);
+        assertEquals(2, report.getStackTraces().size());
+        assertEquals("java.lang.IllegalStateException: connection refused: db-1\n"
+                + "\tat com.example.Frame0.call(Frame0.java:1)\n"
+                + "\tat com.example.Frame1.call(Frame1.java:2)\n"
+                + "\tat com.example.Frame2.call(Frame2.java:3)\n", report.getStackTrace(first));
+    }
+
+    @Test
+    void ignoresFramesBeyondTheDepthCap() {
+        TestReport report = new TestReport();
+        StackTraceInterner interner = new StackTraceInterner(report, 2);
+        Throwable deep = failure(new AssertionError("expected"), 5);
+        Throwable differentBelowTheCap = failure(new AssertionError("expected"), 5);
+        StackTraceElement[] frames = differentBelowTheCap.getStackTrace();
+        frames[4] = new StackTraceElement("com.example.Other", "call", "Other.java", 9);
+        differentBelowTheCap.setStackTrace(frames);
+
+        String id = interner.intern(deep);
+
+        assertEquals(id, interner.intern(differentBelowTheCap));
+        assertEquals("java.lang.AssertionError: expected\n"
+                + "\tat com.example.Frame0.call(Frame0.java:1)\n"
+                + "\tat com.example.Frame1.call(Frame1.java:2)\n"
+                + "\t... 3 more\n", report.getStackTrace(id));
+    }
+
+    @Test
+    void rendersEveryCauseOnceEvenInACycle() {
+        TestReport report = new TestReport();
+        StackTraceInterner interner = new StackTraceInterner(report, 1);
+        Exception outer = failure(new RuntimeException("outer"), 1);
+        Exception inner = failure(new IllegalStateException("inner"), 2);
+        outer.initCause(inner);
+        inner.initCause(outer);
+
+        String id = interner.intern(outer);
+
+        assertEquals("java.lang.RuntimeException: outer\n"
+                + "\tat com.example.Frame0.call(Frame0.java:1)\n"
+                + "Caused by: java.lang.IllegalStateException: inner\n"
+                + "\tat com.example.Frame0.call(Frame0.java:1)\n"
+                + "\t... 1 more\n", report.getStackTrace(id));
+        // The cause is part of the trace
+        assertNotEquals(id, interner.intern(failure(new RuntimeException("outer"), 1)));
+    }
+
+    private static <T extends Throwable> T failure(T failure, int depth) {
+        StackTraceElement[] frames = new StackTraceElement[depth];
+        for (int i = 0; i < depth; i++) {
+            frames[i] = new StackTraceElement("com.example.Frame" + i, "call", "Frame" + i + ".java", i + 1);
+        }
+        failure.setStackTrace(frames);
+        return failure;
+    }
+}
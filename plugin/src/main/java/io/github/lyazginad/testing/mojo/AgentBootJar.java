@@ -0,0 +1,120 @@
+package io.github.lyazginad.testing.mojo;
+
+import javassist.bytecode.ClassFile;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+
+/**
+ * Packs the agent and the libraries it loads into one jar for the boot class path of test
+ * forks. Javassist and Jackson are moved under {@value #SHADED_PACKAGE}, and every reference
+ * to them is rewritten, so the versions the project's tests use stay the ones on the test
+ * class path.
+ * <p>
+ * Only class references are rewritten, not class names in strings. Resources of other
+ * packages are copied as they are; {@code META-INF} is left out, the jar is not an agent jar
+ * or a multi-release jar itself.
+ */
+final class AgentBootJar {
+
+    static final String SHADED_PACKAGE = "io.github.lyazginad.testing.shaded";
+    private static final String SHADED_PREFIX = SHADED_PACKAGE.replace('.', '/') + "/";
+    /** Packages of the relocated libraries, in the JVM's internal form */
+    private static final List<String> RELOCATED_PACKAGES = List.of("javassist/", "com/fasterxml/jackson/");
+
+    private AgentBootJar() {
+    }
+
+    /**
+     * Writes the jars into {@code target}; of two entries with the same name, the first wins
+     */
+    static void write(List<File> jars, File target) throws IOException {
+        Relocation relocation = new Relocation();
+        Set<String> written = new HashSet<>();
+        File temporary = new File(target.getPath() + ".tmp");
+        try (JarOutputStream out = new JarOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary.toPath())))) {
+            for (File jar : jars) {
+                try (JarFile in = new JarFile(jar)) {
+                    for (JarEntry entry : Collections.list(in.entries())) {
+                        String name = entry.getName();
+                        if (entry.isDirectory() || name.startsWith("META-INF/") || name.endsWith("module-info.class")) {
+                            continue;
+                        }
+                        String relocated = relocate(name);
+                        if (!written.add(relocated != null ? relocated : name)) {
+                            continue;
+                        }
+                        out.putNextEntry(new JarEntry(relocated != null ? relocated : name));
+                        try (InputStream entryIn = in.getInputStream(entry)) {
+                            if (name.endsWith(".class")) {
+                                out.write(relocateClass(entryIn.readAllBytes(), relocation));
+                            } else {
+                                entryIn.transferTo(out);
+                            }
+                        }
+                        out.closeEntry();
+                    }
+                }
+            }
+        }
+        Files.move(temporary.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static byte[] relocateClass(byte[] classFile, Relocation relocation) throws IOException {
+        ClassFile file = new ClassFile(new DataInputStream(new ByteArrayInputStream(classFile)));
+        file.renameClass(relocation);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(classFile.length + 256);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            file.write(out);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * The relocated name of a class or resource in the JVM's internal form, or null if it is
+     * not in a relocated package
+     */
+    static String relocate(String name) {
+        for (String prefix : RELOCATED_PACKAGES) {
+            if (name.startsWith(prefix)) {
+                return SHADED_PREFIX + name;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Class names for {@link ClassFile#renameClass(java.util.Map)}, which only looks names up;
+     * it skips generic signatures if the map says it is empty
+     */
+    private static final class Relocation extends HashMap<String, String> {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public String get(Object jvmClassName) {
+            return jvmClassName instanceof String ? relocate((String) jvmClassName) : null;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return false;
+        }
+    }
+}
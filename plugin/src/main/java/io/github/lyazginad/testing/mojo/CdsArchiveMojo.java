@@ -0,0 +1,192 @@
+package io.github.lyazginad.testing.mojo;
+
+import io.github.lyazginad.testing.agent.CdsTraining;
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Shortens the startup of forked test JVMs with a class data sharing (CDS) archive of the agent.
+ * <p>
+ * Runs a training JVM with {@code -XX:ArchiveClassesAtExit} that instruments and runs a sample
+ * test and writes every report format, then appends the archive and the agent's class path to
+ * {@code argLine}. Forked test JVMs then map the agent's, Javassist's and Jackson's classes from
+ * the archive instead of loading and verifying them again.
+ * <p>
+ * CDS cannot archive classes from directories such as {@code target/test-classes}, so the agent
+ * and its dependencies are put on the boot class path ({@code -Xbootclasspath/a}) of the forks,
+ * independent of the test class path. There they would take the place of the project's own
+ * Javassist and Jackson, so they go into one jar with both libraries relocated, see
+ * {@link AgentBootJar}. The archive is rebuilt when these jars or the JVM change.
+ */
+@Mojo(name = "cds-archive", defaultPhase = LifecyclePhase.PROCESS_TEST_CLASSES, threadSafe = true)
+public class CdsArchiveMojo extends AbstractMojo {
+
+    /** First JDK with dynamic CDS archives */
+    private static final int MIN_JAVA_VERSION = 13;
+    private static final Pattern JAVA_VERSION = Pattern.compile("version \"(1\\.)?(\\d+)");
+    /** The agent with relocated Javassist and Jackson, next to the archive */
+    private static final String BOOT_JAR = "testing-agent-boot.jar";
+
+    @Parameter(defaultValue = "${project}", required = true, readonly = true)
+    private MavenProject project;
+
+    @Parameter(defaultValue = "${plugin.artifacts}", required = true, readonly = true)
+    private List<Artifact> pluginArtifacts;
+
+    @Parameter(property = "testing.cds.archiveFile", defaultValue = "${project.build.directory}/testing-cds/testing-agent.jsa")
+    private File archiveFile;
+
+    /** JVM of the forked tests; an archive only works with the JVM that wrote it */
+    @Parameter(property = "testing.cds.jvm", defaultValue = "${java.home}/bin/java")
+    private File jvm;
+
+    @Parameter(property = "testing.cds.trainingTimeout", defaultValue = "120000")
+    private long trainingTimeoutMillis;
+
+    @Parameter(property = "testing.cds.skip", defaultValue = "false")
+    private boolean skip;
+
+    @Override
+    public void execute() throws MojoExecutionException {
+        if (skip) {
+            getLog().info("CDS archive is skipped");
+            return;
+        }
+        File directory = archiveFile.getAbsoluteFile().getParentFile();
+        try {
+            Files.createDirectories(directory.toPath());
+
+            String version = run(List.of(jvm.getPath(), "-version"), new File(directory, "java-version.log"), 30_000L);
+            Matcher matcher = JAVA_VERSION.matcher(version != null ? version : "");
+            if (!matcher.find() || Integer.parseInt(matcher.group(2)) < MIN_JAVA_VERSION) {
+                getLog().warn("CDS archives of the agent need Java " + MIN_JAVA_VERSION + " or later, " + jvm
+                        + " is " + (version != null ? version.trim().split("\n")[0] : "not runnable"));
+                return;
+            }
+
+            List<File> agentJars = agentJars();
+            File bootJar = new File(directory, BOOT_JAR);
+            File stampFile = new File(archiveFile.getPath() + ".stamp");
+            String stamp = stamp(version, agentJars);
+            if (archiveFile.isFile() && bootJar.isFile() && stampFile.isFile()
+                    && stamp.equals(new String(Files.readAllBytes(stampFile.toPath()), StandardCharsets.UTF_8))) {
+                getLog().info("CDS archive is up to date: " + archiveFile);
+            } else {
+                AgentBootJar.write(agentJars, bootJar);
+                if (!train(bootJar.getAbsolutePath(), directory)) {
+                    return;
+                }
+                Files.write(stampFile.toPath(), stamp.getBytes(StandardCharsets.UTF_8));
+            }
+
+            String argLine = project.getProperties().getProperty("argLine", "").trim();
+            String cdsArgs = "-Xbootclasspath/a:" + bootJar.getAbsolutePath() + " -XX:SharedArchiveFile=" + archiveFile.getAbsolutePath();
+            project.getProperties().setProperty("argLine", argLine.isEmpty() ? cdsArgs : argLine + " " + cdsArgs);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Failed to create the CDS archive " + archiveFile, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Interrupted while creating the CDS archive", e);
+        }
+    }
+
+    /**
+     * Runs the training JVM; a failed training only costs the speed-up, so it does not fail the build
+     */
+    private boolean train(String bootClassPath, File directory) throws IOException, InterruptedException {
+        File emptyClassPath = new File(directory, "classpath");
+        Files.createDirectories(emptyClassPath.toPath());
+        File temporary = new File(archiveFile.getPath() + ".tmp");
+        Files.deleteIfExists(temporary.toPath());
+
+        List<String> command = new ArrayList<>();
+        command.add(jvm.getPath());
+        command.add("-XX:ArchiveClassesAtExit=" + temporary.getAbsolutePath());
+        command.add("-Xbootclasspath/a:" + bootClassPath);
+        // Classes in a non-empty directory on the class path would make the dump fail
+        command.add("-cp");
+        command.add(emptyClassPath.getAbsolutePath());
+        command.add(CdsTraining.class.getName());
+        command.add(new File(directory, "training").getAbsolutePath());
+
+        long start = System.nanoTime();
+        File log = new File(directory, "training.log");
+        String output = run(command, log, trainingTimeoutMillis);
+        if (output == null || !temporary.isFile()) {
+            getLog().warn("Could not create the CDS archive, see " + log + "; forks start without it");
+            return false;
+        }
+        Files.move(temporary.toPath(), archiveFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        getLog().info(String.format("Created CDS archive %s (%d KB) in %dms", archiveFile,
+                archiveFile.length() >> 10, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+        return true;
+    }
+
+    /**
+     * testing-core and the libraries the agent loads; test frameworks stay on the test class path
+     */
+    private List<File> agentJars() throws MojoExecutionException {
+        List<File> jars = pluginArtifacts.stream()
+                .filter(artifact -> "jar".equals(artifact.getType()) && artifact.getFile() != null)
+                .filter(artifact -> artifact.getGroupId().equals("io.github.lyazginad")
+                        || artifact.getGroupId().equals("org.javassist")
+                        || artifact.getGroupId().startsWith("com.fasterxml.jackson"))
+                .map(Artifact::getFile)
+                .collect(Collectors.toList());
+        if (jars.stream().noneMatch(jar -> jar.getName().startsWith("testing-core"))) {
+            throw new MojoExecutionException("testing-core is not among the plugin's dependencies");
+        }
+        return jars;
+    }
+
+    /**
+     * Identifies the JVM and the archived jars; any change makes the archive stale
+     */
+    private String stamp(String version, List<File> jars) {
+        StringBuilder stamp = new StringBuilder(jvm.getAbsolutePath()).append('\n').append(version.trim()).append('\n');
+        for (File jar : jars) {
+            stamp.append(jar.getAbsolutePath()).append('\t').append(jar.length()).append('\t').append(jar.lastModified()).append('\n');
+        }
+        return stamp.toString();
+    }
+
+    /**
+     * Output of the command, or null if it failed or timed out
+     */
+    private String run(List<String> command, File log, long timeoutMillis) throws IOException, InterruptedException {
+        Process process;
+        try {
+            process = new ProcessBuilder(command)
+                    .redirectErrorStream(true)
+                    .redirectOutput(log)
+                    .start();
+        } catch (IOException e) {
+            getLog().debug("Could not run " + command.get(0) + ": " + e.getMessage());
+            return null;
+        }
+        if (!process.waitFor(timeoutMillis, TimeUnit.MILLISECONDS)) {
+            process.destroyForcibly();
+            getLog().warn(command.get(0) + " did not finish within " + timeoutMillis + "ms");
+            return null;
+        }
+        String output = new String(Files.readAllBytes(log.toPath()), StandardCharsets.UTF_8);
+        return process.exitValue() == 0 ? output : null;
+    }
+}
@@ -0,0 +1,172 @@
+package io.github.lyazginad.testing.mojo;
+
+import io.github.lyazginad.testing.agent.TestReportAgent;
+import io.github.lyazginad.testing.instrument.TestClassInstrumenter;
+import javassist.ClassClassPath;
+import javassist.ClassPool;
+import javassist.NotFoundException;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Build-time counterpart of the agent's class transformer.
+ * <p>
+ * Weaves the same tracking calls as the agent into {@code target/test-classes}, so test
+ * JVMs run without {@code -javaagent} and without load-time transformation. Only classes
+ * that changed since the last run are processed: the size and modification time of every
+ * woven class are kept in a state file, together with the {@code reruns} setting. Classes are
+ * woven in place, so classes woven without the rerun loop cannot get it later; the goal fails
+ * then instead of leaving {@code rerun.count} without effect.
+ */
+@Mojo(name = "instrument", defaultPhase = LifecyclePhase.PROCESS_TEST_CLASSES,
+        requiresDependencyResolution = ResolutionScope.TEST, threadSafe = true)
+public class InstrumentTestsMojo extends AbstractMojo {
+
+    /** State entry of the reruns setting; class entries are relative paths ending in .class */
+    private static final String RERUNS_STATE = "reruns";
+
+    @Parameter(defaultValue = "${project.build.testOutputDirectory}", required = true)
+    private File testClassesDirectory;
+
+    @Parameter(defaultValue = "${project.testClasspathElements}", required = true, readonly = true)
+    private List<String> classpathElements;
+
+    @Parameter(defaultValue = "${project.build.directory}/testing-instrument.state", required = true)
+    private File stateFile;
+
+    /**
+     * Weave the loop that lets the agent rerun failed tests ({@code rerun.count}) and quarantine
+     * known flaky ones ({@code flaky.quarantine}); classes woven without it are not rerun
+     */
+    @Parameter(property = "testing.instrument.reruns", defaultValue = "false")
+    private boolean reruns;
+
+    @Parameter(property = "testing.instrument.skip", defaultValue = "false")
+    private boolean skip;
+
+    @Override
+    public void execute() throws MojoExecutionException {
+        if (skip) {
+            getLog().info("Test class instrumentation is skipped");
+            return;
+        }
+        if (!testClassesDirectory.isDirectory()) {
+            getLog().info("No test classes to instrument in " + testClassesDirectory);
+            return;
+        }
+
+        long start = System.nanoTime();
+        Properties state = loadState();
+        Properties newState = new Properties();
+        ClassPool classPool = createClassPool();
+        TestClassInstrumenter instrumenter = new TestClassInstrumenter(classPool, reruns);
+        Path root = testClassesDirectory.toPath();
+
+        int instrumented = 0;
+        int unchanged = 0;
+        // Classes woven by an earlier build without the loop have to be found before they are skipped as unchanged
+        boolean checkReruns = reruns && !Boolean.parseBoolean(state.getProperty(RERUNS_STATE));
+        List<String> withoutRerunLoop = new ArrayList<>();
+        try (Stream<Path> files = Files.walk(root)) {
+            for (Path classFile : files.filter(path -> path.toString().endsWith(".class")).collect(Collectors.toList())) {
+                String relativePath = root.relativize(classFile).toString().replace(File.separatorChar, '/');
+                String className = relativePath.substring(0, relativePath.length() - ".class".length()).replace('/', '.');
+                if (!TestClassInstrumenter.isCandidate(className)) {
+                    continue;
+                }
+
+                String stamp = stampOf(classFile);
+                if (!checkReruns && stamp.equals(state.getProperty(relativePath))) {
+                    newState.setProperty(relativePath, stamp);
+                    unchanged++;
+                    continue;
+                }
+
+                byte[] bytes = Files.readAllBytes(classFile);
+                byte[] woven = instrumenter.instrument(bytes);
+                if (woven != null) {
+                    Files.write(classFile, woven);
+                    instrumented++;
+                    getLog().debug("Instrumented " + className);
+                } else if (reruns && TestClassInstrumenter.isInstrumented(bytes)
+                        && !TestClassInstrumenter.hasRerunLoop(bytes)) {
+                    withoutRerunLoop.add(className);
+                } else if (stamp.equals(state.getProperty(relativePath))) {
+                    unchanged++;
+                }
+                newState.setProperty(relativePath, stampOf(classFile));
+            }
+        } catch (Exception e) {
+            throw new MojoExecutionException("Failed to instrument test classes in " + testClassesDirectory, e);
+        }
+
+        if (!withoutRerunLoop.isEmpty()) {
+            throw new MojoExecutionException(withoutRerunLoop.size() + " test classes, e.g. " + withoutRerunLoop.get(0)
+                    + ", were instrumented by an earlier build without testing.instrument.reruns and cannot get"
+                    + " the rerun loop now. Recompile the test classes, e.g. with mvn clean, to weave it.");
+        }
+        newState.setProperty(RERUNS_STATE, String.valueOf(reruns));
+        saveState(newState);
+        getLog().info(String.format("Instrumented %d test classes (%d unchanged) in %dms",
+                instrumented, unchanged, (System.nanoTime() - start) / 1_000_000));
+    }
+
+    private ClassPool createClassPool() throws MojoExecutionException {
+        ClassPool classPool = new ClassPool(true);
+        // The woven calls reference the agent, resolve it from the plugin's own class path
+        classPool.appendClassPath(new ClassClassPath(TestReportAgent.class));
+        try {
+            for (String element : classpathElements) {
+                if (new File(element).exists()) {
+                    classPool.appendClassPath(element);
+                }
+            }
+        } catch (NotFoundException e) {
+            throw new MojoExecutionException("Invalid test class path element", e);
+        }
+        return classPool;
+    }
+
+    private static String stampOf(Path classFile) throws IOException {
+        return Files.size(classFile) + ":" + Files.getLastModifiedTime(classFile).toMillis();
+    }
+
+    private Properties loadState() {
+        Properties state = new Properties();
+        if (stateFile.isFile()) {
+            try (InputStream in = Files.newInputStream(stateFile.toPath())) {
+                state.load(in);
+            } catch (IOException e) {
+                getLog().warn("Could not read instrumentation state, instrumenting all classes: " + e.getMessage());
+            }
+        }
+        return state;
+    }
+
+    private void saveState(Properties state) throws MojoExecutionException {
+        try {
+            Files.createDirectories(stateFile.toPath().getParent());
+            try (OutputStream out = Files.newOutputStream(stateFile.toPath())) {
+                state.store(out, "Test classes woven by testing:instrument (size:lastModified)");
+            }
+        } catch (IOException e) {
+            throw new MojoExecutionException("Failed to write instrumentation state " + stateFile, e);
+        }
+    }
+}
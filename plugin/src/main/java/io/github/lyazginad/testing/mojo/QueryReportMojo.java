@@ -0,0 +1,130 @@
+package io.github.lyazginad.testing.mojo;
+
+import io.github.lyazginad.testing.model.SummaryCube.Dimension;
+import io.github.lyazginad.testing.model.TestReport;
+import io.github.lyazginad.testing.model.TestResult;
+import io.github.lyazginad.testing.query.ReportIndex;
+import io.github.lyazginad.testing.query.ReportQuery;
+import io.github.lyazginad.testing.report.ReportReader;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+import java.io.File;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Prints the tests of a finished report that match the given filters, for example:
+ * {@code mvn testing:query -Dtesting.query.outcome=FAILED -Dtesting.query.author="Jane Smith"}
+ */
+@Mojo(name = "query", threadSafe = true)
+public class QueryReportMojo extends AbstractMojo {
+
+    @Parameter(property = "reportFile", defaultValue = "${project.build.directory}/test-reports/custom-test-report.json")
+    private File reportFile;
+
+    /** PASSED or FAILED */
+    @Parameter(property = "testing.query.outcome")
+    private String outcome;
+
+    @Parameter(property = "testing.query.severity")
+    private String severity;
+
+    @Parameter(property = "testing.query.priority")
+    private String priority;
+
+    @Parameter(property = "testing.query.level")
+    private String level;
+
+    @Parameter(property = "testing.query.type")
+    private String type;
+
+    @Parameter(property = "testing.query.method")
+    private String method;
+
+    @Parameter(property = "testing.query.category")
+    private String category;
+
+    @Parameter(property = "testing.query.author")
+    private String author;
+
+    @Parameter(property = "testing.query.minDuration")
+    private Long minDuration;
+
+    @Parameter(property = "testing.query.maxDuration")
+    private Long maxDuration;
+
+    /** Show the N slowest matching tests instead of the first N */
+    @Parameter(property = "testing.query.top", defaultValue = "0")
+    private int top;
+
+    @Parameter(property = "testing.query.limit", defaultValue = "50")
+    private int limit;
+
+    @Override
+    public void execute() throws MojoExecutionException {
+        if (!reportFile.isFile()) {
+            throw new MojoExecutionException("Report file does not exist: " + reportFile);
+        }
+
+        try {
+            long start = System.nanoTime();
+            TestReport report = ReportReader.read(reportFile);
+            long loaded = System.nanoTime();
+            ReportIndex index = new ReportIndex(report);
+            long indexed = System.nanoTime();
+
+            ReportQuery query = index.query();
+            addFilter(query, Dimension.OUTCOME, outcome);
+            addFilter(query, Dimension.SEVERITY, severity);
+            addFilter(query, Dimension.PRIORITY, priority);
+            addFilter(query, Dimension.LEVEL, level);
+            addFilter(query, Dimension.TYPE, type);
+            addFilter(query, Dimension.METHOD, method);
+            addFilter(query, Dimension.CATEGORY, category);
+            addFilter(query, Dimension.AUTHOR, author);
+            if (minDuration != null || maxDuration != null) {
+                query.durationBetween(minDuration != null ? minDuration : Long.MIN_VALUE,
+                        maxDuration != null ? maxDuration : Long.MAX_VALUE);
+            }
+            if (top > 0) {
+                query.slowestFirst().limit(top);
+            } else {
+                query.limit(limit);
+            }
+
+            int matching = query.count();
+            List<TestResult> results = query.execute();
+            long queried = System.nanoTime();
+
+            for (TestResult result : results) {
+                getLog().info(String.format("%s %s#%s [%s, %s, %s] %dms%s",
+                        result.isPassed() ? "PASS" : "FAIL",
+                        result.getClassName(), result.getMethodName(),
+                        result.getSeverity(), result.getPriority(), result.getCategory(),
+                        result.getDuration(),
+                        result.getErrorMessage() != null ? " - " + result.getErrorMessage() : ""));
+            }
+            getLog().info("Matching tests: " + matching + " of " + index.size()
+                    + (results.size() < matching ? " (showing " + results.size() + ")" : ""));
+            getLog().debug(String.format("Load %dms, index %dms, query %.3fms",
+                    (loaded - start) / 1_000_000, (indexed - loaded) / 1_000_000, (queried - indexed) / 1_000_000.0));
+
+        } catch (Exception e) {
+            throw new MojoExecutionException("Failed to query test report " + reportFile, e);
+        }
+    }
+
+    private static void addFilter(ReportQuery query, Dimension dimension, String values) {
+        if (values != null && !values.trim().isEmpty()) {
+            String[] split = values.split(",");
+            boolean enumDimension = dimension != Dimension.CATEGORY && dimension != Dimension.AUTHOR;
+            for (int i = 0; i < split.length; i++) {
+                split[i] = enumDimension ? split[i].trim().toUpperCase(Locale.ROOT) : split[i].trim();
+            }
+            query.where(dimension, split);
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package io.github.lyazginad.testing.mojo;
+
+import io.github.lyazginad.testing.agent.AgentConfig;
+import io.github.lyazginad.testing.annotations.Priority;
+import io.github.lyazginad.testing.annotations.Severity;
+import io.github.lyazginad.testing.history.BudgetSelector;
+import io.github.lyazginad.testing.history.TestHistory;
+import io.github.lyazginad.testing.instrument.TestClassInstrumenter;
+import io.github.lyazginad.testing.util.AnnotationIndex;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Runs the most valuable tests that fit a time budget, for example:
+ * {@code mvn verify -Dtesting.budget=8m}
+ * <p>
+ * Values every test by its priority, severity, level and recent failure rate and flakiness
+ * from the test history written by the agent, costs it by its average duration, and passes surefire the
+ * subset with the most value that fits the budget. P0 tests always run. Runs after
+ * {@code select-tests} if both are configured and then only chooses among the tests it selected.
+ */
+@Mojo(name = "select-budget", defaultPhase = LifecyclePhase.PROCESS_TEST_CLASSES, threadSafe = true)
+public class SelectBudgetMojo extends AbstractMojo {
+
+    @Parameter(defaultValue = "${project}", required = true, readonly = true)
+    private MavenProject project;
+
+    @Parameter(defaultValue = "${session}", required = true, readonly = true)
+    private MavenSession session;
+
+    @Parameter(defaultValue = "${project.build.testOutputDirectory}", required = true)
+    private File testClassesDirectory;
+
+    /** Time the selected tests may take, e.g. {@code 8m} or {@code 90s}; without it all tests run */
+    @Parameter(property = "testing.budget")
+    private String budget;
+
+    @Parameter(property = "testing.historyFile", defaultValue = "${project.build.directory}/test-reports/" + TestHistory.DEFAULT_FILE_NAME)
+    private File historyFile;
+
+    /** Assumed duration of tests without history when no test has any */
+    @Parameter(property = "testing.budget.defaultDuration", defaultValue = "1s")
+    private String defaultDuration;
+
+    @Parameter(property = "testing.budget.requireP0", defaultValue = "true")
+    private boolean requireP0;
+
+    /** File receiving the chosen surefire test filter */
+    @Parameter(property = "testing.budget.selectionFile", defaultValue = "${project.build.directory}/test-reports/budget-selection.txt")
+    private File selectionFile;
+
+    @Parameter(property = "testing.budget.skip", defaultValue = "false")
+    private boolean skip;
+
+    @Override
+    public void execute() throws MojoExecutionException {
+        if (skip || budget == null || budget.trim().isEmpty()) {
+            getLog().debug("No test time budget given, running all tests");
+            return;
+        }
+        String requested = session.getUserProperties().getProperty("test");
+        if (requested != null) {
+            getLog().info("Tests are selected explicitly (-Dtest=" + requested + "), ignoring the time budget");
+            return;
+        }
+        if (Boolean.parseBoolean(project.getProperties().getProperty("skipTests"))) {
+            return;
+        }
+
+        long budgetMicros;
+        long defaultMicros;
+        try {
+            budgetMicros = AgentConfig.parseMillis(budget) * 1000;
+            defaultMicros = AgentConfig.parseMillis(defaultDuration) * 1000;
+        } catch (NumberFormatException e) {
+            throw new MojoExecutionException("Invalid test time budget: " + budget + " / " + defaultDuration, e);
+        }
+
+        try {
+            Files.deleteIfExists(selectionFile.toPath());
+            TestHistory history = new TestHistory();
+            if (historyFile.isFile()) {
+                history = TestHistory.read(historyFile);
+            } else {
+                getLog().info("No test history at " + historyFile + ", estimating every test at " + defaultDuration);
+            }
+
+            // Tests chosen by an earlier goal such as select-tests
+            String preselected = project.getProperties().getProperty("test");
+            Map<String, Set<String>> allowed = preselected != null ? SelectTestsMojo.parseSurefireFilter(preselected) : null;
+
+            List<BudgetSelector.Candidate> candidates = candidates(history, allowed, defaultMicros);
+            if (candidates.isEmpty()) {
+                getLog().info("No tests found in " + testClassesDirectory);
+                return;
+            }
+
+            BudgetSelector.Selection selection = BudgetSelector.select(candidates, budgetMicros);
+            getLog().info(String.format("Selected %d of %d tests: %s of %s budget, %.1f%% of the total test value",
+                    selection.getSelected().size(), candidates.size(), formatMicros(selection.getCostMicros()),
+                    formatMicros(budgetMicros), selection.getValueCoverage() * 100));
+            if (selection.getCostMicros() > budgetMicros) {
+                getLog().warn("Required P0 tests alone exceed the time budget of " + budget);
+            }
+            if (selection.getSelected().size() == candidates.size()) {
+                getLog().info("All tests fit in the time budget");
+                return;
+            }
+
+            Map<String, Set<String>> selected = new TreeMap<>();
+            for (BudgetSelector.Candidate candidate : selection.getSelected()) {
+                if (candidate.getMethodName() == null) {
+                    selected.put(candidate.getClassName(), null);
+                } else {
+                    SelectTestsMojo.selectMethod(selected, candidate.getClassName(), candidate.getMethodName());
+                }
+            }
+            if (selected.isEmpty()) {
+                getLog().info("No test fits in the time budget, skipping tests");
+                project.getProperties().setProperty("skipTests", "true");
+                return;
+            }
+            String filter = SelectTestsMojo.toSurefireFilter(selected);
+            Files.createDirectories(selectionFile.getAbsoluteFile().getParentFile().toPath());
+            Files.write(selectionFile.toPath(), filter.getBytes(StandardCharsets.UTF_8));
+            getLog().debug("Selected tests: " + filter);
+            project.getProperties().setProperty("test", filter);
+            project.getProperties().setProperty("surefire.failIfNoSpecifiedTests", "false");
+        } catch (IOException e) {
+            throw new MojoExecutionException("Failed to select tests within the time budget", e);
+        }
+    }
+
+    /**
+     * Test methods known from the annotation index or the history, test methods of the class files
+     * known from neither, valued as new tests, and test classes without recognizable test methods
+     */
+    private List<BudgetSelector.Candidate> candidates(TestHistory history, Map<String, Set<String>> allowed,
+                                                      long defaultMicros) throws IOException {
+        Set<String> testClasses = testClasses();
+        Map<String, TestHistory.Entry> entries = history.getEntries();
+
+        // Tests without history are assumed to take as long as a typical test
+        List<Long> durations = entries.values().stream().map(TestHistory.Entry::getMeanMicros).sorted()
+                .collect(Collectors.toList());
+        long estimateMicros = durations.isEmpty() ? defaultMicros : durations.get(durations.size() / 2);
+
+        Map<String, AnnotationIndex.Entry> annotated = new LinkedHashMap<>();
+        File indexFile = new File(testClassesDirectory, AnnotationIndex.INDEX_RESOURCE);
+        if (indexFile.isFile()) {
+            try (InputStream in = Files.newInputStream(indexFile.toPath())) {
+                for (AnnotationIndex.Entry entry : AnnotationIndex.read(in).entries()) {
+                    annotated.putIfAbsent(entry.getClassName() + "#" + entry.getMethodName(), entry);
+                }
+            }
+        }
+        Set<String> tests = new TreeSet<>(annotated.keySet());
+        tests.addAll(entries.keySet());
+
+        List<BudgetSelector.Candidate> candidates = new ArrayList<>();
+        Set<String> coveredClasses = new HashSet<>();
+        for (String test : tests) {
+            int separator = test.indexOf('#');
+            String className = test.substring(0, separator);
+            String methodName = test.substring(separator + 1);
+            if (!testClasses.contains(className) || !isAllowed(allowed, className, methodName)) {
+                continue;
+            }
+            coveredClasses.add(className);
+            AnnotationIndex.Entry annotations = annotated.get(test);
+            TestHistory.Entry past = entries.get(test);
+            Priority.Level priority = annotations != null ? annotations.getPriority() : null;
+            Severity.Level severity = annotations != null ? annotations.getSeverity() : null;
+            double value = BudgetSelector.value(priority, severity, annotations != null ? annotations.getLevel() : null,
+                    past != null ? past.getRecentFailureRate() : BudgetSelector.NEW_TEST_FAILURE_RATE,
+                    past != null ? past.getFlakinessScore() : 0);
+            candidates.add(new BudgetSelector.Candidate(className, methodName,
+                    past != null ? past.getMeanMicros() : estimateMicros, value,
+                    requireP0 && priority == Priority.Level.P0));
+        }
+
+        double newTestValue = BudgetSelector.value(null, null, null, BudgetSelector.NEW_TEST_FAILURE_RATE, 0);
+        for (String className : testClasses) {
+            if (!TestClassInstrumenter.isCandidate(className) || (allowed != null && !allowed.containsKey(className))) {
+                continue;
+            }
+            Set<String> methods = testMethodNames(className);
+            if (methods.isEmpty()) {
+                if (!coveredClasses.contains(className)) {
+                    candidates.add(new BudgetSelector.Candidate(className, null, estimateMicros, newTestValue, false));
+                }
+                continue;
+            }
+            for (String methodName : methods) {
+                if (!tests.contains(className + "#" + methodName) && isAllowed(allowed, className, methodName)) {
+                    candidates.add(new BudgetSelector.Candidate(className, methodName, estimateMicros, newTestValue, false));
+                }
+            }
+        }
+        return candidates;
+    }
+
+    private Set<String> testMethodNames(String className) throws IOException {
+        File classFile = new File(testClassesDirectory, className.replace('.', File.separatorChar) + ".class");
+        try (InputStream in = Files.newInputStream(classFile.toPath())) {
+            return TestClassInstrumenter.testMethodNames(in);
+        }
+    }
+
+    private static boolean isAllowed(Map<String, Set<String>> allowed, String className, String methodName) {
+        if (allowed == null) {
+            return true;
+        }
+        if (!allowed.containsKey(className)) {
+            return false;
+        }
+        Set<String> methods = allowed.get(className);
+        return methods == null || methods.contains(methodName);
+    }
+
+    private Set<String> testClasses() throws IOException {
+        if (!testClassesDirectory.isDirectory()) {
+            return Collections.emptySet();
+        }
+        Path root = testClassesDirectory.toPath();
+        try (Stream<Path> files = Files.walk(root)) {
+            return files.filter(path -> path.toString().endsWith(".class"))
+                    .map(path -> {
+                        String relativePath = root.relativize(path).toString().replace(File.separatorChar, '/');
+                        return relativePath.substring(0, relativePath.length() - ".class".length()).replace('/', '.');
+                    })
+                    .collect(Collectors.toCollection(HashSet::new));
+        }
+    }
+
+    private static String formatMicros(long micros) {
+        long seconds = Math.round(micros / 1_000_000.0);
+        return seconds >= 60 ? String.format("%dm%02ds", seconds / 60, seconds % 60)
+                : String.format("%.1fs", micros / 1_000_000.0);
+    }
+}
@@ -0,0 +1,205 @@
+package io.github.lyazginad.testing.mojo;
+
+import io.github.lyazginad.testing.annotations.Priority;
+import io.github.lyazginad.testing.impact.ImpactMap;
+import io.github.lyazginad.testing.instrument.TestClassInstrumenter;
+import io.github.lyazginad.testing.util.AnnotationIndex;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Narrows the test run down to the tests affected by the changed classes.
+ * <p>
+ * Compares the class files in {@code target/classes} with the checksums recorded in the
+ * test impact map written by the agent ({@code impact.packages}) and passes surefire only
+ * the tests that ran a changed class, all P0 tests and all new or changed test classes.
+ * Without an impact map, or when {@code -Dtest} is given, all tests run as usual.
+ */
+@Mojo(name = "select-tests", defaultPhase = LifecyclePhase.PROCESS_TEST_CLASSES, threadSafe = true)
+public class SelectTestsMojo extends AbstractMojo {
+
+    @Parameter(defaultValue = "${project}", required = true, readonly = true)
+    private MavenProject project;
+
+    @Parameter(defaultValue = "${session}", required = true, readonly = true)
+    private MavenSession session;
+
+    @Parameter(defaultValue = "${project.build.outputDirectory}", required = true)
+    private File classesDirectory;
+
+    @Parameter(defaultValue = "${project.build.testOutputDirectory}", required = true)
+    private File testClassesDirectory;
+
+    @Parameter(property = "testing.impactFile", defaultValue = "${project.build.directory}/test-reports/" + ImpactMap.DEFAULT_FILE_NAME)
+    private File impactFile;
+
+    @Parameter(property = "testing.select.skip", defaultValue = "false")
+    private boolean skip;
+
+    @Override
+    public void execute() throws MojoExecutionException {
+        if (skip) {
+            getLog().info("Test selection is skipped, running all tests");
+            return;
+        }
+        String requested = session.getUserProperties().getProperty("test", project.getProperties().getProperty("test"));
+        if (requested != null) {
+            getLog().info("Tests are selected explicitly (-Dtest=" + requested + "), skipping impact analysis");
+            return;
+        }
+        if (!impactFile.isFile()) {
+            getLog().info("No test impact map at " + impactFile + ", running all tests");
+            return;
+        }
+
+        ImpactMap impactMap;
+        try (InputStream in = Files.newInputStream(impactFile.toPath())) {
+            impactMap = ImpactMap.read(in);
+        } catch (IOException e) {
+            getLog().warn("Could not read test impact map, running all tests: " + e.getMessage());
+            return;
+        }
+        if (impactMap.getTests().isEmpty()) {
+            getLog().info("Test impact map has no tests yet, running all tests");
+            return;
+        }
+
+        try {
+            // Class name -> set of methods; null selects the whole class
+            Map<String, Set<String>> selected = new TreeMap<>();
+
+            BitSet changedClasses = changedClasses(impactMap);
+            for (String test : impactMap.testsUsing(changedClasses)) {
+                int separator = test.indexOf('#');
+                selectMethod(selected, test.substring(0, separator), test.substring(separator + 1));
+            }
+            int affected = selected.size();
+
+            Map<String, Long> recordedTestClasses = impactMap.getTestClassChecksums();
+            int changedTestClasses = 0;
+            for (Map.Entry<String, Long> testClass : checksums(testClassesDirectory).entrySet()) {
+                if (TestClassInstrumenter.isCandidate(testClass.getKey())
+                        && !testClass.getValue().equals(recordedTestClasses.get(testClass.getKey()))) {
+                    selected.put(testClass.getKey(), null);
+                    changedTestClasses++;
+                }
+            }
+
+            int critical = 0;
+            File indexFile = new File(testClassesDirectory, AnnotationIndex.INDEX_RESOURCE);
+            if (indexFile.isFile()) {
+                try (InputStream in = Files.newInputStream(indexFile.toPath())) {
+                    for (AnnotationIndex.Entry entry : AnnotationIndex.read(in).entries()) {
+                        if (entry.getPriority() == Priority.Level.P0) {
+                            selectMethod(selected, entry.getClassName(), entry.getMethodName());
+                            critical++;
+                        }
+                    }
+                }
+            }
+
+            getLog().info(String.format("%d changed classes affect %d test classes; %d new or changed test classes, %d P0 tests",
+                    changedClasses.cardinality(), affected, changedTestClasses, critical));
+
+            if (selected.isEmpty()) {
+                getLog().info("No tests affected by changes, skipping tests");
+                project.getProperties().setProperty("skipTests", "true");
+                return;
+            }
+            String filter = toSurefireFilter(selected);
+            getLog().info("Selected tests: " + filter);
+            project.getProperties().setProperty("test", filter);
+            project.getProperties().setProperty("surefire.failIfNoSpecifiedTests", "false");
+        } catch (IOException e) {
+            throw new MojoExecutionException("Failed to select tests from " + impactFile, e);
+        }
+    }
+
+    /**
+     * Ids of recorded classes whose class file changed or was removed
+     */
+    private BitSet changedClasses(ImpactMap impactMap) throws IOException {
+        Map<String, Long> current = checksums(classesDirectory);
+        BitSet changed = new BitSet();
+        for (int id = 0; id < impactMap.getClassCount(); id++) {
+            Long checksum = current.get(impactMap.getClassName(id));
+            if (checksum == null || checksum != impactMap.getClassChecksum(id)) {
+                changed.set(id);
+                getLog().debug("Changed class: " + impactMap.getClassName(id));
+            }
+        }
+        return changed;
+    }
+
+    private static Map<String, Long> checksums(File directory) throws IOException {
+        Map<String, Long> checksums = new HashMap<>();
+        if (!directory.isDirectory()) {
+            return checksums;
+        }
+        Path root = directory.toPath();
+        try (Stream<Path> files = Files.walk(root)) {
+            for (Path classFile : files.filter(path -> path.toString().endsWith(".class")).collect(Collectors.toList())) {
+                String relativePath = root.relativize(classFile).toString().replace(File.separatorChar, '/');
+                String className = relativePath.substring(0, relativePath.length() - ".class".length()).replace('/', '.');
+                // The checksum as compiled, so classes woven by the instrument goal do not look changed
+                checksums.put(className, TestClassInstrumenter.sourceChecksum(Files.readAllBytes(classFile)));
+            }
+        }
+        return checksums;
+    }
+
+    static void selectMethod(Map<String, Set<String>> selected, String className, String methodName) {
+        if (selected.containsKey(className) && selected.get(className) == null) {
+            return; // Whole class already selected
+        }
+        selected.computeIfAbsent(className, key -> new TreeSet<>()).add(methodName);
+    }
+
+    /**
+     * Reads a filter written by {@link #toSurefireFilter}
+     */
+    static Map<String, Set<String>> parseSurefireFilter(String filter) {
+        Map<String, Set<String>> selected = new TreeMap<>();
+        for (String pattern : filter.split(",")) {
+            int separator = pattern.indexOf('#');
+            if (separator < 0) {
+                selected.put(pattern.trim(), null);
+                continue;
+            }
+            for (String methodName : pattern.substring(separator + 1).split("\\+")) {
+                selectMethod(selected, pattern.substring(0, separator).trim(), methodName.trim());
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Surefire test filter: {@code pkg.ATest#one+two,pkg.BTest}
+     */
+    static String toSurefireFilter(Map<String, Set<String>> selected) {
+        return selected.entrySet().stream()
+                .map(entry -> entry.getValue() == null
+                        ? entry.getKey()
+                        : entry.getKey() + "#" + String.join("+", entry.getValue()))
+                .collect(Collectors.joining(","));
+    }
+}
@@ -0,0 +1,147 @@
+package io.github.lyazginad.testing.mojo;
+
+import io.github.lyazginad.testing.collector.CollectorServer;
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Gathers the results of all forked test JVMs of a build into one report.
+ * <p>
+ * Starts the collector as a background process and appends
+ * {@code -Dtesting.collector=127.0.0.1:<port>} to {@code argLine}, so every forked test
+ * JVM streams its results into one live report. With a fixed port, a collector already
+ * running there (e.g. started by an earlier module) is reused.
+ */
+@Mojo(name = "start-collector", defaultPhase = LifecyclePhase.PROCESS_TEST_CLASSES, threadSafe = true)
+public class StartCollectorMojo extends AbstractMojo {
+
+    private static final int PING_TIMEOUT_MILLIS = 1_000;
+
+    @Parameter(defaultValue = "${project}", required = true, readonly = true)
+    private MavenProject project;
+
+    @Parameter(defaultValue = "${plugin.artifacts}", required = true, readonly = true)
+    private List<Artifact> pluginArtifacts;
+
+    /** Port of the collector; 0 picks a free port */
+    @Parameter(property = "testing.collector.port", defaultValue = "0")
+    private int port;
+
+    @Parameter(defaultValue = "${project.build.directory}/testing-collector.port", required = true)
+    private File portFile;
+
+    @Parameter(property = "outputDirectory", defaultValue = "${project.build.directory}/test-reports")
+    private File outputDirectory;
+
+    @Parameter(property = "testing.collector.reportFileName", defaultValue = CollectorServer.DEFAULT_REPORT_FILE_NAME)
+    private String reportFileName;
+
+    /** Interval of live report snapshots */
+    @Parameter(property = "testing.collector.snapshotInterval", defaultValue = "5s")
+    private String snapshotInterval;
+
+    /** The collector exits on its own after this long without connections, e.g. when the build failed */
+    @Parameter(property = "testing.collector.idleTimeout", defaultValue = "30m")
+    private String idleTimeout;
+
+    @Parameter(property = "testing.collector.startTimeout", defaultValue = "30000")
+    private long startTimeoutMillis;
+
+    @Parameter(property = "testing.collector.skip", defaultValue = "false")
+    private boolean skip;
+
+    @Override
+    public void execute() throws MojoExecutionException {
+        if (skip) {
+            getLog().info("Collector is skipped");
+            return;
+        }
+
+        int collectorPort = port > 0 && isRunning(port) ? port : start();
+        String argLine = project.getProperties().getProperty("argLine", "").trim();
+        String collectorArg = "-Dtesting.collector=127.0.0.1:" + collectorPort;
+        project.getProperties().setProperty("argLine", argLine.isEmpty() ? collectorArg : argLine + " " + collectorArg);
+    }
+
+    private boolean isRunning(int collectorPort) throws MojoExecutionException {
+        try {
+            int collected = CollectorServer.ping(collectorPort, PING_TIMEOUT_MILLIS);
+            getLog().info("Using the collector running on port " + collectorPort + " (" + collected + " tests collected)");
+            writePortFile(collectorPort);
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private int start() throws MojoExecutionException {
+        try {
+            Files.createDirectories(portFile.getAbsoluteFile().getParentFile().toPath());
+            Files.deleteIfExists(portFile.toPath());
+            File log = new File(portFile.getParentFile(), "testing-collector.log");
+
+            List<String> command = new ArrayList<>();
+            command.add(new File(System.getProperty("java.home"), "bin" + File.separator + "java").getPath());
+            command.add("-cp");
+            command.add(pluginArtifacts.stream()
+                    .map(artifact -> artifact.getFile().getAbsolutePath())
+                    .collect(Collectors.joining(File.pathSeparator)));
+            command.add(CollectorServer.class.getName());
+            command.add("port=" + port);
+            command.add("portFile=" + portFile.getAbsolutePath());
+            command.add("outputDirectory=" + outputDirectory.getAbsolutePath());
+            command.add("journalDirectory=" + outputDirectory.getAbsolutePath());
+            command.add("reportFileName=" + reportFileName);
+            command.add("snapshotInterval=" + snapshotInterval);
+            command.add("idleTimeout=" + idleTimeout);
+
+            Process process = new ProcessBuilder(command)
+                    .redirectErrorStream(true)
+                    .redirectOutput(ProcessBuilder.Redirect.appendTo(log))
+                    .start();
+
+            long deadline = System.currentTimeMillis() + startTimeoutMillis;
+            while (!portFile.isFile()) {
+                if (!process.isAlive()) {
+                    throw new MojoExecutionException("Collector exited with code " + process.exitValue() + ", see " + log);
+                }
+                if (System.currentTimeMillis() > deadline) {
+                    process.destroy();
+                    throw new MojoExecutionException("Collector did not start within " + startTimeoutMillis + "ms, see " + log);
+                }
+                Thread.sleep(50);
+            }
+            int collectorPort = Integer.parseInt(new String(Files.readAllBytes(portFile.toPath()), StandardCharsets.UTF_8).trim());
+            getLog().info("Started collector on port " + collectorPort + ", live report in "
+                    + new File(outputDirectory, CollectorServer.LIVE_REPORT_FILE_NAME));
+            return collectorPort;
+        } catch (IOException e) {
+            throw new MojoExecutionException("Failed to start the collector", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Interrupted while starting the collector", e);
+        }
+    }
+
+    private void writePortFile(int collectorPort) throws MojoExecutionException {
+        try {
+            Files.createDirectories(portFile.getAbsoluteFile().getParentFile().toPath());
+            Files.write(portFile.toPath(), String.valueOf(collectorPort).getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new MojoExecutionException("Failed to write " + portFile, e);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package io.github.lyazginad.testing.mojo;
+
+import io.github.lyazginad.testing.collector.CollectorServer;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Counterpart of {@code start-collector}, run once the tests are done.
+ * <p>
+ * Asks the collector started by {@code start-collector} to merge the journals of agents
+ * that could not reach it, write the collected report and exit.
+ */
+@Mojo(name = "stop-collector", defaultPhase = LifecyclePhase.TEST, threadSafe = true)
+public class StopCollectorMojo extends AbstractMojo {
+
+    @Parameter(defaultValue = "${project.build.directory}/testing-collector.port", required = true)
+    private File portFile;
+
+    @Parameter(property = "testing.collector.stopTimeout", defaultValue = "60000")
+    private int stopTimeoutMillis;
+
+    @Parameter(property = "testing.collector.skip", defaultValue = "false")
+    private boolean skip;
+
+    @Override
+    public void execute() {
+        if (skip) {
+            return;
+        }
+        if (!portFile.isFile()) {
+            getLog().info("No collector is running for this project");
+            return;
+        }
+        try {
+            int port = Integer.parseInt(new String(Files.readAllBytes(portFile.toPath()), StandardCharsets.UTF_8).trim());
+            int collected = CollectorServer.requestShutdown(port, stopTimeoutMillis);
+            getLog().info("Collector on port " + port + " stopped with " + collected + " tests collected");
+        } catch (IOException | NumberFormatException e) {
+            getLog().warn("Could not stop the collector: " + e.getMessage());
+        } finally {
+            try {
+                Files.deleteIfExists(portFile.toPath());
+            } catch (IOException e) {
+                getLog().debug("Could not delete " + portFile, e);
+            }
+        }
+    }
+}
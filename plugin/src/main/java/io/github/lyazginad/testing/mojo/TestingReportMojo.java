@@ -4,6 +4,9 @@ import io.github.lyazginad.testing.annotations.*;
 import io.github.lyazginad.testing.model.TestReport;
 import io.github.lyazginad.testing.model.TestResult;
 import io.github.lyazginad.testing.model.StepResult;
+import io.github.lyazginad.testing.report.BinaryReportFormat;
+import io.github.lyazginad.testing.report.HtmlReportGenerator;
+import io.github.lyazginad.testing.util.AnnotationIndex;
 import io.github.lyazginad.testing.util.AnnotationProcessor;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
@@ -17,6 +20,7 @@ import org.apache.maven.project.MavenProject;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.lang.reflect.Method;
 import java.net.URL;
 import java.net.URLClassLoader;
@@ -56,6 +60,15 @@ public class TestingReportMojo extends AbstractMojo {
     @Parameter(property = "scanTestClasses", defaultValue = "true")
     private boolean scanTestClasses;
 
+    @Parameter(property = "binaryReport", defaultValue = "false")
+    private boolean binaryReport;
+
+    @Parameter(property = "generateHtmlReport", defaultValue = "false")
+    private boolean generateHtmlReport;
+
+    @Parameter(property = "htmlChunkSize", defaultValue = "1000")
+    private int htmlChunkSize;
+
     @Override
     public void execute() throws MojoExecutionException {
         getLog().info("Generating custom test report with annotations...");
@@ -74,6 +87,15 @@ public class TestingReportMojo extends AbstractMojo {
             // Записываем отчет в файл
             writeReportToFile(testReport);
 
+            if (binaryReport) {
+                File binaryFile = new File(outputDirectory, binaryFileName(reportFileName));
+                BinaryReportFormat.write(testReport, binaryFile);
+                getLog().info("Binary report written to: " + binaryFile.getAbsolutePath());
+            }
+            if (generateHtmlReport) {
+                writeHtmlReport(testReport);
+            }
+
             // Логируем summary
             logReportSummary(testReport);
 
@@ -106,6 +128,13 @@ public class TestingReportMojo extends AbstractMojo {
             return;
         }
 
+        // Индекс аннотаций, записанный при компиляции тестов, заменяет загрузку классов
+        File indexFile = new File(testClassesDir, AnnotationIndex.INDEX_RESOURCE);
+        if (indexFile.isFile()) {
+            readAnnotationIndex(indexFile, testClassesDir, report);
+            return;
+        }
+
         // Создаем classloader для загрузки тестовых классов
         URL[] urls = new URL[] { testClassesDir.toURI().toURL() };
         try (URLClassLoader classLoader = new URLClassLoader(urls, getClass().getClassLoader())) {
@@ -113,6 +142,33 @@ public class TestingReportMojo extends AbstractMojo {
         }
     }
 
+    private void readAnnotationIndex(File indexFile, File testClassesDir, TestReport report) throws IOException {
+        AnnotationIndex index;
+        try (InputStream in = Files.newInputStream(indexFile.toPath())) {
+            index = AnnotationIndex.read(in);
+        }
+        getLog().info("Reading annotated tests from index " + indexFile);
+
+        for (AnnotationIndex.Entry entry : index.entries()) {
+            // Classes deleted since the last full build stay in an incrementally updated index
+            File classFile = new File(testClassesDir, entry.getClassName().replace('.', File.separatorChar) + ".class");
+            if (!classFile.isFile()) {
+                continue;
+            }
+            TestResult testResult = new TestResult(
+                    entry.getClassName(),
+                    entry.getMethodName(),
+                    report.getTotalTests() + 1,
+                    entry.getMethodName()
+            );
+            entry.applyTo(testResult);
+            testResult.markCompleted(true, null);
+
+            report.addTestResult(testResult);
+            getLog().info("Found annotated test method: " + entry.getClassName() + "." + entry.getMethodName());
+        }
+    }
+
     private void scanDirectoryForTests(File directory, TestReport report, ClassLoader classLoader) {
         if (directory.isDirectory()) {
             File[] files = directory.listFiles();
@@ -217,6 +273,18 @@ public class TestingReportMojo extends AbstractMojo {
         getLog().info("Report written to: " + outputFile.getAbsolutePath());
     }
 
+    private static String binaryFileName(String jsonFileName) {
+        String baseName = jsonFileName.endsWith(".json")
+                ? jsonFileName.substring(0, jsonFileName.length() - ".json".length()) : jsonFileName;
+        return baseName + BinaryReportFormat.FILE_EXTENSION;
+    }
+
+    private void writeHtmlReport(TestReport testReport) throws IOException {
+        File htmlDirectory = new File(outputDirectory, "html");
+        File page = new HtmlReportGenerator(htmlChunkSize).generate(testReport, htmlDirectory);
+        getLog().info("HTML report written to: " + page.getAbsolutePath());
+    }
+
     private void logReportSummary(TestReport report) {
         getLog().info("=== TEST REPORT SUMMARY ===");
         getLog().info("Total Tests: " + report.getTotalTests());
@@ -0,0 +1,67 @@
+package io.github.lyazginad.testing.mojo;
+
+import io.github.lyazginad.testing.model.TestReport;
+import io.github.lyazginad.testing.report.ChromeTraceWriter;
+import io.github.lyazginad.testing.report.ReportReader;
+import io.github.lyazginad.testing.report.TimelineAnalysis;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * Exports a report as a timeline of the test run, for example:
+ * {@code mvn testing:timeline -DreportFile=target/test-reports/collected-test-report.json}
+ * <p>
+ * Writes a Chrome trace event file for Perfetto or {@code chrome://tracing} and logs the
+ * lane utilization and the longest tests on the critical path.
+ */
+@Mojo(name = "timeline", threadSafe = true)
+public class TimelineMojo extends AbstractMojo {
+
+    @Parameter(property = "reportFile", defaultValue = "${project.build.directory}/test-reports/custom-test-report.json")
+    private File reportFile;
+
+    @Parameter(property = "timelineFile",
+            defaultValue = "${project.build.directory}/test-reports/" + ChromeTraceWriter.DEFAULT_FILE_NAME)
+    private File timelineFile;
+
+    /** Number of critical path tests to log */
+    @Parameter(property = "top", defaultValue = "10")
+    private int top;
+
+    @Override
+    public void execute() throws MojoExecutionException {
+        if (!reportFile.isFile()) {
+            throw new MojoExecutionException("Report file not found: " + reportFile);
+        }
+        try {
+            TestReport report = ReportReader.read(reportFile);
+            Files.createDirectories(timelineFile.getAbsoluteFile().getParentFile().toPath());
+            TimelineAnalysis timeline = ChromeTraceWriter.write(report, timelineFile);
+
+            getLog().info(String.format("Timeline of %d tests written to %s", report.getTestResults().size(), timelineFile));
+            getLog().info(String.format("Wall time %.1fms on %d lanes, %.0f%% utilized",
+                    timeline.getWallMicros() / 1000.0, timeline.getLanes().size(), timeline.getUtilization() * 100));
+            for (TimelineAnalysis.Lane lane : timeline.getLanes()) {
+                getLog().info(String.format("  %-40s %5d tests, busy %.1fms (%.0f%%)", lane.getName(), lane.getTests(),
+                        lane.getBusyMicros() / 1000.0,
+                        timeline.getWallMicros() > 0 ? 100.0 * lane.getBusyMicros() / timeline.getWallMicros() : 0));
+            }
+            if (timeline.getCriticalLane() != null) {
+                getLog().info(String.format("Critical path: lane %s, finished %.1fms after all other lanes",
+                        timeline.getCriticalLane().getName(), timeline.getTailMicros() / 1000.0));
+                for (TimelineAnalysis.Span span : timeline.getLongestOnCriticalPath(top)) {
+                    getLog().info(String.format("  %8.1fms %s%s", span.getDurationMicros() / 1000.0, span.getTestId(),
+                            span.isPassed() ? "" : " (failed)"));
+                }
+            }
+        } catch (IOException e) {
+            throw new MojoExecutionException("Failed to write timeline for " + reportFile, e);
+        }
+    }
+}
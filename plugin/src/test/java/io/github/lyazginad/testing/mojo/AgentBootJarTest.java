@@ -0,0 +1,74 @@
+package io.github.lyazginad.testing.mojo;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import javassist.ClassPool;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AgentBootJarTest {
+
+    private static final String SHADED = AgentBootJar.SHADED_PACKAGE + ".";
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void relocatesTheLibrariesAndTheirReferences() throws Exception {
+        File bootJar = directory.resolve("boot.jar").toFile();
+
+        AgentBootJar.write(List.of(jarOf(ClassPool.class), jarOf(ObjectMapper.class), jarOf(JsonFactory.class),
+                jarOf(JsonProperty.class)), bootJar);
+
+        try (JarFile jar = new JarFile(bootJar)) {
+            for (JarEntry entry : Collections.list(jar.entries())) {
+                assertTrue(entry.getName().startsWith(SHADED.replace('.', '/')), entry.getName());
+            }
+        }
+        try (URLClassLoader loader = new URLClassLoader(new URL[] {bootJar.toURI().toURL()},
+                ClassLoader.getPlatformClassLoader())) {
+            assertThrows(ClassNotFoundException.class, () -> loader.loadClass(ClassPool.class.getName()));
+
+            Object classPool = loader.loadClass(SHADED + ClassPool.class.getName())
+                    .getConstructor(boolean.class).newInstance(true);
+            assertNotNull(classPool.getClass().getMethod("get", String.class).invoke(classPool, "java.lang.String"));
+
+            // Generic signatures are read by reflection, so they must name the relocated classes as well
+            Class<?> arrayNode = loader.loadClass(SHADED + "com.fasterxml.jackson.databind.node.ArrayNode");
+            Type containerNode = ((ParameterizedType) arrayNode.getGenericSuperclass()).getRawType();
+            assertEquals(SHADED + "com.fasterxml.jackson.databind.node.ContainerNode", containerNode.getTypeName());
+        }
+    }
+
+    @Test
+    void relocatesOnlyTheLibraryPackages() {
+        assertEquals("io/github/lyazginad/testing/shaded/javassist/ClassPool", AgentBootJar.relocate("javassist/ClassPool"));
+        assertEquals("io/github/lyazginad/testing/shaded/com/fasterxml/jackson/core/JsonFactory",
+                AgentBootJar.relocate("com/fasterxml/jackson/core/JsonFactory"));
+        assertNull(AgentBootJar.relocate("io/github/lyazginad/testing/agent/TestReportAgent"));
+        assertNull(AgentBootJar.relocate("com/fasterxml/other/Type"));
+    }
+
+    private static File jarOf(Class<?> type) throws URISyntaxException {
+        return new File(type.getProtectionDomain().getCodeSource().getLocation().toURI());
+    }
+}
@@ -0,0 +1,45 @@
+package io.github.lyazginad.testing.mojo;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class SelectTestsMojoTest {
+
+    @Test
+    void writesClassesAndMethods() {
+        Map<String, Set<String>> selected = new TreeMap<>();
+        selected.put("pkg.BTest", null);
+        SelectTestsMojo.selectMethod(selected, "pkg.ATest", "two");
+        SelectTestsMojo.selectMethod(selected, "pkg.ATest", "one");
+
+        assertEquals("pkg.ATest#one+two,pkg.BTest", SelectTestsMojo.toSurefireFilter(selected));
+    }
+
+    @Test
+    void readsWhatItWrites() {
+        Map<String, Set<String>> selected = new TreeMap<>();
+        selected.put("pkg.ATest", new TreeSet<>(Set.of("one", "two")));
+        selected.put("pkg.BTest", null);
+        selected.put("pkg.CTest", new TreeSet<>(Set.of("three")));
+
+        assertEquals(selected, SelectTestsMojo.parseSurefireFilter(SelectTestsMojo.toSurefireFilter(selected)));
+    }
+
+    @Test
+    void keepsWholeClassesWhenMethodsAreSelected() {
+        Map<String, Set<String>> selected = SelectTestsMojo.parseSurefireFilter("pkg.ATest, pkg.ATest#one, pkg.BTest#two + three");
+
+        assertNull(selected.get("pkg.ATest"));
+        SelectTestsMojo.selectMethod(selected, "pkg.ATest", "four");
+        assertNull(selected.get("pkg.ATest"));
+        assertEquals(Set.of("two", "three"), selected.get("pkg.BTest"));
+        assertEquals(2, selected.size());
+    }
+}
@@ -0,0 +1,47 @@
+package io.github.lyazginad.testing.soak;
+
+import io.github.lyazginad.testing.agent.TestReportAgent;
+
+/**
+ * Body of every generated test method: completes the method's steps and fails some invocations.
+ */
+public final class SoakBody {
+
+    private static volatile int failEvery;
+
+    private SoakBody() {
+    }
+
+    static void setFailEvery(int failEvery) {
+        SoakBody.failEvery = failEvery;
+    }
+
+    /**
+     * @param id        number of the test method in the suite
+     * @param parameter argument of a parameterized invocation, 0 otherwise
+     * @param steps     number of steps the method declares
+     */
+    public static void run(int id, int parameter, int steps) {
+        boolean fails = fails(id, parameter);
+        for (int order = 1; order <= steps; order++) {
+            boolean last = order == steps;
+            TestReportAgent.stepCompleted(order, !(fails && last), fails && last ? "Step " + order + " failed" : null);
+        }
+        if (fails) {
+            throw new AssertionError("Soak failure of test " + id + " with parameter " + parameter);
+        }
+    }
+
+    /**
+     * Spreads failures evenly but not periodically over methods and invocations
+     */
+    static boolean fails(int id, int parameter) {
+        int every = failEvery;
+        if (every <= 0) {
+            return false;
+        }
+        int hash = (id * 0x9E3779B1) ^ (parameter * 0x85EBCA77);
+        hash ^= hash >>> 15;
+        return Integer.remainderUnsigned(hash, every) == 0;
+    }
+}
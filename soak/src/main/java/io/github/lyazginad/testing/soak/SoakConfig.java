@@ -0,0 +1,77 @@
+package io.github.lyazginad.testing.soak;
+
+import io.github.lyazginad.testing.agent.AgentConfig;
+
+import java.io.File;
+
+/**
+ * Soak run configuration: suite shape, heap of the measured JVM, floors and ceilings.
+ * <p>
+ * Options are {@code key=value} pairs like the agent's, given as program arguments, e.g.
+ * {@code methods=1000000 heap=2g minRate.agent=20000}.
+ */
+final class SoakConfig {
+
+    /** Stages of a soak run, in order */
+    static final String[] STAGES = {"instrument", "agent", "json", "binary", "html", "read", "scan"};
+
+    private final String args;
+    private final AgentConfig values;
+
+    private SoakConfig(String args) {
+        this.args = args;
+        this.values = AgentConfig.parse(args);
+    }
+
+    static SoakConfig parse(String args) {
+        return new SoakConfig(args);
+    }
+
+    /** The options as given, to pass them on to the measured JVM */
+    String getArgs() { return args; }
+
+    int getMethods() { return values.getInt("methods", 100_000); }
+    int getMethodsPerClass() { return Math.max(1, values.getInt("methodsPerClass", 100)); }
+
+    int getClassCount() { return (getMethods() + getMethodsPerClass() - 1) / getMethodsPerClass(); }
+    /** Every n-th method takes a parameter and is invoked {@link #getInvocations()} times */
+    int getParameterizedEvery() { return values.getInt("parameterizedEvery", 10); }
+    int getInvocations() { return values.getInt("invocations", 5); }
+    /** About one in n invocations fails */
+    int getFailEvery() { return values.getInt("failEvery", 50); }
+    /** Whether the suite gets an annotation index, as if compiled with the annotation processor */
+    boolean isIndexed() { return values.getBoolean("index", true); }
+
+    /** Maximum heap of the measured JVM */
+    long getHeapBytes() { return values.getBytes("heap", 1L << 30); }
+    long getMaxPeakHeapBytes() { return values.getBytes("maxPeakHeap", getHeapBytes()); }
+    /** Maximum share of a stage's time spent in garbage collection, in percent */
+    int getMaxGcPercent() { return values.getInt("maxGcPercent", 25); }
+    long getTimeoutMillis() { return values.getMillis("timeout", 30 * 60_000L); }
+
+    /**
+     * Minimum throughput of a stage in tests per second; 0, the default, disables the check.
+     * Throughput depends on the machine and, through JIT warm-up, on the suite size, so the
+     * trend baseline is the default floor.
+     */
+    long getMinRate(String stage) { return values.getInt("minRate." + stage, 0); }
+    /**
+     * How far a stage's throughput may fall below the baseline of earlier runs of the same
+     * suite size and heap, in percent
+     */
+    int getMaxSlowdownPercent() { return values.getInt("maxSlowdownPercent", 50); }
+
+    File getWorkDirectory() { return new File(values.getString("workDirectory", "target/soak")); }
+
+    File getTrendFile() {
+        return new File(values.getString("trend", new File(getWorkDirectory(), "soak-trend.csv").getPath()));
+    }
+
+    /** Free text stored with every trend row, e.g. the commit */
+    String getLabel() { return values.getString("label", ""); }
+
+    boolean isVerbose() { return values.getBoolean("verbose", false); }
+
+    /** Whether the live heap of every stage is logged by class; a failed stage always logs it */
+    boolean isHistogram() { return values.getBoolean("histogram", false); }
+}
@@ -0,0 +1,227 @@
+package io.github.lyazginad.testing.soak;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Soak and memory-ceiling run of the whole reporting pipeline at scale, e.g.
+ * {@code java -jar soak/target/testing-soak-1.0.0.jar methods=1000000 heap=2g}
+ * <p>
+ * Generates a synthetic suite, runs it in a separate JVM limited to the configured heap (see
+ * {@link SoakRun}), and checks every stage against the heap and garbage collection ceilings
+ * and its throughput floor. Each stage is appended to a CSV trend file together with the
+ * suite size and heap; the median throughput of the last passing runs of the same size and
+ * heap is the baseline a stage may not fall too far below. Exits with status 1 when a stage
+ * fails or misses a limit.
+ */
+public final class SoakHarness {
+
+    /** Passing runs the baseline of a stage is the median of */
+    private static final int BASELINE_RUNS = 5;
+    /** Shorter stages are not compared with the baseline, timer and scheduling noise would dominate */
+    private static final long MIN_COMPARED_MILLIS = 250;
+    private static final String TREND_HEADER =
+            "time,label,methods,heapMb,stage,items,millis,itemsPerSecond,peakHeapMb,liveHeapMb,gcCount,gcMillis,status";
+
+    private SoakHarness() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        SoakConfig config = SoakConfig.parse(String.join(",", args));
+        File work = config.getWorkDirectory();
+        File classes = new File(work, "classes");
+        deleteRecursively(classes);
+
+        long start = System.nanoTime();
+        int generated = new SuiteGenerator(config).generate(classes);
+        System.out.printf("Generated %d test methods in %d classes in %ds%n", config.getMethods(), generated,
+                TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start));
+
+        List<StageResult> results = runMeasured(config);
+        Map<String, Double> baseline = baselineRates(config);
+        List<String> violations = check(config, results, baseline);
+        appendTrend(config, results, violations);
+        print(config, results, baseline);
+
+        if (violations.isEmpty()) {
+            System.out.println("Soak run passed");
+        } else {
+            violations.forEach(violation -> System.out.println("FAILED: " + violation));
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Runs the stages in a JVM of their own, so the heap ceiling and the garbage collector only see the measured work
+     */
+    private static List<StageResult> runMeasured(SoakConfig config) throws IOException, InterruptedException {
+        File work = config.getWorkDirectory();
+        File resultFile = new File(work, "soak-results.tsv");
+        File log = new File(work, "soak-run.log");
+        Files.deleteIfExists(resultFile.toPath());
+
+        List<String> command = new ArrayList<>();
+        command.add(new File(System.getProperty("java.home"), "bin/java").getPath());
+        // A heap that starts small grows by full collections, which would be charged to the stages
+        command.add("-Xms" + (config.getHeapBytes() >> 20) + "m");
+        command.add("-Xmx" + (config.getHeapBytes() >> 20) + "m");
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(SoakRun.class.getName());
+        command.add(config.getArgs());
+        command.add(resultFile.getPath());
+
+        // The agent prints every test; only keep that output when asked to
+        ProcessBuilder builder = new ProcessBuilder(command).redirectError(log);
+        builder.redirectOutput(config.isVerbose() ? ProcessBuilder.Redirect.appendTo(log) : ProcessBuilder.Redirect.DISCARD);
+        System.out.println("Running stages with -Xmx" + (config.getHeapBytes() >> 20) + "m, log in " + log);
+        Process process = builder.start();
+        boolean finished = process.waitFor(config.getTimeoutMillis(), TimeUnit.MILLISECONDS);
+        if (!finished) {
+            process.destroyForcibly();
+        }
+
+        List<StageResult> results = new ArrayList<>();
+        if (resultFile.isFile()) {
+            for (String line : Files.readAllLines(resultFile.toPath(), StandardCharsets.UTF_8)) {
+                if (!line.isEmpty()) {
+                    results.add(StageResult.parse(line));
+                }
+            }
+        }
+        if (results.size() < SoakConfig.STAGES.length) {
+            String stage = SoakConfig.STAGES[results.size()];
+            String error = !finished ? "timed out after " + config.getTimeoutMillis() + "ms"
+                    : "JVM exited with status " + process.exitValue() + ", see " + log;
+            if (results.isEmpty() || results.get(results.size() - 1).getError() == null) {
+                results.add(new StageResult(stage, 0, 0, 0, 0, 0, 0, error));
+            }
+        }
+        return results;
+    }
+
+    private static List<String> check(SoakConfig config, List<StageResult> results, Map<String, Double> baseline) {
+        List<String> violations = new ArrayList<>();
+        for (StageResult result : results) {
+            String stage = result.getStage();
+            if (result.getError() != null) {
+                violations.add(stage + ": " + result.getError());
+                continue;
+            }
+            long minRate = config.getMinRate(stage);
+            if (minRate > 0 && result.getItemsPerSecond() < minRate) {
+                violations.add(String.format("%s: %.0f tests/s is below the floor of %d tests/s",
+                        stage, result.getItemsPerSecond(), minRate));
+            }
+            Double baselineRate = baseline.get(stage);
+            if (baselineRate != null && result.getMillis() >= MIN_COMPARED_MILLIS
+                    && result.getItemsPerSecond() < baselineRate * (100 - config.getMaxSlowdownPercent()) / 100) {
+                violations.add(String.format("%s: %.0f tests/s is more than %d%% below the baseline of %.0f tests/s",
+                        stage, result.getItemsPerSecond(), config.getMaxSlowdownPercent(), baselineRate));
+            }
+            if (result.getPeakHeapBytes() > config.getMaxPeakHeapBytes()) {
+                violations.add(String.format("%s: peak heap %d MB exceeds %d MB",
+                        stage, result.getPeakHeapBytes() >> 20, config.getMaxPeakHeapBytes() >> 20));
+            }
+            if (result.getGcPercent() > config.getMaxGcPercent()) {
+                violations.add(String.format("%s: %.0f%% of the time in garbage collection exceeds %d%%",
+                        stage, result.getGcPercent(), config.getMaxGcPercent()));
+            }
+        }
+        return violations;
+    }
+
+    /**
+     * Median throughput of each stage over the last passing earlier runs with the same number
+     * of methods and heap
+     */
+    private static Map<String, Double> baselineRates(SoakConfig config) throws IOException {
+        Map<String, Double> baseline = new HashMap<>();
+        File trend = config.getTrendFile();
+        if (!trend.isFile()) {
+            return baseline;
+        }
+        Map<String, List<Double>> rates = new HashMap<>();
+        for (String line : Files.readAllLines(trend.toPath(), StandardCharsets.UTF_8)) {
+            String[] fields = line.split(",", -1);
+            if (fields.length == 13 && fields[2].equals(String.valueOf(config.getMethods()))
+                    && fields[3].equals(String.valueOf(config.getHeapBytes() >> 20)) && fields[12].equals("ok")) {
+                rates.computeIfAbsent(fields[4], stage -> new ArrayList<>()).add(Double.parseDouble(fields[7]));
+            }
+        }
+        rates.forEach((stage, stageRates) -> {
+            List<Double> recent = new ArrayList<>(stageRates.subList(Math.max(0, stageRates.size() - BASELINE_RUNS),
+                    stageRates.size()));
+            Collections.sort(recent);
+            baseline.put(stage, recent.get(recent.size() / 2));
+        });
+        return baseline;
+    }
+
+    private static void appendTrend(SoakConfig config, List<StageResult> results, List<String> violations)
+            throws IOException {
+        File trend = config.getTrendFile();
+        File directory = trend.getAbsoluteFile().getParentFile();
+        if (directory != null) {
+            Files.createDirectories(directory.toPath());
+        }
+        boolean header = !trend.isFile() || trend.length() == 0;
+        String time = LocalDateTime.now().withNano(0).toString();
+        String label = config.getLabel().replace(',', ' ');
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(trend.toPath(), StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND))) {
+            if (header) {
+                out.println(TREND_HEADER);
+            }
+            for (StageResult result : results) {
+                boolean failed = violations.stream().anyMatch(violation -> violation.startsWith(result.getStage() + ":"));
+                out.println(String.join(",", time, label, String.valueOf(config.getMethods()),
+                        String.valueOf(config.getHeapBytes() >> 20), result.getStage(), String.valueOf(result.getItems()),
+                        String.valueOf(result.getMillis()), String.format("%.0f", result.getItemsPerSecond()),
+                        String.valueOf(result.getPeakHeapBytes() >> 20), String.valueOf(result.getLiveHeapBytes() >> 20),
+                        String.valueOf(result.getGcCount()), String.valueOf(result.getGcMillis()),
+                        failed ? "failed" : "ok"));
+            }
+        }
+    }
+
+    private static void print(SoakConfig config, List<StageResult> results, Map<String, Double> baseline) {
+        System.out.println(String.format("%-10s %10s %9s %11s %9s %9s %5s %8s  %s",
+                "stage", "tests", "time", "tests/s", "peak", "live", "gc", "gc time", "vs baseline"));
+        for (StageResult result : results) {
+            Double before = baseline.get(result.getStage());
+            String change = before != null && before > 0
+                    ? String.format("%+.1f%%", (result.getItemsPerSecond() / before - 1) * 100) : "";
+            System.out.println(String.format("%-10s %10d %8.1fs %11.0f %6d MB %6d MB %5d %6dms  %s",
+                    result.getStage(), result.getItems(), result.getMillis() / 1000.0, result.getItemsPerSecond(),
+                    result.getPeakHeapBytes() >> 20, result.getLiveHeapBytes() >> 20, result.getGcCount(),
+                    result.getGcMillis(), change));
+        }
+        System.out.println("Trend: " + config.getTrendFile().getAbsolutePath());
+    }
+
+    private static void deleteRecursively(File directory) throws IOException {
+        if (!directory.exists()) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(directory.toPath())) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,360 @@
+package io.github.lyazginad.testing.soak;
+
+import io.github.lyazginad.testing.agent.TestReportAgent;
+import io.github.lyazginad.testing.model.TestReport;
+import io.github.lyazginad.testing.mojo.InstrumentTestsMojo;
+import io.github.lyazginad.testing.mojo.TestingReportMojo;
+import io.github.lyazginad.testing.report.BinaryReportFormat;
+import io.github.lyazginad.testing.report.HtmlReportGenerator;
+import io.github.lyazginad.testing.report.JsonReportWriter;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+
+import javax.management.ObjectName;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * The measured JVM of a soak run, started by {@link SoakHarness} with the heap ceiling as {@code -Xmx}.
+ * <p>
+ * Weaves the generated suite with the {@code instrument} goal, runs it through the agent in
+ * build-time instrumentation mode, writes the JSON, binary and HTML reports, reads the binary
+ * report back, and finally lets the {@code generate-report} goal scan the suite. Each stage
+ * is measured on its own and its result written as soon as it ends, so a run that dies of an
+ * {@link OutOfMemoryError} still shows how far it got.
+ */
+public final class SoakRun {
+
+    private static final long HEAP_SAMPLE_MILLIS = 10;
+    private static final int HISTOGRAM_LINES = 25;
+
+    private final SoakConfig config;
+    private final File classesDirectory;
+    private final File reportDirectory;
+    private TestReport report;
+    private int tests;
+    private int failures;
+
+    private SoakRun(SoakConfig config) {
+        this.config = config;
+        this.classesDirectory = new File(config.getWorkDirectory(), "classes");
+        this.reportDirectory = new File(config.getWorkDirectory(), "reports");
+    }
+
+    /**
+     * @param args soak options and the file receiving the stage results
+     */
+    public static void main(String[] args) throws IOException {
+        SoakConfig config = SoakConfig.parse(args[0]);
+        File work = config.getWorkDirectory();
+        System.setProperty("testing.outputDirectory", new File(work, "agent-reports").getPath());
+        System.setProperty("testing.retention.spillDirectory", work.getPath());
+        // The history of a million tests would be merged unmeasured in the shutdown hook
+        System.setProperty("testing.history", "false");
+        SoakBody.setFailEvery(config.getFailEvery());
+
+        SoakRun run = new SoakRun(config);
+        Files.createDirectories(run.reportDirectory.toPath());
+        try (PrintWriter results = new PrintWriter(Files.newBufferedWriter(new File(args[1]).toPath(), StandardCharsets.UTF_8))) {
+            for (String stage : SoakConfig.STAGES) {
+                StageResult result = run.measure(stage);
+                results.println(result.toLine());
+                results.flush();
+                if (result.getError() != null) {
+                    System.exit(1);
+                }
+            }
+        }
+    }
+
+    private long runStage(String stage) throws Exception {
+        switch (stage) {
+            case "instrument": return instrument();
+            case "agent": return runTests();
+            case "json":
+                JsonReportWriter.write(report, new File(reportDirectory, "soak-report.json"), true);
+                return report.getTotalTests();
+            case "binary":
+                BinaryReportFormat.write(report, binaryReport());
+                return report.getTotalTests();
+            case "html":
+                new HtmlReportGenerator().generate(report, new File(reportDirectory, "html"));
+                long written = report.getTotalTests();
+                // Leaves an empty report for the shutdown hook and frees the heap for the next stages
+                report = null;
+                TestReportAgent.resetReport();
+                return written;
+            case "read": return readReport();
+            case "scan": return scan();
+            default: throw new IllegalArgumentException("Unknown stage " + stage);
+        }
+    }
+
+    /**
+     * Weaves the tracking calls into the generated classes with the {@code instrument} goal
+     */
+    private long instrument() throws Exception {
+        InstrumentTestsMojo mojo = new InstrumentTestsMojo();
+        setParameter(mojo, "testClassesDirectory", classesDirectory);
+        setParameter(mojo, "classpathElements", Collections.emptyList());
+        setParameter(mojo, "stateFile", new File(config.getWorkDirectory(), "testing-instrument.state"));
+        GoalLog log = new GoalLog();
+        mojo.setLog(log);
+        mojo.execute();
+
+        String summary = log.find("Instrumented ");
+        int classes = summary != null ? Integer.parseInt(summary.split(" ")[1]) : 0;
+        if (classes != config.getClassCount()) {
+            throw new IllegalStateException("Instrument goal wove " + classes + " of " + config.getClassCount() + " classes");
+        }
+        return config.getMethods();
+    }
+
+    /**
+     * Instantiates every generated class and invokes its test methods, parameterized ones once per parameter
+     */
+    private long runTests() throws Exception {
+        long invocations = 0;
+        long failures = 0;
+        try (URLClassLoader loader = new URLClassLoader(new URL[]{classesDirectory.toURI().toURL()},
+                SoakRun.class.getClassLoader())) {
+            for (String className : generatedClasses()) {
+                Class<?> testClass = loader.loadClass(className);
+                Object instance = testClass.getDeclaredConstructor().newInstance();
+                for (Method method : testClass.getDeclaredMethods()) {
+                    if (method.isSynthetic()) {
+                        continue; // Method bodies moved aside by the instrumentation, like test frameworks skip them
+                    }
+                    int runs = method.getParameterCount() == 0 ? 1 : config.getInvocations();
+                    for (int parameter = 0; parameter < runs; parameter++) {
+                        invocations++;
+                        try {
+                            if (method.getParameterCount() == 0) {
+                                method.invoke(instance);
+                            } else {
+                                method.invoke(instance, parameter);
+                            }
+                        } catch (InvocationTargetException e) {
+                            if (!(e.getCause() instanceof AssertionError)) {
+                                throw e;
+                            }
+                            failures++;
+                        }
+                    }
+                }
+            }
+        }
+
+        report = TestReportAgent.getCurrentReport();
+        tests = (int) invocations;
+        this.failures = (int) failures;
+        checkCounts(report, "Agent report");
+        return invocations;
+    }
+
+    /**
+     * Reads the binary report back into a report with its summaries
+     */
+    private long readReport() throws IOException {
+        TestReport read = BinaryReportFormat.read(binaryReport());
+        checkCounts(read, "Binary report");
+        if (read.getTestResults().isEmpty() || read.getSeveritySummary().isEmpty()) {
+            throw new IllegalStateException("Binary report has no results");
+        }
+        return read.getTotalTests();
+    }
+
+    private void checkCounts(TestReport counted, String name) {
+        if (counted.getTotalTests() != tests || counted.getFailedTests() != failures) {
+            throw new IllegalStateException(String.format("%s counts %d tests and %d failures, ran %d and %d",
+                    name, counted.getTotalTests(), counted.getFailedTests(), tests, failures));
+        }
+    }
+
+    /**
+     * Runs the report goal outside Maven, its parameters set like the plugin testing harness does
+     */
+    private long scan() throws Exception {
+        TestingReportMojo mojo = new TestingReportMojo();
+        File outputDirectory = new File(config.getWorkDirectory(), "scan-reports");
+        setParameter(mojo, "buildDirectory", config.getWorkDirectory().getPath());
+        setParameter(mojo, "testOutputDirectory", classesDirectory.getPath());
+        setParameter(mojo, "outputDirectory", outputDirectory.getPath());
+        setParameter(mojo, "reportFileName", "custom-test-report.json");
+        setParameter(mojo, "prettyPrint", true);
+        setParameter(mojo, "scanTestClasses", true);
+        setParameter(mojo, "binaryReport", true);
+        setParameter(mojo, "generateHtmlReport", true);
+        setParameter(mojo, "htmlChunkSize", HtmlReportGenerator.DEFAULT_CHUNK_SIZE);
+        GoalLog log = new GoalLog();
+        mojo.setLog(log);
+        mojo.execute();
+
+        String summary = log.find("Total Tests: ");
+        long tests = summary != null ? Long.parseLong(summary.substring("Total Tests: ".length()).trim()) : 0;
+        if (tests != config.getMethods()) {
+            throw new IllegalStateException("Report goal found " + tests + " of " + config.getMethods() + " tests");
+        }
+        return tests;
+    }
+
+    private static void setParameter(Object mojo, String name, Object value) throws ReflectiveOperationException {
+        Field field = mojo.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(mojo, value);
+    }
+
+    private File binaryReport() {
+        return new File(reportDirectory, "soak-report" + BinaryReportFormat.FILE_EXTENSION);
+    }
+
+    private List<String> generatedClasses() throws IOException {
+        Path root = classesDirectory.toPath();
+        try (Stream<Path> files = Files.walk(root)) {
+            return files.filter(path -> path.toString().endsWith(".class"))
+                    .map(path -> {
+                        String relativePath = root.relativize(path).toString().replace(File.separatorChar, '/');
+                        return relativePath.substring(0, relativePath.length() - ".class".length()).replace('/', '.');
+                    })
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private StageResult measure(String stage) {
+        System.gc();
+        long gcCountBefore = gcCount();
+        long gcMillisBefore = gcMillis();
+        HeapSampler sampler = new HeapSampler();
+        sampler.start();
+
+        long start = System.nanoTime();
+        long items = 0;
+        String error = null;
+        try {
+            items = runStage(stage);
+        } catch (Exception | OutOfMemoryError e) {
+            error = e.toString();
+            e.printStackTrace();
+        }
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        long peak = sampler.finish();
+        long gcCount = gcCount() - gcCountBefore;
+        long gcMillis = gcMillis() - gcMillisBefore;
+
+        System.gc();
+        long live = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+        if (config.isHistogram() || error != null) {
+            printHistogram(stage);
+        }
+        return new StageResult(stage, items, millis, peak, live, gcCount, gcMillis, error);
+    }
+
+    /**
+     * Classes taking the most heap, as {@code jcmd GC.class_histogram} prints them, to the run's log
+     */
+    private static void printHistogram(String stage) {
+        try {
+            String histogram = (String) ManagementFactory.getPlatformMBeanServer().invoke(
+                    new ObjectName("com.sun.management:type=DiagnosticCommand"), "gcClassHistogram",
+                    new Object[]{new String[0]}, new String[]{String[].class.getName()});
+            String[] lines = histogram.split("\n");
+            System.err.println("Live heap after stage " + stage + ":");
+            for (int i = 0; i < Math.min(lines.length, HISTOGRAM_LINES); i++) {
+                System.err.println(lines[i]);
+            }
+        } catch (Exception e) {
+            System.err.println("Could not take a class histogram: " + e);
+        }
+    }
+
+    private static long gcCount() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .mapToLong(GarbageCollectorMXBean::getCollectionCount).filter(count -> count > 0).sum();
+    }
+
+    private static long gcMillis() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .mapToLong(GarbageCollectorMXBean::getCollectionTime).filter(time -> time > 0).sum();
+    }
+
+    /**
+     * Samples the heap in use; the sum of the pools' peaks would overstate it, as the pools peak at different times
+     */
+    private static final class HeapSampler extends Thread {
+        private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        private volatile boolean running = true;
+        private volatile long peak;
+
+        HeapSampler() {
+            super("soak-heap-sampler");
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                sample();
+                try {
+                    Thread.sleep(HEAP_SAMPLE_MILLIS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+
+        private void sample() {
+            peak = Math.max(peak, memory.getHeapMemoryUsage().getUsed());
+        }
+
+        long finish() {
+            running = false;
+            interrupt();
+            try {
+                join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            sample();
+            return peak;
+        }
+    }
+
+    /**
+     * Swallows a goal's output, keeping its last messages for the summary
+     */
+    private static final class GoalLog extends SystemStreamLog {
+        private static final int KEPT_MESSAGES = 16;
+        private final Deque<String> messages = new ArrayDeque<>();
+
+        @Override
+        public void info(CharSequence content) {
+            if (messages.size() == KEPT_MESSAGES) {
+                messages.removeFirst();
+            }
+            messages.addLast(content.toString());
+        }
+
+        String find(String prefix) {
+            return messages.stream().filter(message -> message.startsWith(prefix)).findFirst().orElse(null);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package io.github.lyazginad.testing.soak;
+
+/**
+ * Throughput, heap and garbage collection of one stage of a soak run.
+ * <p>
+ * The measured JVM writes results as tab separated lines for the harness to read.
+ */
+final class StageResult {
+
+    private final String stage;
+    private final long items;
+    private final long millis;
+    private final long peakHeapBytes;
+    private final long liveHeapBytes;
+    private final long gcCount;
+    private final long gcMillis;
+    private final String error;
+
+    StageResult(String stage, long items, long millis, long peakHeapBytes, long liveHeapBytes,
+                long gcCount, long gcMillis, String error) {
+        this.stage = stage;
+        this.items = items;
+        this.millis = millis;
+        this.peakHeapBytes = peakHeapBytes;
+        this.liveHeapBytes = liveHeapBytes;
+        this.gcCount = gcCount;
+        this.gcMillis = gcMillis;
+        this.error = error;
+    }
+
+    String getStage() { return stage; }
+    /** Test invocations or results the stage processed */
+    long getItems() { return items; }
+    long getMillis() { return millis; }
+    /** Highest heap use sampled during the stage */
+    long getPeakHeapBytes() { return peakHeapBytes; }
+    /** Heap in use after a full collection at the end of the stage */
+    long getLiveHeapBytes() { return liveHeapBytes; }
+    long getGcCount() { return gcCount; }
+    long getGcMillis() { return gcMillis; }
+    /** Why the stage failed, or null */
+    String getError() { return error; }
+
+    double getItemsPerSecond() {
+        return millis > 0 ? items * 1000.0 / millis : items;
+    }
+
+    double getGcPercent() {
+        return millis > 0 ? gcMillis * 100.0 / millis : 0;
+    }
+
+    String toLine() {
+        return String.join("\t", stage, String.valueOf(items), String.valueOf(millis), String.valueOf(peakHeapBytes),
+                String.valueOf(liveHeapBytes), String.valueOf(gcCount), String.valueOf(gcMillis),
+                error != null ? error.replaceAll("\\s+", " ") : "");
+    }
+
+    static StageResult parse(String line) {
+        String[] fields = line.split("\t", -1);
+        return new StageResult(fields[0], Long.parseLong(fields[1]), Long.parseLong(fields[2]),
+                Long.parseLong(fields[3]), Long.parseLong(fields[4]), Long.parseLong(fields[5]),
+                Long.parseLong(fields[6]), fields.length > 7 && !fields[7].isEmpty() ? fields[7] : null);
+    }
+}
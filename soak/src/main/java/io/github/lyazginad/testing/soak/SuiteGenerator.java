@@ -0,0 +1,240 @@
+package io.github.lyazginad.testing.soak;
+
+import io.github.lyazginad.testing.annotations.Priority;
+import io.github.lyazginad.testing.annotations.Severity;
+import io.github.lyazginad.testing.annotations.TestCase;
+import io.github.lyazginad.testing.annotations.TestInfo;
+import io.github.lyazginad.testing.annotations.TestLevel;
+import io.github.lyazginad.testing.annotations.TestMethod;
+import io.github.lyazginad.testing.annotations.TestStep;
+import io.github.lyazginad.testing.annotations.TestSteps;
+import io.github.lyazginad.testing.annotations.TestType;
+import io.github.lyazginad.testing.annotations.processing.TestAnnotationIndexProcessor;
+import io.github.lyazginad.testing.util.AnnotationIndex;
+import javassist.bytecode.AccessFlag;
+import javassist.bytecode.AnnotationsAttribute;
+import javassist.bytecode.Bytecode;
+import javassist.bytecode.ClassFile;
+import javassist.bytecode.ConstPool;
+import javassist.bytecode.DuplicateMemberException;
+import javassist.bytecode.MethodInfo;
+import javassist.bytecode.Opcode;
+import javassist.bytecode.annotation.Annotation;
+import javassist.bytecode.annotation.AnnotationMemberValue;
+import javassist.bytecode.annotation.ArrayMemberValue;
+import javassist.bytecode.annotation.EnumMemberValue;
+import javassist.bytecode.annotation.IntegerMemberValue;
+import javassist.bytecode.annotation.MemberValue;
+import javassist.bytecode.annotation.StringMemberValue;
+
+import java.io.BufferedWriter;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes a synthetic test suite as class files, and its annotation index like the annotation
+ * processor would.
+ * <p>
+ * Methods get a deterministic mix of the testing annotations and zero to three steps; every
+ * n-th method takes an {@code int} parameter. Bodies only call {@link SoakBody#run}, so the
+ * class files are built directly instead of compiling a million lines of source.
+ */
+final class SuiteGenerator {
+
+    static final String PACKAGE_PREFIX = "soak.suite.p";
+    private static final int CLASSES_PER_PACKAGE = 500;
+    private static final String BODY_CLASS = SoakBody.class.getName();
+
+    private static final String[] CATEGORIES = {"authentication", "billing", "catalog", "checkout",
+            "search", "security", "performance", "integration"};
+    private static final String[] AUTHORS = {"alice", "bob", "carol", "dave", "erin", "frank", "grace", "heidi"};
+
+    private final SoakConfig config;
+
+    SuiteGenerator(SoakConfig config) {
+        this.config = config;
+    }
+
+    /**
+     * @return number of generated classes
+     */
+    int generate(File classesDirectory) throws IOException, DuplicateMemberException {
+        File indexFile = new File(classesDirectory, AnnotationIndex.INDEX_RESOURCE);
+        Files.createDirectories(indexFile.getParentFile().toPath());
+        try (BufferedWriter index = config.isIndexed()
+                ? Files.newBufferedWriter(indexFile.toPath(), StandardCharsets.UTF_8) : null) {
+            if (index != null) {
+                index.write(TestAnnotationIndexProcessor.INDEX_HEADER);
+                index.write('\n');
+            }
+            return writeClasses(classesDirectory, index);
+        }
+    }
+
+    private int writeClasses(File classesDirectory, BufferedWriter index) throws IOException, DuplicateMemberException {
+        int methods = config.getMethods();
+        int perClass = config.getMethodsPerClass();
+        List<String> indexLines = index != null ? new ArrayList<>(perClass) : null;
+
+        int classes = 0;
+        for (int first = 0; first < methods; first += perClass) {
+            String className = PACKAGE_PREFIX + (classes / CLASSES_PER_PACKAGE) + ".SoakTest" + classes;
+            ClassFile classFile = new ClassFile(false, className, null);
+            classFile.setAccessFlags(AccessFlag.PUBLIC);
+            classFile.addMethod(constructor(classFile.getConstPool()));
+            for (int id = first; id < Math.min(methods, first + perClass); id++) {
+                classFile.addMethod(testMethod(classFile.getConstPool(), className, id, indexLines));
+            }
+
+            File file = new File(classesDirectory, className.replace('.', File.separatorChar) + ".class");
+            Files.createDirectories(file.getParentFile().toPath());
+            try (OutputStream out = Files.newOutputStream(file.toPath());
+                 DataOutputStream data = new DataOutputStream(out)) {
+                classFile.write(data);
+            }
+            if (index != null) {
+                for (String line : indexLines) {
+                    index.write(line);
+                    index.write('\n');
+                }
+                indexLines.clear();
+            }
+            classes++;
+        }
+        return classes;
+    }
+
+    private static MethodInfo constructor(ConstPool constPool) {
+        MethodInfo constructor = new MethodInfo(constPool, MethodInfo.nameInit, "()V");
+        constructor.setAccessFlags(AccessFlag.PUBLIC);
+        Bytecode code = new Bytecode(constPool, 0, 1);
+        code.addAload(0);
+        code.addInvokespecial("java.lang.Object", MethodInfo.nameInit, "()V");
+        code.addOpcode(Opcode.RETURN);
+        constructor.setCodeAttribute(code.toCodeAttribute());
+        return constructor;
+    }
+
+    private MethodInfo testMethod(ConstPool constPool, String className, int id, List<String> indexLines) {
+        int every = config.getParameterizedEvery();
+        boolean parameterized = every > 0 && id % every == every - 1;
+        String name = parameterized ? "testParameterized" + id : "test" + id;
+        int steps = id % 4;
+
+        MethodInfo method = new MethodInfo(constPool, name, parameterized ? "(I)V" : "()V");
+        method.setAccessFlags(AccessFlag.PUBLIC);
+        Bytecode code = new Bytecode(constPool, 0, parameterized ? 2 : 1);
+        code.addIconst(id);
+        if (parameterized) {
+            code.addIload(1);
+        } else {
+            code.addIconst(0);
+        }
+        code.addIconst(steps);
+        code.addInvokestatic(BODY_CLASS, "run", "(III)V");
+        code.addOpcode(Opcode.RETURN);
+        method.setCodeAttribute(code.toCodeAttribute());
+
+        StringBuilder line = indexLines != null
+                ? new StringBuilder(className).append('\t').append(name).append(parameterized ? "(int)" : "()")
+                : null;
+        method.addAttribute(annotations(constPool, id, steps, line));
+        if (line != null) {
+            indexLines.add(line.toString());
+        }
+        return method;
+    }
+
+    /**
+     * Annotations of a test method; the index line gets the same values in the processor's order
+     */
+    private static AnnotationsAttribute annotations(ConstPool constPool, int id, int steps, StringBuilder line) {
+        List<Annotation> annotations = new ArrayList<>();
+        if (id % 4 != 3) {
+            Annotation testCase = annotation(TestCase.class, constPool);
+            String category = CATEGORIES[id % CATEGORIES.length];
+            testCase.addMemberValue("order", new IntegerMemberValue(constPool, id));
+            testCase.addMemberValue("name", new StringMemberValue("Soak case " + id, constPool));
+            testCase.addMemberValue("category", new StringMemberValue(category, constPool));
+            annotations.add(testCase);
+            index(line, "testCase.order", String.valueOf(id));
+            index(line, "testCase.name", "Soak case " + id);
+            index(line, "testCase.category", category);
+        }
+        annotations.add(enumAnnotation(Severity.class, constPool, Severity.Level.values()[id % 5], line, "severity"));
+        annotations.add(enumAnnotation(Priority.class, constPool, Priority.Level.values()[id / 5 % 5], line, "priority"));
+        if (id % 2 == 0) {
+            annotations.add(enumAnnotation(TestLevel.class, constPool, TestLevel.Level.values()[id / 2 % 4], line, "level"));
+        }
+        if (id % 3 == 0) {
+            annotations.add(enumAnnotation(TestType.class, constPool, TestType.Type.values()[id / 3 % 5], line, "type"));
+        }
+        if (id % 5 == 0) {
+            annotations.add(enumAnnotation(TestMethod.class, constPool, TestMethod.Method.values()[id / 5 % 8], line, "method"));
+        }
+        if (id % 10 == 0) {
+            Annotation testInfo = annotation(TestInfo.class, constPool);
+            String author = AUTHORS[id / 10 % AUTHORS.length];
+            testInfo.addMemberValue("author", new StringMemberValue(author, constPool));
+            testInfo.addMemberValue("version", new StringMemberValue("1.0", constPool));
+            testInfo.addMemberValue("description", new StringMemberValue("Generated soak test " + id, constPool));
+            annotations.add(testInfo);
+            index(line, "author", author);
+            index(line, "version", "1.0");
+            index(line, "description", "Generated soak test " + id);
+        }
+        if (steps == 1) {
+            annotations.add(step(constPool, 1, line));
+        } else if (steps > 1) {
+            // Repeated @TestStep compiles to the @TestSteps container
+            MemberValue[] values = new MemberValue[steps];
+            for (int order = 1; order <= steps; order++) {
+                values[order - 1] = new AnnotationMemberValue(step(constPool, order, line), constPool);
+            }
+            ArrayMemberValue array = new ArrayMemberValue(new AnnotationMemberValue(constPool), constPool);
+            array.setValue(values);
+            Annotation container = annotation(TestSteps.class, constPool);
+            container.addMemberValue("value", array);
+            annotations.add(container);
+        }
+
+        AnnotationsAttribute attribute = new AnnotationsAttribute(constPool, AnnotationsAttribute.visibleTag);
+        attribute.setAnnotations(annotations.toArray(new Annotation[0]));
+        return attribute;
+    }
+
+    private static Annotation step(ConstPool constPool, int order, StringBuilder line) {
+        Annotation step = annotation(TestStep.class, constPool);
+        step.addMemberValue("order", new IntegerMemberValue(constPool, order));
+        step.addMemberValue("description", new StringMemberValue("Step " + order, constPool));
+        index(line, "step", order + ":Step " + order);
+        return step;
+    }
+
+    private static Annotation enumAnnotation(Class<?> type, ConstPool constPool, Enum<?> value,
+                                             StringBuilder line, String indexKey) {
+        EnumMemberValue member = new EnumMemberValue(constPool);
+        member.setType(value.getDeclaringClass().getName());
+        member.setValue(value.name());
+        Annotation annotation = annotation(type, constPool);
+        annotation.addMemberValue("value", member);
+        index(line, indexKey, value.name());
+        return annotation;
+    }
+
+    private static Annotation annotation(Class<?> type, ConstPool constPool) {
+        return new Annotation(type.getName(), constPool);
+    }
+
+    private static void index(StringBuilder line, String key, String value) {
+        if (line != null) {
+            line.append('\t').append(key).append('=').append(value);
+        }
+    }
+}